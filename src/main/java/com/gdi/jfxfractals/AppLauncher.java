@@ -1,5 +1,7 @@
 package com.gdi.jfxfractals;
 
+import com.gdi.jfxfractals.batch.BatchRenderer;
+import com.gdi.jfxfractals.common.app.Arguments;
 import com.gdi.jfxfractals.renderer.RenderLoop;
 import com.gdi.jfxfractals.ui.MainApp;
 import org.slf4j.Logger;
@@ -10,6 +12,11 @@ public class AppLauncher {
     private static final Logger log = LoggerFactory.getLogger(AppLauncher.class);
 
     public static void main(final String[] args) {
+        Arguments arguments = Arguments.parse(args);
+        if (arguments.getBoolean("batch")) {
+            log.debug("Starting batch render");
+            System.exit(BatchRenderer.run(arguments));
+        }
         log.debug("Starting application");
         MainApp.main(args);
     }
@@ -0,0 +1,168 @@
+package com.gdi.jfxfractals.batch;
+
+import com.gdi.jfxfractals.common.app.Arguments;
+import com.gdi.jfxfractals.io.ImageStripWriter;
+import com.gdi.jfxfractals.renderimpl.escape.EscapeTimeEngine;
+import com.gdi.jfxfractals.renderimpl.escape.IterationBuffer;
+import com.gdi.jfxfractals.renderimpl.escape.Precision;
+import com.gdi.jfxfractals.renderimpl.escape.ViewPort;
+import com.gdi.jfxfractals.renderimpl.palette.Colorizer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.IntBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Renders a {@link BatchScene} to an image file without a window. The image is computed in
+ * horizontal strips from the top down, each one on every core, and handed to an
+ * {@link ImageStripWriter} while the next strip renders, so only two strips are ever in memory
+ * whatever the size of the image.
+ */
+public final class BatchRenderer {
+
+    private static final Logger log = LoggerFactory.getLogger(BatchRenderer.class);
+
+    // pixels per strip unless the scene says otherwise, about 80 MB of buffers at 65536 wide
+    private static final int STRIP_PIXELS = 1 << 22;
+
+    private final BatchScene scene;
+
+    public BatchRenderer(BatchScene scene) {
+        this.scene = scene;
+    }
+
+    public static void main(String[] args) {
+        System.exit(run(Arguments.parse(args)));
+    }
+
+    /**
+     * Renders the scene described by {@code arguments}; returns the process exit code.
+     */
+    public static int run(Arguments arguments) {
+        BatchScene scene = null;
+        try {
+            scene = BatchScene.parse(arguments);
+            if (scene.getFrames() > 0) {
+                new ZoomVideoRenderer(scene).render();
+            } else {
+                new BatchRenderer(scene).render();
+            }
+            return 0;
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            return 2;
+        } catch (IOException e) {
+            log.error("Could not write {}", scene.getOutput(), e);
+            return 1;
+        }
+    }
+
+    public void render() throws IOException {
+        int width = scene.getWidth();
+        int height = scene.getHeight();
+        int stripRows = Math.min(height, Math.min(scene.getStripRows(), Math.max(1, STRIP_PIXELS / width)));
+        log.info("Rendering {} to {} in strips of {} rows", scene, scene.getOutput(), stripRows);
+        long start = System.nanoTime();
+
+        EscapeTimeEngine engine = new EscapeTimeEngine();
+        engine.setAutoPrecision(true);
+        // one full resolution pass, the interior of the set is where most of a batch render's iterations go
+        engine.setMode(scene.getMode());
+        engine.setDistanceEstimation(scene.isDistance());
+        engine.setFormula(scene.getFormula());
+        engine.setFormulaKernel(scene.getUserFormula());
+        Colorizer colorizer = new Colorizer(scene.getPalette());
+        colorizer.setOffset(scene.getOffset());
+        colorizer.setBoundary(scene.getBoundary());
+        ExecutorService output = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "batch-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        IterationBuffer buffer = new IterationBuffer(width, stripRows);
+        // a strip is coloured into one while the other is written
+        int[][] pixels = {new int[width * stripRows], new int[width * stripRows]};
+        CompletableFuture<?>[] writes = {CompletableFuture.completedFuture(null), CompletableFuture.completedFuture(null)};
+        try (ImageStripWriter writer = ImageStripWriter.open(scene.getOutput(), width, height, engine.getPool())) {
+            try {
+                int strip = 0;
+                for (int top = 0; top < height; top += stripRows, strip++) {
+                    int rows = Math.min(stripRows, height - top);
+                    if (!buffer.fits(width, rows)) {
+                        buffer = new IterationBuffer(width, rows);
+                    }
+                    renderStrip(engine, top, buffer);
+
+                    int slot = strip & 1;
+                    join(writes[slot]);
+                    int[] argb = pixels[slot];
+                    colorizer.apply(buffer, scene.getScale(), scene.getMaxIter(), null,
+                            IntBuffer.wrap(argb, 0, width * rows), engine.getPool());
+                    flip(argb, width, rows);
+                    writes[slot] = CompletableFuture.runAsync(() -> {
+                        try {
+                            writer.write(argb, rows);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    }, output);
+                    log.info("{} of {} rows", top + rows, height);
+                }
+                join(writes[0]);
+                join(writes[1]);
+            } finally {
+                // never close the writer under a strip that is still being written
+                CompletableFuture.allOf(writes).handle((v, e) -> null).join();
+            }
+        } finally {
+            output.shutdownNow();
+            engine.shutdown();
+        }
+        log.info("Wrote {} in {} s", scene.getOutput(), (System.nanoTime() - start) / 1_000_000_000);
+    }
+
+    // the rows [top, top + rows) of the image, counted from the top; buffers keep the bottom row first
+    private void renderStrip(EscapeTimeEngine engine, int top, IterationBuffer buffer) {
+        int width = buffer.getWidth();
+        int rows = buffer.getHeight();
+        int height = scene.getHeight();
+        double scale = scene.getScale();
+        // ViewPort puts its centre at row height / 2, so the strip centre is a whole number of pixels off
+        long offset = (long) (height - height / 2) - top - rows + rows / 2;
+        BigDecimal centreY = scene.getCentreY().add(new BigDecimal(scale).multiply(BigDecimal.valueOf(offset)));
+        if (Precision.forScale(scale).isNative()) {
+            engine.render(new ViewPort(scene.getCentreX().doubleValue(), centreY.doubleValue(), scale, width, rows),
+                    scene.getMaxIter(), buffer);
+        } else {
+            engine.render(scene.getCentreX(), centreY, scale, scene.getMaxIter(), buffer);
+        }
+    }
+
+    private static void flip(int[] argb, int width, int rows) {
+        int[] row = new int[width];
+        for (int a = 0, b = rows - 1; a < b; a++, b--) {
+            System.arraycopy(argb, a * width, row, 0, width);
+            System.arraycopy(argb, b * width, argb, a * width, width);
+            System.arraycopy(row, 0, argb, b * width, width);
+        }
+    }
+
+    static void join(CompletableFuture<?> write) throws IOException {
+        try {
+            write.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            }
+            throw e;
+        }
+    }
+}
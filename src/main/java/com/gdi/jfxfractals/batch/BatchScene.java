@@ -0,0 +1,261 @@
+package com.gdi.jfxfractals.batch;
+
+import com.gdi.jfxfractals.common.app.Arguments;
+import com.gdi.jfxfractals.renderimpl.escape.Formula;
+import com.gdi.jfxfractals.renderimpl.escape.RenderMode;
+import com.gdi.jfxfractals.renderimpl.escape.formula.UserFormula;
+import com.gdi.jfxfractals.renderimpl.palette.Palette;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * What a batch render draws, read from the command line:
+ * <pre>
+ * --batch --out image.png|image.tif [--width 4096] [--height 4096]
+ *         [--formula mandelbrot|burning_ship|...|"z^3 + c"] [--centre-x -0.5] [--centre-y 0]
+ *         [--zoom 1 | --scale pixel-size] [--iterations 1000] [--palette name] [--offset 0]
+ *         [--distance] [--boundary 1] [--strip rows] [--tiled] [--frames count [--start-zoom 1]]
+ * </pre>
+ * Centres are parsed exactly so deep zooms keep their position. A zoom of 1 fits 4 units of the
+ * plane across the shorter side of the image. With {@code --frames} the scene is a zoom video of
+ * the Mandelbrot set into the centre, from the start zoom down to the zoom given, written as a
+ * numbered image sequence next to {@code --out}. Still images fill regions enclosed by the set
+ * without iterating them unless {@code --tiled} is given, see {@link RenderMode#MARIANI_SILVER}.
+ */
+public final class BatchScene {
+
+    public static final int DEFAULT_SIZE = 4096;
+    public static final int DEFAULT_MAX_ITER = 1000;
+    public static final int MAX_SIZE = 65536;
+
+    private static final double EXTENT = 4.0;
+    // zoom video deltas are plain doubles
+    private static final double MIN_VIDEO_SCALE = 1e-290;
+
+    private Formula formula = Formula.MANDELBROT;
+    private UserFormula userFormula;
+    private BigDecimal centreX = BigDecimal.ZERO;
+    private BigDecimal centreY = BigDecimal.ZERO;
+    private double scale;
+    private int maxIter = DEFAULT_MAX_ITER;
+    private Palette palette = Palette.classic();
+    private float offset;
+    private boolean distance;
+    private float boundary;
+    private int width = DEFAULT_SIZE;
+    private int height = DEFAULT_SIZE;
+    private int stripRows;
+    private RenderMode mode = RenderMode.MARIANI_SILVER;
+    private int frames;
+    private double startScale;
+    private Path output;
+
+    private BatchScene() {
+    }
+
+    /**
+     * Reads a scene from {@code arguments}, throwing {@link IllegalArgumentException} for missing or bad values.
+     */
+    public static BatchScene parse(Arguments arguments) {
+        BatchScene scene = new BatchScene();
+        scene.output = Path.of(arguments.getString("out", "output")
+                .orElseThrow(() -> new IllegalArgumentException("--out is required")));
+        String name = scene.output.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (!name.endsWith(".png") && !name.endsWith(".tif") && !name.endsWith(".tiff")) {
+            throw new IllegalArgumentException("--out must name a .png, .tif or .tiff file");
+        }
+        scene.width = size(arguments, "width", DEFAULT_SIZE);
+        scene.height = size(arguments, "height", DEFAULT_SIZE);
+        arguments.getString("formula").ifPresent(scene::formula);
+        scene.centreX = decimal(arguments, "centre-x", scene.formula == Formula.MANDELBROT && scene.userFormula == null
+                ? new BigDecimal("-0.5") : BigDecimal.ZERO);
+        scene.centreY = decimal(arguments, "centre-y", BigDecimal.ZERO);
+        double zoom = number(arguments, "zoom", 1);
+        scene.scale = number(arguments, "scale", EXTENT / (zoom * Math.min(scene.width, scene.height)));
+        if (!(scene.scale > 0) || Double.isInfinite(scene.scale)) {
+            throw new IllegalArgumentException("Invalid zoom or scale");
+        }
+        scene.maxIter = positive(arguments, "iterations", DEFAULT_MAX_ITER);
+        arguments.getString("palette").ifPresent(scene::palette);
+        scene.offset = (float) number(arguments, "offset", 0);
+        scene.distance = arguments.getBoolean("distance");
+        scene.boundary = (float) number(arguments, "boundary", scene.distance ? 1 : 0);
+        scene.stripRows = positive(arguments, "strip", Integer.MAX_VALUE);
+        if (arguments.getBoolean("tiled")) {
+            scene.mode = RenderMode.TILED;
+        }
+        scene.frames = positive(arguments, "frames", 0);
+        if (scene.frames > 0) {
+            if (scene.frames < 2) {
+                throw new IllegalArgumentException("--frames must be at least 2");
+            }
+            if (scene.formula != Formula.MANDELBROT || scene.userFormula != null) {
+                throw new IllegalArgumentException("Zoom videos are only available for the Mandelbrot set");
+            }
+            scene.startScale = EXTENT / (number(arguments, "start-zoom", 1) * Math.min(scene.width, scene.height));
+            if (!(scene.startScale > scene.scale) || Double.isInfinite(scene.startScale)) {
+                throw new IllegalArgumentException("--start-zoom must be less than --zoom");
+            }
+            if (scene.scale < MIN_VIDEO_SCALE) {
+                throw new IllegalArgumentException("Zoom videos go down to pixels of " + MIN_VIDEO_SCALE);
+            }
+        }
+        return scene;
+    }
+
+    private void formula(String text) {
+        String key = text.trim().toUpperCase(Locale.ROOT).replace('-', '_').replace(' ', '_');
+        for (Formula f : Formula.values()) {
+            if (f.name().equals(key)) {
+                formula = f;
+                return;
+            }
+        }
+        // anything else is a formula of its own
+        userFormula = UserFormula.compile(text);
+    }
+
+    private void palette(String name) {
+        for (Map.Entry<String, Palette> preset : Palette.presets().entrySet()) {
+            if (preset.getKey().equalsIgnoreCase(name)) {
+                palette = preset.getValue();
+                return;
+            }
+        }
+        throw new IllegalArgumentException("Unknown palette " + name + ", expected one of " + Palette.presets().keySet());
+    }
+
+    private static int size(Arguments arguments, String key, int fallback) {
+        int size = positive(arguments, key, fallback);
+        if (size > MAX_SIZE) {
+            throw new IllegalArgumentException("--" + key + " is larger than " + MAX_SIZE);
+        }
+        return size;
+    }
+
+    private static int positive(Arguments arguments, String key, int fallback) {
+        if (arguments.getString(key).isEmpty()) {
+            return fallback;
+        }
+        int value = arguments.getInt(key).orElse(0);
+        if (value <= 0) {
+            throw new IllegalArgumentException("--" + key + " must be a positive integer");
+        }
+        return value;
+    }
+
+    private static double number(Arguments arguments, String key, double fallback) {
+        if (arguments.getString(key).isEmpty()) {
+            return fallback;
+        }
+        double value = arguments.getDouble(key).orElse(Double.NaN);
+        if (!Double.isFinite(value)) {
+            throw new IllegalArgumentException("--" + key + " must be a number");
+        }
+        return value;
+    }
+
+    private static BigDecimal decimal(Arguments arguments, String key, BigDecimal fallback) {
+        String value = arguments.getString(key).orElse(null);
+        if (value == null) {
+            return fallback;
+        }
+        try {
+            return new BigDecimal(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("--" + key + " must be a number");
+        }
+    }
+
+    public Formula getFormula() {
+        return formula;
+    }
+
+    /**
+     * The formula typed on the command line, {@code null} when a built-in one was named.
+     */
+    public UserFormula getUserFormula() {
+        return userFormula;
+    }
+
+    public BigDecimal getCentreX() {
+        return centreX;
+    }
+
+    public BigDecimal getCentreY() {
+        return centreY;
+    }
+
+    /**
+     * Size of one pixel in the complex plane.
+     */
+    public double getScale() {
+        return scale;
+    }
+
+    public int getMaxIter() {
+        return maxIter;
+    }
+
+    public Palette getPalette() {
+        return palette;
+    }
+
+    public float getOffset() {
+        return offset;
+    }
+
+    public boolean isDistance() {
+        return distance;
+    }
+
+    public float getBoundary() {
+        return boundary;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Rows rendered at a time, {@link Integer#MAX_VALUE} to let the renderer choose.
+     */
+    public int getStripRows() {
+        return stripRows;
+    }
+
+    public RenderMode getMode() {
+        return mode;
+    }
+
+    /**
+     * Number of frames of a zoom video, 0 for a still image.
+     */
+    public int getFrames() {
+        return frames;
+    }
+
+    /**
+     * Pixel size of the first frame of a zoom video; {@link #getScale()} is that of the last one.
+     */
+    public double getStartScale() {
+        return startScale;
+    }
+
+    public Path getOutput() {
+        return output;
+    }
+
+    @Override
+    public String toString() {
+        return (userFormula != null ? userFormula.getSource() : formula.getTitle()) + " at " + centreX + " + "
+                + centreY + "i, pixel " + scale + ", " + width + "x" + height + ", " + maxIter + " iterations";
+    }
+}
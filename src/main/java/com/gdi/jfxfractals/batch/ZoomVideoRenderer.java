@@ -0,0 +1,170 @@
+package com.gdi.jfxfractals.batch;
+
+import com.gdi.jfxfractals.io.ImageStripWriter;
+import com.gdi.jfxfractals.renderimpl.escape.EscapeTimeEngine;
+import com.gdi.jfxfractals.renderimpl.escape.IterationBuffer;
+import com.gdi.jfxfractals.renderimpl.escape.perturbation.ExponentialMap;
+import com.gdi.jfxfractals.renderimpl.escape.perturbation.ReferenceOrbit;
+import com.gdi.jfxfractals.renderimpl.palette.Colorizer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.IntBuffer;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.IntStream;
+
+/**
+ * Renders the frames of a zoom video from one {@link ExponentialMap} strip. The strip is
+ * iterated and coloured a chunk of rows at a time, as deep as the next frame needs, into a ring
+ * that keeps only the rows still ahead of the zoom; every frame is then resampled from the ring
+ * in parallel and written while the next one is prepared. Each cell of the strip is iterated
+ * once, where independent frames would iterate the same region again at every step of the zoom.
+ */
+public final class ZoomVideoRenderer {
+
+    private static final Logger log = LoggerFactory.getLogger(ZoomVideoRenderer.class);
+
+    // cells iterated and coloured at a time
+    private static final int CHUNK_PIXELS = 1 << 22;
+
+    private final BatchScene scene;
+
+    public ZoomVideoRenderer(BatchScene scene) {
+        this.scene = scene;
+    }
+
+    public void render() throws IOException {
+        int width = scene.getWidth();
+        int height = scene.getHeight();
+        int frames = scene.getFrames();
+        ExponentialMap map = ExponentialMap.forZoom(scene.getCentreX(), scene.getCentreY(), width, height,
+                scene.getStartScale(), scene.getScale());
+        int columns = map.getColumns();
+        int chunk = Math.max(1, CHUNK_PIXELS / columns);
+        // rows between the corners and the centre pixel of a frame, the same for every frame
+        double halfDiagonal = ExponentialMap.halfDiagonal(width, height);
+        int band = (int) Math.ceil(Math.log(2 * halfDiagonal) / map.getStep()) + 2;
+        int ringRows = band + 2 * chunk + 4;
+        if ((long) ringRows * columns > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Frames of " + width + "x" + height + " are too large for a zoom video");
+        }
+        log.info("Rendering {} frames of {}, strip of {}x{} cells instead of {} pixels", frames, scene, columns,
+                map.getRows(), (long) frames * width * height);
+        long start = System.nanoTime();
+
+        EscapeTimeEngine engine = new EscapeTimeEngine();
+        Colorizer colorizer = new Colorizer(scene.getPalette());
+        colorizer.setOffset(scene.getOffset());
+        ExecutorService output = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "zoom-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        int[] ring = new int[ringRows * columns];
+        IterationBuffer buffer = new IterationBuffer(columns, chunk);
+        int[] colours = new int[columns * chunk];
+        // a frame is sampled into one while the other is written
+        int[][] pixels = {new int[width * height], new int[width * height]};
+        CompletableFuture<?>[] writes = {CompletableFuture.completedFuture(null), CompletableFuture.completedFuture(null)};
+        try {
+            ReferenceOrbit orbit = map.reference(scene.getMaxIter());
+            log.debug("Reference orbit of {} points", orbit.getLength());
+            int rendered = 0;
+            for (int frame = 0; frame < frames; frame++) {
+                double scale = scene.getStartScale()
+                        * Math.pow(scene.getScale() / scene.getStartScale(), frame / (double) (frames - 1));
+                // the centre pixel of the frame, plus one row to interpolate towards
+                int needed = Math.min(map.getRows(), (int) Math.ceil(map.row(scale / 2)) + 2);
+                while (rendered < needed) {
+                    int rows = Math.min(chunk, map.getRows() - rendered);
+                    if (!buffer.fits(columns, rows)) {
+                        buffer = new IterationBuffer(columns, rows);
+                    }
+                    map.render(engine, orbit, rendered, scene.getMaxIter(), buffer);
+                    colorizer.apply(buffer, map.radius(rendered) * map.getStep(), scene.getMaxIter(), null,
+                            IntBuffer.wrap(colours, 0, rows * columns), engine.getPool());
+                    for (int r = 0; r < rows; r++) {
+                        System.arraycopy(colours, r * columns, ring, ((rendered + r) % ringRows) * columns, columns);
+                    }
+                    rendered += rows;
+                }
+
+                int slot = frame & 1;
+                BatchRenderer.join(writes[slot]);
+                int[] argb = pixels[slot];
+                sample(map, ring, ringRows, scale, argb, engine);
+                Path path = framePath(frame);
+                writes[slot] = CompletableFuture.runAsync(() -> {
+                    try (ImageStripWriter writer = ImageStripWriter.open(path, width, height, engine.getPool())) {
+                        writer.write(argb, height);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }, output);
+                log.info("Frame {} of {}, {} of {} strip rows", frame + 1, frames, rendered, map.getRows());
+            }
+            BatchRenderer.join(writes[0]);
+            BatchRenderer.join(writes[1]);
+        } finally {
+            CompletableFuture.allOf(writes).handle((v, e) -> null).join();
+            output.shutdownNow();
+            engine.shutdown();
+        }
+        log.info("Wrote {} frames in {} s", frames, (System.nanoTime() - start) / 1_000_000_000);
+    }
+
+    // bilinear samples of the ring for a frame with pixels of the given size, top row first
+    private void sample(ExponentialMap map, int[] ring, int ringRows, double scale, int[] argb, EscapeTimeEngine engine) {
+        int width = scene.getWidth();
+        int height = scene.getHeight();
+        int columns = map.getColumns();
+        int lastRow = map.getRows() - 1;
+        double step = map.getStep();
+        engine.getPool().invoke(ForkJoinTask.adapt(() -> IntStream.range(0, height).parallel().forEach(py -> {
+            // same pixel grid as ViewPort, whose row 0 is the bottom one
+            double dy = (height - 1 - py - height / 2) * scale;
+            for (int px = 0, i = py * width; px < width; px++, i++) {
+                double dx = (px - width / 2) * scale;
+                // inside half a pixel of the centre every direction gives the same colour
+                double radius = Math.max(Math.hypot(dx, dy), scale / 2);
+                double u = Math.atan2(dy, dx) / step;
+                if (u < 0) {
+                    u += columns;
+                }
+                double v = Math.min(map.row(radius), lastRow);
+                int u0 = Math.min((int) u, columns - 1);
+                int v0 = Math.min((int) v, lastRow - 1);
+                double fu = u - u0;
+                double fv = v - v0;
+                int u1 = u0 + 1 == columns ? 0 : u0 + 1;
+                int row0 = (v0 % ringRows) * columns;
+                int row1 = ((v0 + 1) % ringRows) * columns;
+                argb[i] = mix(mix(ring[row0 + u0], ring[row0 + u1], fu), mix(ring[row1 + u0], ring[row1 + u1], fu), fv);
+            }
+        })));
+    }
+
+    private static int mix(int a, int b, double t) {
+        int r = (int) Math.round(((a >> 16) & 0xFF) * (1 - t) + ((b >> 16) & 0xFF) * t);
+        int g = (int) Math.round(((a >> 8) & 0xFF) * (1 - t) + ((b >> 8) & 0xFF) * t);
+        int bl = (int) Math.round((a & 0xFF) * (1 - t) + (b & 0xFF) * t);
+        return 0xFF000000 | r << 16 | g << 8 | bl;
+    }
+
+    // out.png becomes out-00000.png, out-00001.png and so on
+    private Path framePath(int frame) {
+        Path out = scene.getOutput();
+        String name = out.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        int digits = Math.max(5, String.valueOf(scene.getFrames() - 1).length());
+        String numbered = name.substring(0, dot) + "-" + String.format("%0" + digits + "d", frame) + name.substring(dot);
+        return out.resolveSibling(numbered);
+    }
+}
@@ -0,0 +1,204 @@
+package com.gdi.jfxfractals.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.IntStream;
+
+/**
+ * 8 bit RGB BigTIFF written strip by strip, for images past the 4 GB a classic TIFF can address.
+ * The image is stored as deflated TIFF strips of a fixed number of rows with the horizontal
+ * predictor, compressed in parallel and written in order; the directory that points at them
+ * goes at the end of the file once all their offsets are known.
+ */
+public class BigTiffStripWriter implements ImageStripWriter {
+
+    private static final int BLOCK_BYTES = 1 << 20;
+    private static final int HEADER_SIZE = 16;
+
+    private static final short SHORT = 3;
+    private static final short LONG = 4;
+    private static final short LONG8 = 16;
+
+    private static final short COMPRESSION_DEFLATE = 8;
+    private static final short PHOTOMETRIC_RGB = 2;
+    private static final short PLANAR_CHUNKY = 1;
+    private static final short PREDICTOR_HORIZONTAL = 2;
+
+    private final FileChannel channel;
+    private final ForkJoinPool pool;
+    private final int width;
+    private final int height;
+    private final int rowsPerStrip;
+    private final long[] offsets;
+    private final long[] counts;
+    // rows of the next TIFF strip that did not fill it yet
+    private final int[] pending;
+    private int pendingRows;
+    private int written;
+    private int strips;
+
+    public BigTiffStripWriter(Path path, int width, int height, ForkJoinPool pool) throws IOException {
+        if (width <= 0 || height <= 0 || 3L * width > Integer.MAX_VALUE / 2) {
+            throw new IllegalArgumentException("Invalid image size " + width + "x" + height);
+        }
+        this.width = width;
+        this.height = height;
+        this.pool = pool;
+        this.rowsPerStrip = Math.max(1, Math.min(height, BLOCK_BYTES / (3 * width)));
+        int count = (height + rowsPerStrip - 1) / rowsPerStrip;
+        this.offsets = new long[count];
+        this.counts = new long[count];
+        this.pending = new int[rowsPerStrip * width];
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        ByteBuffer header = buffer(HEADER_SIZE);
+        // little endian, version 43, 8 byte offsets, directory offset filled in by close()
+        header.put((byte) 'I').put((byte) 'I').putShort((short) 43).putShort((short) 8).putShort((short) 0).putLong(0);
+        writeFully(header.flip());
+    }
+
+    @Override
+    public void write(int[] argb, int rows) throws IOException {
+        if (rows > height - written) {
+            throw new IOException("More rows than the image has");
+        }
+        int row = 0;
+        // top up the strip left over from the last call
+        if (pendingRows > 0) {
+            int n = Math.min(rows, rowsPerStrip - pendingRows);
+            System.arraycopy(argb, 0, pending, pendingRows * width, n * width);
+            pendingRows += n;
+            row = n;
+            if (pendingRows == rowsPerStrip) {
+                writeStrips(pending, 0, 1, rowsPerStrip);
+                pendingRows = 0;
+            }
+        }
+        if (pendingRows == 0) {
+            int full = (rows - row) / rowsPerStrip;
+            writeStrips(argb, row, full, rowsPerStrip);
+            row += full * rowsPerStrip;
+            pendingRows = rows - row;
+            System.arraycopy(argb, row * width, pending, 0, pendingRows * width);
+        }
+        written += rows;
+        // the last strip of the image may be short
+        if (written == height && pendingRows > 0) {
+            writeStrips(pending, 0, 1, pendingRows);
+            pendingRows = 0;
+        }
+    }
+
+    // writes count strips of stripRows rows each from argb starting at row
+    private void writeStrips(int[] argb, int row, int count, int stripRows) throws IOException {
+        if (count == 0) {
+            return;
+        }
+        byte[][] packed = new byte[count][];
+        pool.invoke(ForkJoinTask.adapt(() -> IntStream.range(0, count).parallel().forEach(strip -> {
+            byte[] raw = predict(argb, row + strip * stripRows, stripRows);
+            packed[strip] = Deflation.deflate(raw, raw.length, true, true);
+        })));
+        for (byte[] data : packed) {
+            offsets[strips] = channel.position();
+            counts[strips] = data.length;
+            strips++;
+            writeFully(ByteBuffer.wrap(data));
+        }
+    }
+
+    // RGB samples of the rows, each stored as the difference to the same sample of the pixel on its left
+    private byte[] predict(int[] argb, int y0, int rows) {
+        byte[] raw = new byte[rows * width * 3];
+        int i = 0;
+        for (int y = y0; y < y0 + rows; y++) {
+            int left = 0;
+            for (int x = 0, p = y * width; x < width; x++, p++) {
+                int pixel = argb[p];
+                raw[i++] = (byte) ((pixel >> 16) - (left >> 16));
+                raw[i++] = (byte) ((pixel >> 8) - (left >> 8));
+                raw[i++] = (byte) (pixel - left);
+                left = pixel;
+            }
+        }
+        return raw;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (written != height) {
+                throw new IOException("Image incomplete, " + written + " of " + height + " rows written");
+            }
+            writeDirectory();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void writeDirectory() throws IOException {
+        // TIFF wants word aligned offsets
+        if ((channel.position() & 1) != 0) {
+            writeFully(ByteBuffer.allocate(1));
+        }
+        // arrays of one strip fit into their directory entries
+        long offsetsAt = strips > 1 ? writeArray(offsets) : offsets[0];
+        long countsAt = strips > 1 ? writeArray(counts) : counts[0];
+        long directory = channel.position();
+
+        int entries = 11;
+        ByteBuffer ifd = buffer(8 + entries * 20 + 8);
+        ifd.putLong(entries);
+        entry(ifd, 256, LONG, 1, width);
+        entry(ifd, 257, LONG, 1, height);
+        // three shorts of 8 bits each, packed into the value field
+        entry(ifd, 258, SHORT, 3, 8L | 8L << 16 | 8L << 32);
+        entry(ifd, 259, SHORT, 1, COMPRESSION_DEFLATE);
+        entry(ifd, 262, SHORT, 1, PHOTOMETRIC_RGB);
+        entry(ifd, 273, LONG8, strips, offsetsAt);
+        entry(ifd, 277, SHORT, 1, 3);
+        entry(ifd, 278, LONG, 1, rowsPerStrip);
+        entry(ifd, 279, LONG8, strips, countsAt);
+        entry(ifd, 284, SHORT, 1, PLANAR_CHUNKY);
+        entry(ifd, 317, SHORT, 1, PREDICTOR_HORIZONTAL);
+        // no further directories
+        ifd.putLong(0);
+        writeFully(ifd.flip());
+
+        ByteBuffer pointer = buffer(8).putLong(directory).flip();
+        while (pointer.hasRemaining()) {
+            channel.write(pointer, 8 + pointer.position());
+        }
+    }
+
+    private long writeArray(long[] values) throws IOException {
+        long at = channel.position();
+        ByteBuffer array = buffer(strips * 8);
+        for (long value : Arrays.copyOf(values, strips)) {
+            array.putLong(value);
+        }
+        writeFully(array.flip());
+        return at;
+    }
+
+    private static void entry(ByteBuffer ifd, int tag, short type, long count, long value) {
+        ifd.putShort((short) tag).putShort(type).putLong(count).putLong(value);
+    }
+
+    private static ByteBuffer buffer(int size) {
+        return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.gdi.jfxfractals.io;
+
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
+/**
+ * Compresses independent blocks of an image, so blocks can be deflated on different cores.
+ */
+final class Deflation {
+
+    private Deflation() {
+    }
+
+    /**
+     * Deflates {@code data[0, length)}. A raw block that is not the {@code last} one ends on a
+     * byte boundary without a final block, ready for the next one to be appended, the way pigz
+     * splits a stream. A {@code zlib} block is always a complete stream of its own.
+     */
+    static byte[] deflate(byte[] data, int length, boolean zlib, boolean last) {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, !zlib);
+        try {
+            deflater.setInput(data, 0, length);
+            boolean finish = zlib || last;
+            if (finish) {
+                deflater.finish();
+            }
+            byte[] out = new byte[Math.max(64, length / 4)];
+            int size = 0;
+            while (true) {
+                if (size == out.length) {
+                    out = Arrays.copyOf(out, out.length * 2);
+                }
+                int space = out.length - size;
+                int n = deflater.deflate(out, size, space, finish ? Deflater.NO_FLUSH : Deflater.SYNC_FLUSH);
+                size += n;
+                // a sync flush is complete once it leaves room in the output
+                if (finish ? deflater.finished() : n < space) {
+                    return Arrays.copyOf(out, size);
+                }
+            }
+        } finally {
+            deflater.end();
+        }
+    }
+}
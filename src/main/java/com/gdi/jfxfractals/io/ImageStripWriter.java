@@ -0,0 +1,34 @@
+package com.gdi.jfxfractals.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Writes an image of known size as it is rendered, a band of rows at a time, so images larger
+ * than memory never have to be held in one piece. {@link #close()} fails unless every row of the
+ * image was written.
+ */
+public interface ImageStripWriter extends Closeable {
+
+    /**
+     * Appends {@code rows} rows of opaque ARGB pixels from {@code argb}, top row first.
+     */
+    void write(int[] argb, int rows) throws IOException;
+
+    /**
+     * A PNG or BigTIFF writer, picked by the extension of {@code path}. Compression runs on {@code pool}.
+     */
+    static ImageStripWriter open(Path path, int width, int height, ForkJoinPool pool) throws IOException {
+        String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (name.endsWith(".png")) {
+            return new PngStripWriter(path, width, height, pool);
+        }
+        if (name.endsWith(".tif") || name.endsWith(".tiff")) {
+            return new BigTiffStripWriter(path, width, height, pool);
+        }
+        throw new IllegalArgumentException("Unsupported image type " + path + ", expected .png, .tif or .tiff");
+    }
+}
@@ -0,0 +1,130 @@
+package com.gdi.jfxfractals.io;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.IntStream;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+
+/**
+ * 8 bit RGB PNG written strip by strip. The rows of a strip are cut into blocks that are
+ * filtered and deflated in parallel; the blocks join into the single zlib stream PNG wants, each
+ * written as an IDAT chunk of its own.
+ */
+public class PngStripWriter implements ImageStripWriter {
+
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    // deflate with the default 32K window
+    private static final byte[] ZLIB_HEADER = {0x78, (byte) 0x9C};
+    private static final int BLOCK_BYTES = 1 << 20;
+    private static final int FILTER_SUB = 1;
+
+    private final DataOutputStream out;
+    private final ForkJoinPool pool;
+    private final int width;
+    private final int height;
+    private final int rowBytes;
+    private final int blockRows;
+    private final Adler32 adler = new Adler32();
+    private int written;
+
+    public PngStripWriter(Path path, int width, int height, ForkJoinPool pool) throws IOException {
+        if (width <= 0 || height <= 0 || 3L * width + 1 > Integer.MAX_VALUE / 2) {
+            throw new IllegalArgumentException("Invalid image size " + width + "x" + height);
+        }
+        this.width = width;
+        this.height = height;
+        this.pool = pool;
+        this.rowBytes = 3 * width + 1;
+        this.blockRows = Math.max(1, BLOCK_BYTES / rowBytes);
+        this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 1 << 16));
+        out.write(SIGNATURE);
+        byte[] ihdr = new byte[13];
+        writeInt(ihdr, 0, width);
+        writeInt(ihdr, 4, height);
+        ihdr[8] = 8;
+        // truecolour, deflate, adaptive filtering, no interlace
+        ihdr[9] = 2;
+        chunk("IHDR", ihdr, ihdr.length);
+        chunk("IDAT", ZLIB_HEADER, ZLIB_HEADER.length);
+    }
+
+    @Override
+    public void write(int[] argb, int rows) throws IOException {
+        if (rows > height - written) {
+            throw new IOException("More rows than the image has");
+        }
+        int blocks = (rows + blockRows - 1) / blockRows;
+        boolean lastStrip = written + rows == height;
+        byte[][] raw = new byte[blocks][];
+        byte[][] packed = new byte[blocks][];
+        pool.invoke(ForkJoinTask.adapt(() -> IntStream.range(0, blocks).parallel().forEach(block -> {
+            int y0 = block * blockRows;
+            int y1 = Math.min(rows, y0 + blockRows);
+            raw[block] = filter(argb, y0, y1);
+            packed[block] = Deflation.deflate(raw[block], raw[block].length, false, lastStrip && y1 == rows);
+        })));
+        for (int block = 0; block < blocks; block++) {
+            adler.update(raw[block]);
+            chunk("IDAT", packed[block], packed[block].length);
+        }
+        written += rows;
+    }
+
+    // rows [y0, y1) of the strip as scanlines, each one stored as the difference to its left neighbour
+    private byte[] filter(int[] argb, int y0, int y1) {
+        byte[] raw = new byte[(y1 - y0) * rowBytes];
+        int i = 0;
+        for (int y = y0; y < y1; y++) {
+            raw[i++] = FILTER_SUB;
+            int left = 0;
+            for (int x = 0, p = y * width; x < width; x++, p++) {
+                int pixel = argb[p];
+                raw[i++] = (byte) ((pixel >> 16) - (left >> 16));
+                raw[i++] = (byte) ((pixel >> 8) - (left >> 8));
+                raw[i++] = (byte) (pixel - left);
+                left = pixel;
+            }
+        }
+        return raw;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (written != height) {
+                throw new IOException("Image incomplete, " + written + " of " + height + " rows written");
+            }
+            byte[] trailer = new byte[4];
+            writeInt(trailer, 0, (int) adler.getValue());
+            chunk("IDAT", trailer, trailer.length);
+            chunk("IEND", trailer, 0);
+        } finally {
+            out.close();
+        }
+    }
+
+    private void chunk(String type, byte[] data, int length) throws IOException {
+        byte[] name = type.getBytes(StandardCharsets.US_ASCII);
+        CRC32 crc = new CRC32();
+        crc.update(name);
+        crc.update(data, 0, length);
+        out.writeInt(length);
+        out.write(name);
+        out.write(data, 0, length);
+        out.writeInt((int) crc.getValue());
+    }
+
+    private static void writeInt(byte[] b, int offset, int value) {
+        b[offset] = (byte) (value >>> 24);
+        b[offset + 1] = (byte) (value >>> 16);
+        b[offset + 2] = (byte) (value >>> 8);
+        b[offset + 3] = (byte) value;
+    }
+}
@@ -0,0 +1,83 @@
+package com.gdi.jfxfractals.renderer;
+
+import com.gdi.jfxfractals.renderer.utils.GLFunctions;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL30;
+
+import java.nio.ByteBuffer;
+
+/**
+ * An offscreen 32 bit float render target, for passes that output data such as smooth iteration
+ * counts and distances rather than colours, or colours that are summed over many passes. Two
+ * channels unless another format is given.
+ */
+public class FloatTarget {
+
+    public final int width;
+    public final int height;
+
+    private final int bufferID;
+    private final int textureID;
+
+    public FloatTarget(int w, int h) {
+        this(w, h, GL30.GL_RG32F);
+    }
+
+    /**
+     * A target of {@code GL_R32F}, {@code GL_RG32F} or {@code GL_RGBA32F}.
+     */
+    public FloatTarget(int w, int h, int format) {
+        width = w;
+        height = h;
+
+        textureID = GL11.glGenTextures();
+        GL11.glBindTexture(GL11.GL_TEXTURE_2D, textureID);
+        GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MIN_FILTER, GL11.GL_NEAREST);
+        GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MAG_FILTER, GL11.GL_NEAREST);
+        GL11.glTexImage2D(GL11.GL_TEXTURE_2D, 0, format, width, height, 0, GL11.GL_RGBA, GL11.GL_FLOAT, (ByteBuffer) null);
+        GL11.glBindTexture(GL11.GL_TEXTURE_2D, 0);
+
+        int previous = GL11.glGetInteger(GL30.GL_FRAMEBUFFER_BINDING);
+        bufferID = GL30.glGenFramebuffers();
+        GL30.glBindFramebuffer(GL30.GL_FRAMEBUFFER, bufferID);
+        GL30.glFramebufferTexture2D(GL30.GL_FRAMEBUFFER, GL30.GL_COLOR_ATTACHMENT0, GL11.GL_TEXTURE_2D, textureID, 0);
+        if (GL30.glCheckFramebufferStatus(GL30.GL_FRAMEBUFFER) != GL30.GL_FRAMEBUFFER_COMPLETE) {
+            System.err.println("Float target incomplete");
+        }
+        GL30.glBindFramebuffer(GL30.GL_FRAMEBUFFER, previous);
+        GLFunctions.printGLErrors("Float target alloc");
+    }
+
+    public boolean fits(int w, int h) {
+        return width == w && height == h;
+    }
+
+    /**
+     * Directs drawing into this target and returns the framebuffer that was bound before.
+     */
+    public int bind() {
+        int previous = GL11.glGetInteger(GL30.GL_FRAMEBUFFER_BINDING);
+        GL30.glBindFramebuffer(GL30.GL_FRAMEBUFFER, bufferID);
+        GL11.glViewport(0, 0, width, height);
+        return previous;
+    }
+
+    /**
+     * Copies the target into the framebuffer bound for drawing, converting to its format.
+     */
+    public void blit() {
+        int previous = GL11.glGetInteger(GL30.GL_READ_FRAMEBUFFER_BINDING);
+        GL30.glBindFramebuffer(GL30.GL_READ_FRAMEBUFFER, bufferID);
+        GL30.glBlitFramebuffer(0, 0, width, height, 0, 0, width, height, GL11.GL_COLOR_BUFFER_BIT, GL11.GL_NEAREST);
+        GL30.glBindFramebuffer(GL30.GL_READ_FRAMEBUFFER, previous);
+    }
+
+    public int getTextureID() {
+        return textureID;
+    }
+
+    public void delete() {
+        GL30.glDeleteFramebuffers(bufferID);
+        GL11.glDeleteTextures(textureID);
+    }
+}
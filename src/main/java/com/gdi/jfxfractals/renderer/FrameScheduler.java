@@ -0,0 +1,72 @@
+package com.gdi.jfxfractals.renderer;
+
+/**
+ * Decides when the render thread draws the next frame. Frames are drawn when something asked for
+ * one through {@link #requestFrame()}, e.g. an input handler or a worker that finished a frame,
+ * or back to back while the renderer still has work to show, never faster than the target rate.
+ * In between the render thread is parked instead of spinning.
+ */
+public class FrameScheduler {
+
+    public static final int DEFAULT_RATE = 60;
+
+    private final long periodNanos;
+    private final Object lock = new Object();
+    // the first frame is always drawn
+    private boolean requested = true;
+    private boolean stopped;
+    private long lastFrame;
+
+    public FrameScheduler() {
+        this(DEFAULT_RATE);
+    }
+
+    public FrameScheduler(int rate) {
+        periodNanos = 1_000_000_000L / rate;
+        lastFrame = System.nanoTime() - periodNanos;
+    }
+
+    /**
+     * Has the render thread draw another frame as soon as the rate allows. Safe on any thread.
+     */
+    public void requestFrame() {
+        synchronized (lock) {
+            requested = true;
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Blocks until the next frame is due: one was requested, or {@code continuous} is set because
+     * the last frame was not the final picture yet. Returns {@code false} once stopped.
+     */
+    public boolean awaitFrame(boolean continuous) {
+        synchronized (lock) {
+            try {
+                while (!stopped && !requested && !continuous) {
+                    lock.wait();
+                }
+                long left;
+                while (!stopped && (left = periodNanos - (System.nanoTime() - lastFrame)) > 0) {
+                    lock.wait(left / 1_000_000, (int) (left % 1_000_000));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                stopped = true;
+            }
+            requested = false;
+            lastFrame = System.nanoTime();
+            return !stopped;
+        }
+    }
+
+    /**
+     * Releases the render thread, which draws no further frames.
+     */
+    public void stop() {
+        synchronized (lock) {
+            stopped = true;
+            lock.notifyAll();
+        }
+    }
+}
@@ -19,4 +19,21 @@ public interface IFractalRender {
 
     void setDriftFxSurface(DriftFXSurface driftFXSurface);
 
+    /**
+     * The scheduler of the render thread, for renderers that ask for frames when they change.
+     */
+    default void setScheduler(FrameScheduler scheduler) {
+    }
+
+    default void requestFrame() {
+    }
+
+    /**
+     * Whether the frame just drawn is not the final picture yet, so the next one is drawn without
+     * being requested. Renderers that never request frames keep redrawing at the frame rate.
+     */
+    default boolean needsFrame() {
+        return true;
+    }
+
 }
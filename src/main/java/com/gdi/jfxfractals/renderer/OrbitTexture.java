@@ -0,0 +1,70 @@
+package com.gdi.jfxfractals.renderer;
+
+import com.gdi.jfxfractals.renderer.utils.GLFunctions;
+import org.lwjgl.BufferUtils;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL15;
+import org.lwjgl.opengl.GL30;
+import org.lwjgl.opengl.GL31;
+
+import java.nio.IntBuffer;
+
+/**
+ * A sequence of complex doubles as a buffer texture, one RGBA32UI texel per point holding the bits
+ * of the real and imaginary part. Shaders read a point back exactly with
+ * {@code packDouble2x32(texelFetch(orbit, n).xy)} and {@code .zw}, which no float texture format
+ * could do.
+ */
+public class OrbitTexture {
+
+    private final int bufferID;
+    private final int textureID;
+    private int length;
+
+    public OrbitTexture() {
+        bufferID = GL15.glGenBuffers();
+        textureID = GL11.glGenTextures();
+    }
+
+    /**
+     * Largest number of points the driver accepts in one buffer texture.
+     */
+    public static int maxLength() {
+        return GL11.glGetInteger(GL31.GL_MAX_TEXTURE_BUFFER_SIZE);
+    }
+
+    public void upload(double[] re, double[] im, int length) {
+        IntBuffer bits = BufferUtils.createIntBuffer(length * 4);
+        for (int n = 0; n < length; n++) {
+            long x = Double.doubleToRawLongBits(re[n]);
+            long y = Double.doubleToRawLongBits(im[n]);
+            // low word first, the order packDouble2x32 expects
+            bits.put((int) x).put((int) (x >>> 32)).put((int) y).put((int) (y >>> 32));
+        }
+        bits.flip();
+        GL15.glBindBuffer(GL31.GL_TEXTURE_BUFFER, bufferID);
+        GL15.glBufferData(GL31.GL_TEXTURE_BUFFER, bits, GL15.GL_STATIC_DRAW);
+        GL15.glBindBuffer(GL31.GL_TEXTURE_BUFFER, 0);
+        GL11.glBindTexture(GL31.GL_TEXTURE_BUFFER, textureID);
+        GL31.glTexBuffer(GL31.GL_TEXTURE_BUFFER, GL30.GL_RGBA32UI, bufferID);
+        GL11.glBindTexture(GL31.GL_TEXTURE_BUFFER, 0);
+        this.length = length;
+        GLFunctions.printGLErrors("Orbit upload");
+    }
+
+    /**
+     * Number of points uploaded last.
+     */
+    public int getLength() {
+        return length;
+    }
+
+    public int getTextureID() {
+        return textureID;
+    }
+
+    public void delete() {
+        GL11.glDeleteTextures(textureID);
+        GL15.glDeleteBuffers(bufferID);
+    }
+}
@@ -0,0 +1,50 @@
+package com.gdi.jfxfractals.renderer;
+
+import com.gdi.jfxfractals.renderer.utils.GLFunctions;
+import org.lwjgl.BufferUtils;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL12;
+
+import java.nio.IntBuffer;
+
+/**
+ * A colour lookup table as a 1D texture, so palette changes are a small upload instead of a
+ * recompute. Repeating palettes wrap, the others clamp to their end colours.
+ */
+public class PaletteTexture {
+
+    private final int textureID;
+    private Object uploaded;
+
+    public PaletteTexture() {
+        textureID = GL11.glGenTextures();
+    }
+
+    /**
+     * Uploads {@code argb} unless {@code source} is what was uploaded last.
+     */
+    public void upload(Object source, int[] argb, boolean repeat) {
+        if (source == uploaded) {
+            return;
+        }
+        IntBuffer pixels = BufferUtils.createIntBuffer(argb.length);
+        pixels.put(argb).flip();
+        int wrap = repeat ? GL11.GL_REPEAT : GL12.GL_CLAMP_TO_EDGE;
+        GL11.glBindTexture(GL11.GL_TEXTURE_1D, textureID);
+        GL11.glTexParameteri(GL11.GL_TEXTURE_1D, GL11.GL_TEXTURE_MIN_FILTER, GL11.GL_LINEAR);
+        GL11.glTexParameteri(GL11.GL_TEXTURE_1D, GL11.GL_TEXTURE_MAG_FILTER, GL11.GL_LINEAR);
+        GL11.glTexParameteri(GL11.GL_TEXTURE_1D, GL11.GL_TEXTURE_WRAP_S, wrap);
+        GL11.glTexImage1D(GL11.GL_TEXTURE_1D, 0, GL11.GL_RGBA8, argb.length, 0, GL12.GL_BGRA, GL12.GL_UNSIGNED_INT_8_8_8_8_REV, pixels);
+        GL11.glBindTexture(GL11.GL_TEXTURE_1D, 0);
+        uploaded = source;
+        GLFunctions.printGLErrors("Palette upload");
+    }
+
+    public int getTextureID() {
+        return textureID;
+    }
+
+    public void delete() {
+        GL11.glDeleteTextures(textureID);
+    }
+}
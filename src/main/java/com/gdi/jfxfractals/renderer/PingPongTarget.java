@@ -0,0 +1,122 @@
+package com.gdi.jfxfractals.renderer;
+
+import com.gdi.jfxfractals.renderer.utils.GLFunctions;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL20;
+import org.lwjgl.opengl.GL30;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Two offscreen framebuffers with the same colour attachments, for passes that carry state from
+ * one draw to the next: the pass reads the textures of the latest set and draws into the other
+ * one, then {@link #swap()} makes that the latest. Attachments are 32 bit float or unsigned
+ * integer formats, e.g. {@code GL_RG32F} or {@code GL_RGBA32UI}.
+ */
+public class PingPongTarget {
+
+    public final int width;
+    public final int height;
+
+    private final int[] bufferIDs = new int[2];
+    private final int[][] textureIDs;
+    // the set holding the latest state
+    private int current;
+
+    public PingPongTarget(int w, int h, int... formats) {
+        width = w;
+        height = h;
+        textureIDs = new int[2][formats.length];
+
+        int previous = GL11.glGetInteger(GL30.GL_FRAMEBUFFER_BINDING);
+        int[] drawBuffers = new int[formats.length];
+        for (int set = 0; set < 2; set++) {
+            bufferIDs[set] = GL30.glGenFramebuffers();
+            GL30.glBindFramebuffer(GL30.GL_FRAMEBUFFER, bufferIDs[set]);
+            for (int i = 0; i < formats.length; i++) {
+                int texture = GL11.glGenTextures();
+                GL11.glBindTexture(GL11.GL_TEXTURE_2D, texture);
+                GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MIN_FILTER, GL11.GL_NEAREST);
+                GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MAG_FILTER, GL11.GL_NEAREST);
+                GL11.glTexImage2D(GL11.GL_TEXTURE_2D, 0, formats[i], width, height, 0, pixelFormat(formats[i]),
+                        pixelType(formats[i]), (ByteBuffer) null);
+                GL30.glFramebufferTexture2D(GL30.GL_FRAMEBUFFER, GL30.GL_COLOR_ATTACHMENT0 + i, GL11.GL_TEXTURE_2D, texture, 0);
+                textureIDs[set][i] = texture;
+                drawBuffers[i] = GL30.GL_COLOR_ATTACHMENT0 + i;
+            }
+            // the draw buffers are framebuffer state, set once here
+            GL20.glDrawBuffers(drawBuffers);
+            if (GL30.glCheckFramebufferStatus(GL30.GL_FRAMEBUFFER) != GL30.GL_FRAMEBUFFER_COMPLETE) {
+                System.err.println("Ping-pong target incomplete");
+            }
+        }
+        GL11.glBindTexture(GL11.GL_TEXTURE_2D, 0);
+        GL30.glBindFramebuffer(GL30.GL_FRAMEBUFFER, previous);
+        GLFunctions.printGLErrors("Ping-pong target alloc");
+    }
+
+    private static int pixelFormat(int format) {
+        switch (format) {
+            case GL30.GL_R32F:
+                return GL11.GL_RED;
+            case GL30.GL_RG32F:
+                return GL30.GL_RG;
+            case GL30.GL_RGBA32F:
+                return GL11.GL_RGBA;
+            case GL30.GL_R32UI:
+                return GL30.GL_RED_INTEGER;
+            case GL30.GL_RG32UI:
+                return GL30.GL_RG_INTEGER;
+            case GL30.GL_RGBA32UI:
+                return GL30.GL_RGBA_INTEGER;
+            default:
+                throw new IllegalArgumentException("Unsupported format " + format);
+        }
+    }
+
+    private static int pixelType(int format) {
+        switch (format) {
+            case GL30.GL_R32UI:
+            case GL30.GL_RG32UI:
+            case GL30.GL_RGBA32UI:
+                return GL11.GL_UNSIGNED_INT;
+            default:
+                return GL11.GL_FLOAT;
+        }
+    }
+
+    public boolean fits(int w, int h) {
+        return width == w && height == h;
+    }
+
+    /**
+     * Directs drawing into the set after the latest one and returns the framebuffer that was bound before.
+     */
+    public int bind() {
+        int previous = GL11.glGetInteger(GL30.GL_FRAMEBUFFER_BINDING);
+        GL30.glBindFramebuffer(GL30.GL_FRAMEBUFFER, bufferIDs[1 - current]);
+        GL11.glViewport(0, 0, width, height);
+        return previous;
+    }
+
+    /**
+     * Makes the set last drawn into the latest.
+     */
+    public void swap() {
+        current = 1 - current;
+    }
+
+    /**
+     * Texture of an attachment of the latest set.
+     */
+    public int getTextureID(int attachment) {
+        return textureIDs[current][attachment];
+    }
+
+    public void delete() {
+        for (int set = 0; set < 2; set++) {
+            GL30.glDeleteFramebuffers(bufferIDs[set]);
+            GL11.glDeleteTextures(textureIDs[set]);
+        }
+    }
+}
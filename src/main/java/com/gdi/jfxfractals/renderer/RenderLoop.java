@@ -62,8 +62,12 @@ public class RenderLoop extends Thread {
     private int fps = 60;
     private int frameCount = 0;
 
+    // parks the loop between frames instead of yielding in a spin
+    private final FrameScheduler scheduler = new FrameScheduler((int) TARGET_FPS);
+
     public RenderLoop(IFractalRender render) {
         currentRenderer = render;
+        render.setScheduler(scheduler);
     }
 
     private void load() {
@@ -101,7 +105,7 @@ public class RenderLoop extends Thread {
 
     @Override
     public void run() {
-        while (!shouldClose) {
+        while (!shouldClose && scheduler.awaitFrame(currentRenderer.needsFrame())) {
             try {
                 double now = System.nanoTime();
                 int updateCount = 0;
@@ -135,14 +139,7 @@ public class RenderLoop extends Thread {
                     lastSecondTime = thisSecond;
                 }
 
-                //Yield until it has been at least the target time between renders. This saves the CPU from hogging.
-                while ( now - lastRenderTime < TARGET_TIME_BETWEEN_RENDERS && now - lastUpdateTime < TIME_BETWEEN_UPDATES)
-                {
-                    Thread.yield();
-                     try {Thread.sleep(1);} catch(Exception e) {}
-
-                    now = System.nanoTime();
-                }
+                //The scheduler holds the next render back until it is asked for and the target time between renders has passed.
 
 
 
@@ -179,6 +176,8 @@ public class RenderLoop extends Thread {
     private void renderLoop() throws InterruptedException {
         if (surface == null) {
             this.load();
+            // try again, or draw the first frame, without waiting for a request
+            scheduler.requestFrame();
             return;
         }
         Vec2i size = hook.getSize();
@@ -281,6 +280,7 @@ public class RenderLoop extends Thread {
 
     public void close() {
         shouldClose = true;
+        scheduler.stop();
     }
 
     public long getFPS() {
@@ -12,8 +12,11 @@ public class SceneRendererThread {
 
     private Thread thread;
 
+    private final FrameScheduler scheduler = new FrameScheduler();
+
     public SceneRendererThread(IFractalRender fractalRender) {
         this.fractalRender = fractalRender;
+        fractalRender.setScheduler(scheduler);
     }
 
     public void start() {
@@ -28,6 +31,8 @@ public class SceneRendererThread {
     public void stop() {
         if (alive) {
             alive = false;
+            // wakes the thread if it is parked between frames
+            scheduler.stop();
             try {
                 thread.join();
             } catch (InterruptedException e) {
@@ -62,7 +67,8 @@ public class SceneRendererThread {
             fractalRender.initialize();
 
 
-            while (alive) {
+            // parked until the renderer asks for a frame or is still drawing towards its final picture
+            while (alive && scheduler.awaitFrame(fractalRender.needsFrame())) {
                 fractalRender.update();
                 fractalRender.beforeFrame();
                 fractalRender.render();
@@ -0,0 +1,122 @@
+package com.gdi.jfxfractals.renderer;
+
+import com.gdi.jfxfractals.renderer.utils.GLFunctions;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL12;
+import org.lwjgl.opengl.GL15;
+import org.lwjgl.opengl.GL21;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+
+/**
+ * A texture fed from CPU side ARGB frames through a ring of pixel unpack buffers.
+ * Each upload writes into the next PBO and starts an asynchronous PBO to texture transfer,
+ * so the GL thread returns immediately and the copy overlaps with computing the next frame.
+ */
+public class StreamingTexture {
+
+    public static final int RING_SIZE = 2;
+
+    public final int width;
+    public final int height;
+
+    private final int textureID;
+    private final int[] pboIds = new int[RING_SIZE];
+    private int pboIndex = 0;
+
+    public StreamingTexture(int w, int h) {
+        width = w;
+        height = h;
+
+        textureID = GL11.glGenTextures();
+        GL11.glBindTexture(GL11.GL_TEXTURE_2D, textureID);
+        GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MIN_FILTER, GL11.GL_NEAREST);
+        GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MAG_FILTER, GL11.GL_NEAREST);
+        GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_WRAP_S, GL12.GL_CLAMP_TO_EDGE);
+        GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_WRAP_T, GL12.GL_CLAMP_TO_EDGE);
+        GL11.glTexImage2D(GL11.GL_TEXTURE_2D, 0, GL11.GL_RGBA8, width, height, 0, GL12.GL_BGRA, GL12.GL_UNSIGNED_INT_8_8_8_8_REV, (ByteBuffer) null);
+        GL11.glBindTexture(GL11.GL_TEXTURE_2D, 0);
+
+        long bytes = (long) width * height * 4;
+        for (int i = 0; i < pboIds.length; i++) {
+            pboIds[i] = GL15.glGenBuffers();
+            GL15.glBindBuffer(GL21.GL_PIXEL_UNPACK_BUFFER, pboIds[i]);
+            GL15.glBufferData(GL21.GL_PIXEL_UNPACK_BUFFER, bytes, GL15.GL_STREAM_DRAW);
+        }
+        GL15.glBindBuffer(GL21.GL_PIXEL_UNPACK_BUFFER, 0);
+        GLFunctions.printGLErrors("Streaming texture alloc");
+    }
+
+    public boolean fits(int w, int h) {
+        return width == w && height == h;
+    }
+
+    /**
+     * Streams a full frame of {@code width * height} ARGB pixels, bottom row first.
+     */
+    public void upload(IntBuffer argb) {
+        if (argb.remaining() != width * height) {
+            throw new IllegalArgumentException("Expected " + width * height + " pixels, got " + argb.remaining());
+        }
+        GL15.glBindBuffer(GL21.GL_PIXEL_UNPACK_BUFFER, pboIds[pboIndex]);
+        // orphan the old storage so the driver never waits on a transfer still reading it
+        GL15.glBufferData(GL21.GL_PIXEL_UNPACK_BUFFER, (long) width * height * 4, GL15.GL_STREAM_DRAW);
+        GL15.glBufferSubData(GL21.GL_PIXEL_UNPACK_BUFFER, 0, argb);
+
+        GL11.glBindTexture(GL11.GL_TEXTURE_2D, textureID);
+        GL11.glPixelStorei(GL11.GL_UNPACK_ALIGNMENT, 4);
+        GL11.glTexSubImage2D(GL11.GL_TEXTURE_2D, 0, 0, 0, width, height, GL12.GL_BGRA, GL12.GL_UNSIGNED_INT_8_8_8_8_REV, 0L);
+        GL11.glBindTexture(GL11.GL_TEXTURE_2D, 0);
+        GL15.glBindBuffer(GL21.GL_PIXEL_UNPACK_BUFFER, 0);
+
+        pboIndex = (pboIndex + 1) % pboIds.length;
+        GLFunctions.printGLErrors("Streaming texture upload");
+    }
+
+    /**
+     * Draws the texture as a single quad covering the current viewport.
+     */
+    public void draw() {
+        GL11.glPushAttrib(GL11.GL_ALL_ATTRIB_BITS);
+        GL11.glDisable(GL11.GL_DEPTH_TEST);
+        GL11.glDisable(GL11.GL_LIGHTING);
+        GL11.glDisable(GL11.GL_BLEND);
+        GL11.glEnable(GL11.GL_TEXTURE_2D);
+        GL11.glMatrixMode(GL11.GL_PROJECTION);
+        GL11.glPushMatrix();
+        GL11.glLoadIdentity();
+        GL11.glMatrixMode(GL11.GL_MODELVIEW);
+        GL11.glPushMatrix();
+        GL11.glLoadIdentity();
+        GL11.glColor4f(1, 1, 1, 1);
+
+        GL11.glBindTexture(GL11.GL_TEXTURE_2D, textureID);
+        GL11.glBegin(GL11.GL_QUADS);
+        GL11.glTexCoord2f(0, 0);
+        GL11.glVertex2d(-1, -1);
+        GL11.glTexCoord2f(1, 0);
+        GL11.glVertex2d(1, -1);
+        GL11.glTexCoord2f(1, 1);
+        GL11.glVertex2d(1, 1);
+        GL11.glTexCoord2f(0, 1);
+        GL11.glVertex2d(-1, 1);
+        GL11.glEnd();
+        GL11.glBindTexture(GL11.GL_TEXTURE_2D, 0);
+
+        GL11.glMatrixMode(GL11.GL_PROJECTION);
+        GL11.glPopMatrix();
+        GL11.glMatrixMode(GL11.GL_MODELVIEW);
+        GL11.glPopMatrix();
+        GL11.glPopAttrib();
+    }
+
+    public int getTextureID() {
+        return textureID;
+    }
+
+    public void delete() {
+        GL15.glDeleteBuffers(pboIds);
+        GL11.glDeleteTextures(textureID);
+    }
+}
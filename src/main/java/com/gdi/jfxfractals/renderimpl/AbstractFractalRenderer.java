@@ -1,6 +1,8 @@
 package com.gdi.jfxfractals.renderimpl;
 
+import com.gdi.jfxfractals.renderer.FrameScheduler;
 import com.gdi.jfxfractals.renderer.IFractalRender;
+import javafx.beans.InvalidationListener;
 import org.eclipse.fx.drift.*;
 import org.lwjgl.BufferUtils;
 import org.lwjgl.opengl.GLCapabilities;
@@ -43,6 +45,9 @@ public abstract class AbstractFractalRenderer implements IFractalRender {
 
     Callback debugProc;
     DriftFXSurface driftFxSurface;
+    private volatile FrameScheduler scheduler;
+    // a resized surface needs a new swapchain and frame
+    private final InvalidationListener onResize = observable -> requestFrame();
 
     @Override
     public void initialize() {
@@ -62,7 +67,13 @@ public abstract class AbstractFractalRenderer implements IFractalRender {
 
     @Override
     public void setDriftFxSurface(DriftFXSurface driftFXSurface) {
+        if (this.driftFxSurface != null) {
+            this.driftFxSurface.widthProperty().removeListener(onResize);
+            this.driftFxSurface.heightProperty().removeListener(onResize);
+        }
         this.driftFxSurface = driftFXSurface;
+        driftFXSurface.widthProperty().addListener(onResize);
+        driftFXSurface.heightProperty().addListener(onResize);
         this.renderer = GLRenderer.getRenderer(driftFXSurface);
         installListeners();
     }
@@ -72,6 +83,22 @@ public abstract class AbstractFractalRenderer implements IFractalRender {
 
     }
 
+    @Override
+    public void setScheduler(FrameScheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Has the render thread draw a frame for a change made on another thread, e.g. by an input handler.
+     */
+    @Override
+    public void requestFrame() {
+        FrameScheduler current = scheduler;
+        if (current != null) {
+            current.requestFrame();
+        }
+    }
+
     @Override
     public void setType(TransferType mode) {
         txType = StandardTransferTypes.MainMemory;
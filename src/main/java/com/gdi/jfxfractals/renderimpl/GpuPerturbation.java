@@ -0,0 +1,295 @@
+package com.gdi.jfxfractals.renderimpl;
+
+import com.gdi.jfxfractals.renderer.FloatTarget;
+import com.gdi.jfxfractals.renderer.OrbitTexture;
+import com.gdi.jfxfractals.renderimpl.escape.EscapeTimeEngine;
+import com.gdi.jfxfractals.renderimpl.escape.perturbation.DeepView;
+import com.gdi.jfxfractals.renderimpl.escape.perturbation.PerturbationRenderer;
+import com.gdi.jfxfractals.renderimpl.escape.perturbation.ReferenceOrbit;
+import com.gdi.jfxfractals.renderimpl.escape.perturbation.SeriesApproximation;
+import org.lwjgl.BufferUtils;
+import org.lwjgl.opengl.GL13;
+import org.lwjgl.opengl.GL30;
+import org.lwjgl.opengl.GL31;
+import org.lwjgl.opengl.GL40;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.nio.FloatBuffer;
+import java.util.concurrent.CompletableFuture;
+
+import static org.lwjgl.opengl.ARBShaderObjects.*;
+import static org.lwjgl.opengl.GL11.*;
+
+/**
+ * Deep zoom with the per pixel work on the GPU. Reference orbits are computed in arbitrary
+ * precision on a worker of the deep zoom engine and uploaded as an {@link OrbitTexture}, then
+ * perturb.shader iterates every pixel as a double delta against it. The pixels it flags as
+ * glitched are read back and the deepest one becomes the next reference, computed on the worker
+ * while the GL thread keeps drawing; later passes only iterate the pixels still glitched. Same
+ * strategy and reference budget as {@link PerturbationRenderer}. Only touched on the GL thread.
+ */
+class GpuPerturbation {
+
+    // smooth count perturb.shader writes for glitched pixels, must match its GLITCHED
+    static final float GLITCHED = -2f;
+
+    private final EscapeTimeEngine engine;
+    private final Runnable drawQuad;
+    // asks the render thread for a frame once a reference is ready
+    private final Runnable wake;
+    private final int program;
+    private final int uOrbit;
+    private final int uOrbitLength;
+    private final int uMaxIter;
+    private final int uScale;
+    private final int uCentre;
+    private final int uReference;
+    private final int uSkip;
+    private final int uSeriesA;
+    private final int uSeriesB;
+    private final int uSeriesC;
+    private final int uPrevious;
+    private final int uMask;
+    private final int maxOrbitLength;
+
+    private final OrbitTexture orbitTexture = new OrbitTexture();
+    // front holds the latest counts, back receives the next pass
+    private FloatTarget front;
+    private FloatTarget back;
+    private FloatBuffer readback;
+    private ReferenceOrbit primary;
+
+    // the frame in progress
+    private DeepView view;
+    private int maxIter;
+    private CompletableFuture<Reference> pending;
+    private int references;
+    private int remaining;
+    private boolean ready;
+
+    GpuPerturbation(int program, EscapeTimeEngine engine, Runnable drawQuad, Runnable wake) {
+        this.program = program;
+        this.engine = engine;
+        this.drawQuad = drawQuad;
+        this.wake = wake;
+        uOrbit = glGetUniformLocationARB(program, "u_Orbit");
+        uOrbitLength = glGetUniformLocationARB(program, "u_OrbitLength");
+        uMaxIter = glGetUniformLocationARB(program, "u_maxIter");
+        uScale = glGetUniformLocationARB(program, "u_Scale");
+        uCentre = glGetUniformLocationARB(program, "u_Centre");
+        uReference = glGetUniformLocationARB(program, "u_Reference");
+        uSkip = glGetUniformLocationARB(program, "u_Skip");
+        uSeriesA = glGetUniformLocationARB(program, "u_SeriesA");
+        uSeriesB = glGetUniformLocationARB(program, "u_SeriesB");
+        uSeriesC = glGetUniformLocationARB(program, "u_SeriesC");
+        uPrevious = glGetUniformLocationARB(program, "u_Previous");
+        uMask = glGetUniformLocationARB(program, "u_Mask");
+        maxOrbitLength = OrbitTexture.maxLength();
+    }
+
+    /**
+     * Whether an orbit of {@code maxIter} iterations fits in one buffer texture of this driver.
+     */
+    boolean supports(int maxIter) {
+        return maxIter < maxOrbitLength;
+    }
+
+    /**
+     * Moves on to {@code requested} once no reference is being computed for an earlier view, and
+     * runs the next pass whenever a reference is ready. Returns the target holding the latest
+     * counts, which may still show glitched pixels as interior, or {@code null} before the first pass.
+     */
+    FloatTarget update(DeepView requested, int iterations) {
+        if (front == null || !front.fits(requested.getWidth(), requested.getHeight())) {
+            delete();
+            front = new FloatTarget(requested.getWidth(), requested.getHeight());
+            back = new FloatTarget(requested.getWidth(), requested.getHeight());
+            readback = BufferUtils.createFloatBuffer(requested.getWidth() * requested.getHeight() * 2);
+            view = null;
+            ready = false;
+        }
+        if (pending != null) {
+            if (!pending.isDone()) {
+                return ready ? front : null;
+            }
+            Reference reference = null;
+            try {
+                reference = pending.join();
+            } catch (RuntimeException e) {
+                // leave the frame as it is, a new view starts over
+                System.err.println("Reference orbit failed: " + e.getMessage());
+            }
+            pending = null;
+            if (reference != null && sameView(requested, iterations)) {
+                pass(reference);
+            }
+        }
+        if (pending == null && !sameView(requested, iterations)) {
+            start(requested, iterations);
+        }
+        return ready ? front : null;
+    }
+
+    private void start(DeepView requested, int iterations) {
+        view = requested;
+        maxIter = iterations;
+        references = 0;
+        remaining = 0;
+        MathContext mc = requested.mathContext();
+        ReferenceOrbit cached = primary;
+        pending = CompletableFuture.supplyAsync(() -> {
+            ReferenceOrbit orbit = cached;
+            if (orbit == null || !orbit.matches(requested.getCentreX(), requested.getCentreY(), iterations, mc)) {
+                orbit = ReferenceOrbit.compute(requested.getCentreX(), requested.getCentreY(), iterations, mc);
+            }
+            return new Reference(orbit, SeriesApproximation.compute(orbit, requested.maxDelta()), 0, 0);
+        }, engine.getPool());
+        pending.whenComplete((reference, e) -> wake.run());
+    }
+
+    private void pass(Reference reference) {
+        if (references == 0) {
+            primary = reference.orbit;
+        }
+        ReferenceOrbit orbit = reference.orbit;
+        orbitTexture.upload(orbit.getZr(), orbit.getZi(), orbit.getLength());
+        double[] series = reference.series.getCoefficients();
+
+        int previous = back.bind();
+        glUseProgramObjectARB(program);
+        GL13.glActiveTexture(GL13.GL_TEXTURE0);
+        glBindTexture(GL31.GL_TEXTURE_BUFFER, orbitTexture.getTextureID());
+        GL13.glActiveTexture(GL13.GL_TEXTURE1);
+        glBindTexture(GL_TEXTURE_2D, front.getTextureID());
+        glUniform1iARB(uOrbit, 0);
+        glUniform1iARB(uPrevious, 1);
+        glUniform1iARB(uMask, references > 0 ? 1 : 0);
+        glUniform1iARB(uOrbitLength, orbit.getLength());
+        glUniform1fARB(uMaxIter, maxIter);
+        GL40.glUniform1d(uScale, view.getScale());
+        glUniform2iARB(uCentre, view.getWidth() / 2, view.getHeight() / 2);
+        GL40.glUniform2d(uReference, reference.x, reference.y);
+        glUniform1iARB(uSkip, reference.series.getSkip());
+        GL40.glUniform2d(uSeriesA, series[0], series[1]);
+        GL40.glUniform2d(uSeriesB, series[2], series[3]);
+        GL40.glUniform2d(uSeriesC, series[4], series[5]);
+
+        drawQuad.run();
+
+        // the glitch flags come back with the counts, the only readback per pass
+        readback.clear();
+        glReadPixels(0, 0, view.getWidth(), view.getHeight(), GL30.GL_RG, GL_FLOAT, readback);
+        glBindTexture(GL_TEXTURE_2D, 0);
+        GL13.glActiveTexture(GL13.GL_TEXTURE0);
+        glBindTexture(GL31.GL_TEXTURE_BUFFER, 0);
+        glUseProgramObjectARB(0);
+        GL30.glBindFramebuffer(GL30.GL_FRAMEBUFFER, previous);
+
+        FloatTarget done = back;
+        back = front;
+        front = done;
+        references++;
+        ready = true;
+
+        int left = 0;
+        int deepest = -1;
+        float depth = Float.MAX_VALUE;
+        for (int i = 0; i < readback.capacity() / 2; i++) {
+            if (readback.get(2 * i) == GLITCHED) {
+                left++;
+                // the pixel that came closest to the glitch's critical point makes the best next reference
+                if (readback.get(2 * i + 1) < depth) {
+                    depth = readback.get(2 * i + 1);
+                    deepest = i;
+                }
+            }
+        }
+        // a reference that did not help means further ones picked the same way will not either
+        boolean helped = references == 1 || left < remaining;
+        remaining = left;
+        if (left > 0 && helped && references < PerturbationRenderer.MAX_REFERENCES) {
+            secondary(deepest);
+        } else if (left > 0) {
+            fillGlitches();
+        }
+    }
+
+    private void secondary(int pixel) {
+        DeepView current = view;
+        int iterations = maxIter;
+        // same pixel grid as the shader and ViewPort
+        double refX = (pixel % current.getWidth() - current.getWidth() / 2) * current.getScale();
+        double refY = (pixel / current.getWidth() - current.getHeight() / 2) * current.getScale();
+        MathContext mc = current.mathContext();
+        pending = CompletableFuture.supplyAsync(() -> new Reference(ReferenceOrbit.compute(
+                current.getCentreX().add(new BigDecimal(refX), mc),
+                current.getCentreY().add(new BigDecimal(refY), mc), iterations, mc),
+                SeriesApproximation.NONE, refX, refY), engine.getPool());
+        pending.whenComplete((reference, e) -> wake.run());
+    }
+
+    // glitches left over take the count of a finished neighbour, as PerturbationRenderer does
+    private void fillGlitches() {
+        int width = view.getWidth();
+        for (int i = 0; i < readback.capacity() / 2; i++) {
+            if (readback.get(2 * i) != GLITCHED) {
+                continue;
+            }
+            int from = -1;
+            if (i % width > 0 && readback.get(2 * (i - 1)) != GLITCHED) {
+                from = i - 1;
+            } else if (i >= width && readback.get(2 * (i - width)) != GLITCHED) {
+                from = i - width;
+            }
+            if (from >= 0) {
+                readback.put(2 * i, readback.get(2 * from));
+                readback.put(2 * i + 1, 0);
+            }
+        }
+        glBindTexture(GL_TEXTURE_2D, front.getTextureID());
+        glTexSubImage2D(GL_TEXTURE_2D, 0, 0, 0, view.getWidth(), view.getHeight(), GL30.GL_RG, GL_FLOAT, readback);
+        glBindTexture(GL_TEXTURE_2D, 0);
+    }
+
+    private boolean sameView(DeepView requested, int iterations) {
+        DeepView last = view;
+        return last != null && maxIter == iterations
+                && last.getWidth() == requested.getWidth() && last.getHeight() == requested.getHeight()
+                && last.getScale() == requested.getScale()
+                && last.getCentreX().compareTo(requested.getCentreX()) == 0
+                && last.getCentreY().compareTo(requested.getCentreY()) == 0;
+    }
+
+    void delete() {
+        if (front != null) {
+            front.delete();
+            back.delete();
+            front = null;
+            back = null;
+        }
+    }
+
+    void dispose() {
+        delete();
+        orbitTexture.delete();
+        if (pending != null) {
+            pending.cancel(false);
+        }
+    }
+
+    private static final class Reference {
+        final ReferenceOrbit orbit;
+        final SeriesApproximation series;
+        // position relative to the view centre
+        final double x;
+        final double y;
+
+        Reference(ReferenceOrbit orbit, SeriesApproximation series, double x, double y) {
+            this.orbit = orbit;
+            this.series = series;
+            this.x = x;
+            this.y = y;
+        }
+    }
+}
@@ -43,12 +43,14 @@ public class LorenzAttractorRenderer extends AbstractFractalRenderer implements
     public void removeConfig(LorenzConfig config) {
         updatables.remove(config);
         chart.data.remove(config.series);
+        requestFrame();
 
     }
 
     public void addConfig(LorenzConfig config) {
         chart.data.add(config.series);
         updatables.add(config);
+        requestFrame();
     }
 
 
@@ -109,6 +111,7 @@ public class LorenzAttractorRenderer extends AbstractFractalRenderer implements
 
                 this.camera.pitch((float) dy * -0.003f * getZoomFactor());
                 this.camera.yaw((float) dx * 0.003f * getZoomFactor());
+                requestFrame();
             }
         };
         EventHandler<? super ScrollEvent> onScroll = event -> {
@@ -126,6 +129,7 @@ public class LorenzAttractorRenderer extends AbstractFractalRenderer implements
             if (z != 0) {
                 this.camera.zoom(z);
             }
+            requestFrame();
         };
 
         EventHandler<? super KeyEvent> onKeyPress = event -> {
@@ -181,6 +185,19 @@ public class LorenzAttractorRenderer extends AbstractFractalRenderer implements
 
     }
 
+    /**
+     * Keeps drawing while any configuration is still adding points.
+     */
+    @Override
+    public boolean needsFrame() {
+        for (Updatable u : updatables) {
+            if (u.isActive()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     void reshapeCamera() {
         this.camera.setWidth(width);
         this.camera.setHeight(height);
@@ -1,147 +1,398 @@
 package com.gdi.jfxfractals.renderimpl;
 
 import com.gdi.jfxfractals.renderer.IFractalRender;
+import com.gdi.jfxfractals.renderer.StreamingTexture;
+import com.gdi.jfxfractals.renderimpl.escape.EscapeTimeEngine;
+import com.gdi.jfxfractals.renderimpl.escape.EscapeTimeKernel;
+import com.gdi.jfxfractals.renderimpl.escape.Formula;
+import com.gdi.jfxfractals.renderimpl.escape.IterationBuffer;
+import com.gdi.jfxfractals.renderimpl.escape.JuliaPreview;
+import com.gdi.jfxfractals.renderimpl.escape.ProgressiveRenderer;
+import com.gdi.jfxfractals.renderimpl.escape.RenderMode;
+import com.gdi.jfxfractals.renderimpl.escape.Supersampler;
+import com.gdi.jfxfractals.renderimpl.escape.TileCache;
+import com.gdi.jfxfractals.renderimpl.escape.ViewPort;
+import com.gdi.jfxfractals.renderimpl.escape.formula.UserFormula;
+import com.gdi.jfxfractals.renderimpl.palette.Colorizer;
+import com.gdi.jfxfractals.renderimpl.palette.Palette;
+import com.gdi.jfxfractals.service.ContextManager;
+import com.gdi.jfxfractals.service.RendererContext;
+import javafx.event.EventHandler;
+import javafx.scene.input.KeyEvent;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.input.ScrollEvent;
+import org.lwjgl.BufferUtils;
+
+import java.math.BigDecimal;
+import java.nio.IntBuffer;
+import java.util.concurrent.Callable;
 
 import static org.lwjgl.opengl.GL11.*;
 
 public class MandelbrotRenderer2 extends  AbstractFractalRenderer implements IFractalRender {
 
-    public static final int g = 10;
-    public static final int f = 8;
-
-    public static final float it = 100;
-    public static final int limit = 300;
-
-    public static float xoffset = .5f;
-    public static float yoffset = .5f;
-
-    static float gridSize = 0.0003f;
-
-    static  int Width = 1920;
-    static  int Height = 1080;
+    public static final int it = 100;
+
+    private static final double ZOOM_SPEED = 1.05;
+    // pixels per key press, whole pixels let the last frame be shifted instead of recomputed
+    private static final int PAN_STEP = 8;
+    // about four units across an 800 pixel view
+    private static final double FULL_SCALE = 0.005;
+    // pixels the centre may move from the origin of a deep view before offsets stop resolving them
+    private static final double MAX_ORIGIN_OFFSET = 1 << 20;
+
+    public static double xoffset = .5;
+    public static double yoffset = .5;
+
+    static double gridSize = 0.0003;
+
+    private final EscapeTimeEngine engine = new EscapeTimeEngine();
+    private final ProgressiveRenderer progressive = new ProgressiveRenderer(engine);
+    private final TileCache tileCache = new TileCache();
+    private final Colorizer colorizer = new Colorizer(Palette.grey());
+    private final Supersampler supersampler = new Supersampler();
+    private final JuliaPreview juliaPreview = new JuliaPreview(colorizer);
+    private int colorVersion;
+
+    // camera, written by the FX thread, picked up by the GL thread through viewVersion; the centre
+    // is exact so pans and zooms still move it where a double could no longer tell the pixels apart
+    private volatile BigDecimal centreX = BigDecimal.valueOf(xoffset);
+    private volatile BigDecimal centreY = BigDecimal.valueOf(yoffset);
+    private volatile double scale = gridSize;
+    private volatile int maxIter = it;
+    private volatile int viewVersion = 1;
+    private int renderedVersion = 0;
+    // exact point views deeper than doubles are rendered relative to, GL thread only
+    private BigDecimal originX;
+    private BigDecimal originY;
+
+    // pixel refined first, follows the cursor
+    private volatile int focusX = -1;
+    private volatile int focusY = -1;
+    private double dragX;
+    private double dragY;
+
+    private Frame frame;
+    private StreamingTexture texture;
+    private Callable<Void> listenerCallback;
+
+    public MandelbrotRenderer2() {
+        engine.setAutoPrecision(true);
+        // the last progressive pass fills the interior of the set instead of iterating it to the limit
+        engine.setMode(RenderMode.MARIANI_SILVER);
+        progressive.setCache(tileCache);
+    }
 
-    static Col[][] pix;
+    /**
+     * A view of another escape-time formula, starting with the whole set in view.
+     */
+    public MandelbrotRenderer2(Formula formula) {
+        this();
+        setFormula(formula);
+        centreX = BigDecimal.ZERO;
+        centreY = BigDecimal.ZERO;
+        scale = FULL_SCALE;
+    }
 
     @Override
-    public void render() {
-        Width = width;
-        Height = height;
-
-        glEnable(GL_DEPTH_TEST);
-        glClear(GL_COLOR_BUFFER_BIT | GL_DEPTH_BUFFER_BIT);
-        pix = new Col[Width][Height];
-        generate();
-        glMatrixMode(GL_PROJECTION);
-        glLoadIdentity();
-        glOrtho(0, Width, 0, Height, 1, -1);
-        glMatrixMode(GL_MODELVIEW);
+    public void installListeners() {
+        EventHandler<? super MouseEvent> onMouseMoved = event -> {
+            focusX = toPixelX(event.getX());
+            focusY = toPixelY(event.getY());
+            ViewPort view = new ViewPort(centreX.doubleValue(), centreY.doubleValue(), scale, width, height);
+            juliaPreview.request(view.x(focusX), view.y(focusY));
+        };
+        EventHandler<? super MouseEvent> onMousePressed = event -> {
+            dragX = event.getX();
+            dragY = event.getY();
+        };
+        EventHandler<? super MouseEvent> onMouseDragged = event -> {
+            double s = scale * width / driftFxSurface.getWidth();
+            centreX = centreX.subtract(new BigDecimal((event.getX() - dragX) * s));
+            centreY = centreY.add(new BigDecimal((event.getY() - dragY) * s));
+            dragX = event.getX();
+            dragY = event.getY();
+            focusX = toPixelX(event.getX());
+            focusY = toPixelY(event.getY());
+            viewVersion++;
+            requestFrame();
+        };
+        EventHandler<? super ScrollEvent> onScroll = event -> {
+            // keep the point under the cursor where it is
+            int px = toPixelX(event.getX());
+            int py = toPixelY(event.getY());
+            double factor = event.getDeltaY() < 0 ? ZOOM_SPEED : 1 / ZOOM_SPEED;
+            double zoomed = scale * factor;
+            // the cursor's distance from the centre shrinks with the pixels, the centre makes up the difference
+            centreX = centreX.add(new BigDecimal((px - width / 2) * (scale - zoomed)));
+            centreY = centreY.add(new BigDecimal((py - height / 2) * (scale - zoomed)));
+            scale = zoomed;
+            focusX = px;
+            focusY = py;
+            viewVersion++;
+            requestFrame();
+        };
+
+        EventHandler<? super KeyEvent> onKeyPress = event -> {
+            if (event.getEventType() != KeyEvent.KEY_PRESSED) {
+                return;
+            }
+            int dx = 0;
+            int dy = 0;
+            switch (event.getCode()) {
+                case D:
+                    dx = PAN_STEP;
+                    break;
+                case A:
+                    dx = -PAN_STEP;
+                    break;
+                case W:
+                    dy = PAN_STEP;
+                    break;
+                case S:
+                    dy = -PAN_STEP;
+                    break;
+                default:
+                    return;
+            }
+            // in pixels of the scale the view gets snapped to
+            double pixel = TileCache.scale(TileCache.level(scale));
+            centreX = centreX.add(new BigDecimal(dx * pixel));
+            centreY = centreY.add(new BigDecimal(dy * pixel));
+            viewVersion++;
+            requestFrame();
+        };
+
+        driftFxSurface.addEventHandler(MouseEvent.MOUSE_MOVED, onMouseMoved);
+        driftFxSurface.addEventHandler(MouseEvent.MOUSE_PRESSED, onMousePressed);
+        driftFxSurface.addEventHandler(MouseEvent.MOUSE_DRAGGED, onMouseDragged);
+        driftFxSurface.addEventHandler(ScrollEvent.SCROLL, onScroll);
+        ContextManager.context.getInstance(RendererContext.class).getPrimaryStage().addEventHandler(KeyEvent.ANY, onKeyPress);
+
+        listenerCallback = () -> {
+            driftFxSurface.removeEventHandler(MouseEvent.MOUSE_MOVED, onMouseMoved);
+            driftFxSurface.removeEventHandler(MouseEvent.MOUSE_PRESSED, onMousePressed);
+            driftFxSurface.removeEventHandler(MouseEvent.MOUSE_DRAGGED, onMouseDragged);
+            driftFxSurface.removeEventHandler(ScrollEvent.SCROLL, onScroll);
+            ContextManager.context.getInstance(RendererContext.class).getPrimaryStage().removeEventHandler(KeyEvent.ANY, onKeyPress);
+            return null;
+        };
+    }
 
-        for (int i = 0; i < Width; i++) {
+    // surface coordinates have y down, pixel rows start at the bottom
+    private int toPixelX(double x) {
+        return (int) (x * width / driftFxSurface.getWidth());
+    }
 
-            for (int j = 0; j < Height; j++) {
+    private int toPixelY(double y) {
+        return height - 1 - (int) (y * height / driftFxSurface.getHeight());
+    }
 
-                glColor3f(pix[i][j].r,pix[i][j].g,pix[i][j].b);
-                glBegin(GL_QUADS);
+    public TileCache getTileCache() {
+        return tileCache;
+    }
 
-                glVertex2f(i, j);
-                glVertex2f((i + 1), j);
-                glVertex2f((i + 1), (j + 1));
-                glVertex2f(i, (j +1));
+    public Colorizer getColorizer() {
+        return colorizer;
+    }
 
-                glEnd();
+    /**
+     * Julia set of the point under the cursor, updated as the mouse moves.
+     */
+    public JuliaPreview getJuliaPreview() {
+        return juliaPreview;
+    }
 
-            }
-        }
+    public Supersampler getSupersampler() {
+        return supersampler;
     }
 
-    public static void generate() {
+    /**
+     * Renders with distance estimates, which the colorizer uses to draw the boundary.
+     */
+    public void setDistanceEstimation(boolean distanceEstimation) {
+        engine.setDistanceEstimation(distanceEstimation);
+        viewVersion++;
+        requestFrame();
+    }
 
-        setupPix();
-        for (int i = 0; i < g; i++) {
+    public Formula getFormula() {
+        return engine.getFormula();
+    }
 
-            aplyFxaa();
+    public void setFormula(Formula formula) {
+        engine.setFormula(formula);
+        if (engine.getFormulaKernel() == null) {
+            progressive.setFormula(formula.getKey());
         }
+        viewVersion++;
+        requestFrame();
+    }
 
+    /**
+     * Iterates a formula typed by the user instead of the built-in one, {@code null} to go back.
+     */
+    public void setUserFormula(UserFormula formula) {
+        engine.setFormulaKernel(formula);
+        progressive.setFormula(formula != null ? formula.getKey() : engine.getFormula().getKey());
+        viewVersion++;
+        requestFrame();
+    }
 
+    /**
+     * Raising the limit without moving the view only continues the pixels that had not escaped yet.
+     */
+    public void setMaxIter(int maxIter) {
+        this.maxIter = Math.max(1, maxIter);
+        viewVersion++;
+        requestFrame();
     }
 
-    public static void fxaa (Col a,Col ... cols) {
+    @Override
+    public void render() {
+        if (texture == null || !texture.fits(width, height)) {
+            if (texture != null) {
+                texture.delete();
+            }
+            texture = new StreamingTexture(width, height);
+            frame = new Frame(width, height);
+            renderedVersion = 0;
+        }
 
-        float b = 0;
-        for (int i = 0; i < cols.length; i++) {
+        colorizer.tick();
+        int version = viewVersion;
+        if (version != renderedVersion) {
+            renderedVersion = version;
+            colorVersion = colorizer.getVersion();
+            // snapped to the cache grid so pans and repeated zoom levels reuse tiles
+            double pixel = TileCache.scale(TileCache.level(scale));
+            BigDecimal x = centreX;
+            BigDecimal y = centreY;
+            ViewPort view;
+            EscapeTimeKernel kernel;
+            if (engine.needsOrigin(pixel)) {
+                // offsets from the origin stay whole pixels, so deep pans still shift the last frame
+                if (originX == null || Math.abs(x.subtract(originX).doubleValue()) > MAX_ORIGIN_OFFSET * pixel
+                        || Math.abs(y.subtract(originY).doubleValue()) > MAX_ORIGIN_OFFSET * pixel) {
+                    originX = x;
+                    originY = y;
+                }
+                view = TileCache.snap(x.subtract(originX).doubleValue(), y.subtract(originY).doubleValue(),
+                        scale, width, height);
+                kernel = engine.kernelAt(originX, originY, pixel);
+            } else {
+                originX = null;
+                originY = null;
+                view = TileCache.snap(x.doubleValue(), y.doubleValue(), scale, width, height);
+                kernel = engine.kernelFor(view);
+            }
+            int iterations = maxIter;
+            Frame target = frame;
+            int fx = focusX < 0 ? width / 2 : focusX;
+            int fy = focusY < 0 ? height / 2 : focusY;
+            // cancels whatever pass is still running for the previous view
+            progressive.render(view, kernel, iterations, target.iterations, fx, fy,
+                    (pass, passCount) -> shade(target, view, kernel, iterations, version, pass == passCount - 1));
+        } else if (colorVersion != colorizer.getVersion()) {
+            // palette change: colour the last iterations again, queued behind any running pass
+            colorVersion = colorizer.getVersion();
+            Frame target = frame;
+            int iterations = maxIter;
+            progressive.then(() -> colorize(target, iterations));
+        }
 
-            b+= cols[i].r;
+        IntBuffer ready = frame.take();
+        if (ready != null) {
+            texture.upload(ready);
         }
 
-        a.r = a.r + b/(g*f);
-        a.g = a.g + b/(g*f);
-        a.b = a.b + b/(g*f);
+        glClear(GL_COLOR_BUFFER_BIT | GL_DEPTH_BUFFER_BIT);
+        texture.draw();
     }
 
-    public static void aplyFxaa() {
-
-        for (int i = 0; i < Width; i++) {
-
-            for (int j = 0; j < Height; j++) {
-
-                int mi = i-1;
-                int mj = j-1;
-
-                int li = (i+1) % Width;
-                int lj = (j+1) % Height;
+    // intermediate passes are shown as they are, the final one gets its edges supersampled
+    private void shade(Frame frame, ViewPort view, EscapeTimeKernel kernel, int iterations, int version, boolean last) {
+        frame.pixelSize = view.getScale();
+        frame.samples = last ? supersampler.sample(view, iterations, frame.iterations, kernel,
+                engine.getPool(), () -> viewVersion != version) : null;
+        colorize(frame, iterations);
+    }
 
-                if(mi < 0) mi= Width -1;
-                if(mj < 0) mj = Height -1;
+    private void colorize(Frame frame, int iterations) {
+        colorizer.apply(frame.iterations, frame.pixelSize, iterations, frame.samples, frame.back, engine.getPool());
+        frame.publish();
+        requestFrame();
+    }
 
-                fxaa(pix[i][j], pix[mi] [j],
-                        pix[i] [mj],
-                        pix[mi][mj],
-                        pix[li] [j],
-                        pix[i] [lj],
-                        pix[li] [lj]);
+    /**
+     * Passes and palette changes run on the pool and request a frame when they are published,
+     * so only a view not picked up yet or cycling colours need more frames.
+     */
+    @Override
+    public boolean needsFrame() {
+        return viewVersion != renderedVersion || colorizer.isCycling();
+    }
 
+    @Override
+    public void dispose() {
+        if (listenerCallback != null) {
+            try {
+                listenerCallback.call();
+            } catch (Exception e) {
+                e.printStackTrace();
             }
         }
+        progressive.cancel();
+        engine.shutdown();
+        juliaPreview.shutdown();
+        if (texture != null) {
+            texture.delete();
+            texture = null;
+        }
+        super.dispose();
     }
-    private static void setupPix() {
-
-        for (int i = 0; i < Width; i++) {
 
-            for (int j = 0; j < Height; j++) {
-
-                pix[i][j] = new Col();
-
-                float x = (i - Width/2)*gridSize + xoffset;
-                float y = (j - Height/2)*gridSize + yoffset;
-
-                float cx = x;
-                float cy = y;
-
-                int n = 0;
-
-                while(n < it) {
-
-                    float xx = x*x - y*y;
-                    float yy = 2 * x * y;
-
-                    x = xx + cx;
-                    y = yy + cy;
-                    n++;
-
-                    if(x + y > limit) {
-
-                        break;
-                    }
+    /**
+     * Iterations plus three pixel buffers: the pool shades into {@code back}, the GL thread uploads
+     * {@code front}, and finished frames wait in {@code middle} so neither side blocks the other.
+     */
+    private static class Frame {
+        final int width;
+        final int height;
+        final IterationBuffer iterations;
+        // edge samples of the last complete render, null while passes are still coming
+        Supersampler.Supersamples samples;
+        double pixelSize;
+        IntBuffer back;
+        private IntBuffer middle;
+        private IntBuffer front;
+        private boolean fresh;
+
+        Frame(int width, int height) {
+            this.width = width;
+            this.height = height;
+            this.iterations = new IterationBuffer(width, height);
+            this.back = BufferUtils.createIntBuffer(width * height);
+            this.middle = BufferUtils.createIntBuffer(width * height);
+            this.front = BufferUtils.createIntBuffer(width * height);
+        }
 
-                }
-                pix[i] [j].r =n/it;
-                pix[i] [j].g =n/it;
-                pix[i] [j].b =n/it;
+        synchronized void publish() {
+            IntBuffer done = back;
+            back = middle;
+            middle = done;
+            fresh = true;
+        }
 
+        synchronized IntBuffer take() {
+            if (!fresh) {
+                return null;
             }
+            IntBuffer done = middle;
+            middle = front;
+            front = done;
+            fresh = false;
+            return front;
         }
     }
-
-    static class Col{float r,g,b;}
-
 }
@@ -1,8 +1,19 @@
 package com.gdi.jfxfractals.renderimpl;
 
+import com.gdi.jfxfractals.renderer.FloatTarget;
 import com.gdi.jfxfractals.renderer.IFractalRender;
+import com.gdi.jfxfractals.renderer.PaletteTexture;
 import com.gdi.jfxfractals.renderer.Shader;
+import com.gdi.jfxfractals.renderer.StreamingTexture;
 import com.gdi.jfxfractals.renderer.Vertex;
+import com.gdi.jfxfractals.renderimpl.escape.EscapeTimeEngine;
+import com.gdi.jfxfractals.renderimpl.escape.IterationBuffer;
+import com.gdi.jfxfractals.renderimpl.escape.JuliaPreview;
+import com.gdi.jfxfractals.renderimpl.escape.formula.UserFormula;
+import com.gdi.jfxfractals.renderimpl.escape.perturbation.DeepView;
+import com.gdi.jfxfractals.renderimpl.escape.perturbation.PerturbationRenderer;
+import com.gdi.jfxfractals.renderimpl.palette.Colorizer;
+import com.gdi.jfxfractals.renderimpl.palette.Palette;
 import com.gdi.jfxfractals.service.ContextManager;
 import com.gdi.jfxfractals.service.RendererContext;
 import javafx.event.EventHandler;
@@ -15,17 +26,22 @@ import org.joml.Vector4f;
 import org.lwjgl.BufferUtils;
 import org.lwjgl.PointerBuffer;
 import org.lwjgl.opengl.ARBFragmentShader;
+import org.lwjgl.opengl.GL13;
+import org.lwjgl.opengl.GL14;
 import org.lwjgl.opengl.GL20;
 import org.lwjgl.opengl.GL30;
 import org.lwjgl.opengl.GL40;
-import org.lwjgl.system.MemoryStack;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.math.BigDecimal;
 import java.nio.ByteBuffer;
-import java.nio.DoubleBuffer;
 import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 
 import static com.gdi.jfxfractals.io.IOUtil.ioResourceToByteBuffer;
 import static org.lwjgl.glfw.GLFW.glfwGetTime;
@@ -36,12 +52,69 @@ import static org.lwjgl.opengl.GL11.*;
 
 public class MandelbrotShaderRenderer extends AbstractFractalRenderer implements IFractalRender {
 
+    private static final Logger log = LoggerFactory.getLogger(MandelbrotShaderRenderer.class);
+
     private Vector2d cameraTranslation = new Vector2d();
     private double basePanningSpeed = 0.0125f;
     private double currentPanningSpeed = 0.0125f;
     private double cameraZoom = 1.0f;
     private double zoomSpeed = 1.05f;
 
+    // deep zoom deltas are plain doubles, zooming stops before pixels this small underflow them
+    private static final double MIN_DEEP_SCALE = 1e-290;
+
+    // exact camera centre for deep zoom, cameraTranslation runs out of bits around 1e-14
+    private volatile BigDecimal deepCentreX = BigDecimal.ZERO;
+    private volatile BigDecimal deepCentreY = BigDecimal.ZERO;
+    private volatile boolean deepZoom = false;
+    private EscapeTimeEngine deepEngine;
+    private PerturbationRenderer perturbation;
+    private StreamingTexture deepTexture;
+    private CompletableFuture<Void> deepPending;
+    private DeepFrame deepFrame;
+    private DeepView lastDeepView;
+    private int lastDeepMaxIter;
+    private int deepColorVersion;
+    // perturb.shader, deep zoom with the pixels iterated on the GPU; 0 when it did not build
+    private int perturbProgram;
+    private GpuPerturbation gpuDeep;
+    private volatile boolean gpuPerturbation = true;
+
+    // colouring is a separate pass over the smooth iteration counts, palette changes only redo that pass
+    private final Colorizer colorizer = new Colorizer(Palette.classic());
+    private final JuliaPreview juliaPreview = new JuliaPreview(colorizer);
+    private FloatTarget iterationTarget;
+    private PaletteTexture paletteTexture;
+    private int paletteProgram;
+    private int uIterations;
+    private int uPalette;
+    private int uOffset;
+    private int uDensity;
+    private int uInterior;
+    private int uBoundary;
+    private volatile boolean distanceEstimation;
+    private boolean lastDistanceEstimation;
+
+    // idle frames of a still view add jittered samples, averaged in accumulationTarget
+    private static final int MAX_SAMPLES = 64;
+    private FloatTarget accumulationTarget;
+    private volatile boolean accumulation = true;
+    private int samples;
+    private int accumulationColorVersion;
+    // iterationTarget holds a sample off the pixel centres
+    private boolean jittered;
+
+    // frag.shader lines between these markers hold the formula
+    private static final String FORMULA_BEGIN = "// formula begin";
+    private static final String FORMULA_END = "// formula end";
+    // written by the FX thread, the GL thread rebuilds the program when it differs from the linked one
+    private volatile UserFormula userFormula;
+    private UserFormula programFormula;
+    private double lastZoom;
+    private double lastCameraX;
+    private double lastCameraY;
+    private float lastMaxIter = -1;
+
     private final int PIXEL_WIDTH = 480 * 2;
     private final int PIXEL_HEIGHT = 480 * 2;
     private final int WIDTH = 4;
@@ -66,7 +139,6 @@ public class MandelbrotShaderRenderer extends AbstractFractalRenderer implements
     private final double[] mousePosY = new double[1];
     private Shader shaderHandler;
     private int vaoID;
-    float[] color = new float[]{0.0f};
     float[] maxIter = new float[]{100.0f};
     double time = 0;
     int iboID;
@@ -86,8 +158,27 @@ public class MandelbrotShaderRenderer extends AbstractFractalRenderer implements
     int program;
     private int uCameraZoom;
     private int uCameraPos;
-    private int uColor;
     private int uMaxIter;
+    private int uDistance;
+    private int uJitter;
+
+    // frag_ff.shader, the Mandelbrot set in float-float pairs; 0 when it did not build
+    private int floatFloatProgram;
+    private int uFfCameraZoom;
+    private int uFfCameraPos;
+    private int uFfMaxIter;
+    private int uFfDistance;
+    private int uFfJitter;
+    // chosen by timing both programs at startup, see preferFloatFloat()
+    private boolean floatFloat;
+    // frag_slice.shader, the same iterations spread over frames; unused when it did not build
+    private SlicedIterations sliced;
+    private volatile boolean slicedIterations;
+    private static final int BENCHMARK_SIZE = 256;
+    private static final int BENCHMARK_RUNS = 3;
+    private static final float BENCHMARK_ITER = 512;
+    // the last frame is not the final picture yet, set by render()
+    private boolean unfinished;
 
     @Override
     public void initialize() {
@@ -154,7 +245,30 @@ public class MandelbrotShaderRenderer extends AbstractFractalRenderer implements
             program = createProgram();
         } catch (IOException e) {
             e.printStackTrace();
+        } catch (AssertionError e) {
+            // drivers without double support, the float-float program takes over
+            System.err.println("Could not build the double precision shader: " + e.getMessage());
+        }
+        try {
+            // every iteration program is coloured by this one
+            paletteProgram = createPaletteProgram();
+        } catch (IOException | AssertionError e) {
+            System.err.println("Could not build the palette shader: " + e.getMessage());
+        }
+        try {
+            floatFloatProgram = createFloatFloatProgram();
+        } catch (IOException | AssertionError e) {
+            System.err.println("Could not build the float-float shader: " + e.getMessage());
+        }
+        try {
+            perturbProgram = linkProgram("/shaders/perturb.shader");
+        } catch (IOException | AssertionError e) {
+            // deep zoom stays on the CPU
+            System.err.println("Could not build the perturbation shader: " + e.getMessage());
         }
+        floatFloat = preferFloatFloat();
+        log.debug("Mandelbrot shader: {}", floatFloat ? "float-float" : program != 0 ? "double" : "none");
+        paletteTexture = new PaletteTexture();
         // Camera (Both axis from -2 to 2)
         float zoomAmount = 1.05f;
     }
@@ -170,6 +284,12 @@ public class MandelbrotShaderRenderer extends AbstractFractalRenderer implements
                 MandelbrotShaderRenderer.this.frameNumber = 0;
             }
         };
+        EventHandler<? super MouseEvent> onMouseHover = event -> {
+            // same mapping as the shader, both axes of the surface span -1..1
+            double x = 2 * event.getX() / driftFxSurface.getWidth() - 1;
+            double y = 1 - 2 * event.getY() / driftFxSurface.getHeight();
+            juliaPreview.request(x * 2 / cameraZoom + cameraTranslation.x, y * 2 / cameraZoom + cameraTranslation.y);
+        };
         EventHandler<? super ScrollEvent> onScroll = event -> {
             if (event.getDeltaY() < 0) {
                 fov *= 1.05f;
@@ -181,9 +301,11 @@ public class MandelbrotShaderRenderer extends AbstractFractalRenderer implements
                 fov *= 1f / 1.05f;
                 zoomOut = false;
                 zoomIn = true;
-                cameraZoom = cameraZoom * zoomSpeed; // Update the zoomAmount
+                // the view height spans 4 / cameraZoom
+                cameraZoom = Math.min(cameraZoom * zoomSpeed, 4 / (MIN_DEEP_SCALE * Math.max(1, height)));
                 currentPanningSpeed = basePanningSpeed / cameraZoom;
             }
+            requestFrame();
         };
 
         EventHandler<? super KeyEvent> onKeyPress = event -> {
@@ -191,6 +313,7 @@ public class MandelbrotShaderRenderer extends AbstractFractalRenderer implements
             if (event.getCode() == KeyCode.D && event.getEventType() == KeyEvent.KEY_PRESSED) {
                 moveRight = true;
                 cameraTranslation.add(currentPanningSpeed, 0.0f);
+                deepCentreX = deepCentreX.add(new BigDecimal(currentPanningSpeed));
             }
             if (event.getCode() == KeyCode.D && event.getEventType() == KeyEvent.KEY_RELEASED) {
                 moveRight = false;
@@ -199,6 +322,7 @@ public class MandelbrotShaderRenderer extends AbstractFractalRenderer implements
             if (event.getCode() == KeyCode.A && event.getEventType() == KeyEvent.KEY_PRESSED) {
                 moveLeft = true;
                 cameraTranslation.add(-currentPanningSpeed, 0.0f);
+                deepCentreX = deepCentreX.add(new BigDecimal(-currentPanningSpeed));
             }
             if (event.getCode() == KeyCode.A && event.getEventType() == KeyEvent.KEY_RELEASED) {
                 moveLeft = false;
@@ -206,6 +330,7 @@ public class MandelbrotShaderRenderer extends AbstractFractalRenderer implements
             if (event.getCode() == KeyCode.W && event.getEventType() == KeyEvent.KEY_PRESSED) {
                 moveUp = true;
                 cameraTranslation.add(0.0f, currentPanningSpeed);
+                deepCentreY = deepCentreY.add(new BigDecimal(currentPanningSpeed));
             }
             if (event.getCode() == KeyCode.W && event.getEventType() == KeyEvent.KEY_RELEASED) {
                 moveUp = false;
@@ -213,18 +338,24 @@ public class MandelbrotShaderRenderer extends AbstractFractalRenderer implements
             if (event.getCode() == KeyCode.S && event.getEventType() == KeyEvent.KEY_PRESSED) {
                 moveDown = true;
                 cameraTranslation.add(0.0f, -currentPanningSpeed);
+                deepCentreY = deepCentreY.add(new BigDecimal(-currentPanningSpeed));
             }
             if (event.getCode() == KeyCode.S && event.getEventType() == KeyEvent.KEY_RELEASED) {
                 moveDown = false;
             }
+            if (event.getEventType() == KeyEvent.KEY_PRESSED) {
+                requestFrame();
+            }
         };
 
         driftFxSurface.addEventHandler(MouseEvent.MOUSE_DRAGGED, onMouseMoved);
+        driftFxSurface.addEventHandler(MouseEvent.MOUSE_MOVED, onMouseHover);
         driftFxSurface.addEventHandler(ScrollEvent.SCROLL, onScroll);
         ContextManager.context.getInstance(RendererContext.class).getPrimaryStage().addEventHandler(KeyEvent.ANY, onKeyPress);
 
         listenerCallback = () -> {
             driftFxSurface.removeEventHandler(MouseEvent.MOUSE_DRAGGED, onMouseMoved);
+            driftFxSurface.removeEventHandler(MouseEvent.MOUSE_MOVED, onMouseHover);
             driftFxSurface.removeEventHandler(ScrollEvent.SCROLL, onScroll);
             ContextManager.context.getInstance(RendererContext.class).getPrimaryStage().removeEventHandler(KeyEvent.ANY, onKeyPress);
             return null;
@@ -233,8 +364,11 @@ public class MandelbrotShaderRenderer extends AbstractFractalRenderer implements
 
 
     static int createShader(String resource, int type) throws IOException {
+        return compileShader(ioResourceToByteBuffer(resource, 1024), type);
+    }
+
+    static int compileShader(ByteBuffer source, int type) {
         int shader = glCreateShaderObjectARB(type);
-        ByteBuffer source = ioResourceToByteBuffer(resource, 1024);
         PointerBuffer strings = BufferUtils.createPointerBuffer(1);
         IntBuffer lengths = BufferUtils.createIntBuffer(1);
         strings.put(0, source);
@@ -253,12 +387,130 @@ public class MandelbrotShaderRenderer extends AbstractFractalRenderer implements
     }
 
     int createProgram() throws IOException {
+        UserFormula formula = userFormula;
+        int program = formula == null ? linkProgram("/shaders/frag.shader")
+                : linkProgram(compileShader(fragmentSource("/shaders/frag.shader", formula),
+                        ARBFragmentShader.GL_FRAGMENT_SHADER_ARB));
+        programFormula = formula;
+        createSlicedProgram(formula);
+
+        uCameraZoom = glGetUniformLocationARB(program, "u_CameraZoom");
+        uCameraPos = glGetUniformLocationARB(program, "u_CameraPos");
+        uMaxIter = glGetUniformLocationARB(program, "u_maxIter");
+        uDistance = glGetUniformLocationARB(program, "u_Distance");
+        uJitter = glGetUniformLocationARB(program, "u_Jitter");
+        return program;
+    }
+
+    private void createSlicedProgram(UserFormula formula) throws IOException {
+        if (sliced == null) {
+            sliced = new SlicedIterations(this::drawQuad);
+        }
+        int previous = sliced.getProgram();
+        int program = 0;
+        try {
+            program = linkProgram(compileShader(fragmentSource("/shaders/frag_slice.shader", formula),
+                    ARBFragmentShader.GL_FRAGMENT_SHADER_ARB));
+        } catch (AssertionError e) {
+            // the single pass draws every view then
+            System.err.println("Could not build the sliced shader: " + e.getMessage());
+        }
+        sliced.setProgram(program);
+        if (previous != 0) {
+            glDeleteObjectARB(previous);
+        }
+    }
+
+    int createFloatFloatProgram() throws IOException {
+        int program = linkProgram("/shaders/frag_ff.shader");
+
+        uFfCameraZoom = glGetUniformLocationARB(program, "u_CameraZoom");
+        uFfCameraPos = glGetUniformLocationARB(program, "u_CameraPos");
+        uFfMaxIter = glGetUniformLocationARB(program, "u_maxIter");
+        uFfDistance = glGetUniformLocationARB(program, "u_Distance");
+        uFfJitter = glGetUniformLocationARB(program, "u_Jitter");
+        return program;
+    }
+
+    /**
+     * Times both Mandelbrot programs on the same view and returns whether the float-float one is
+     * faster. Consumer GPUs and software drivers run doubles at 1/32 of the float rate or worse,
+     * where the dozen float operations of a pair operation still come out ahead. Without both
+     * programs it is whichever one built; with neither it is false and nothing is drawn.
+     */
+    private boolean preferFloatFloat() {
+        if (floatFloatProgram == 0 || program == 0) {
+            if (floatFloatProgram == 0 && program == 0) {
+                System.err.println("No Mandelbrot shader could be built");
+            }
+            return floatFloatProgram != 0;
+        }
+        FloatTarget target = new FloatTarget(BENCHMARK_SIZE, BENCHMARK_SIZE);
+        int previous = target.bind();
+        try {
+            long doubles = Long.MAX_VALUE;
+            long pairs = Long.MAX_VALUE;
+            // the first run of each also covers any compilation the driver deferred, the minimum drops it
+            for (int run = 0; run < BENCHMARK_RUNS; run++) {
+                doubles = Math.min(doubles, timeIterations(false));
+                pairs = Math.min(pairs, timeIterations(true));
+            }
+            return pairs < doubles;
+        } finally {
+            GL30.glBindFramebuffer(GL30.GL_FRAMEBUFFER, previous);
+            target.delete();
+        }
+    }
+
+    private long timeIterations(boolean pairs) {
+        glFinish();
+        long start = System.nanoTime();
+        // seahorse valley, busy enough that no pixel leaves early through the cardioid test
+        drawIterations(pairs, -0.75, 0.1, 0.05, BENCHMARK_ITER, false, 0, 0);
+        glFinish();
+        return System.nanoTime() - start;
+    }
+
+    int createPaletteProgram() throws IOException {
+        int program = linkProgram("/shaders/palette.shader");
+
+        uIterations = glGetUniformLocationARB(program, "u_Iterations");
+        uPalette = glGetUniformLocationARB(program, "u_Palette");
+        uOffset = glGetUniformLocationARB(program, "u_Offset");
+        uDensity = glGetUniformLocationARB(program, "u_Density");
+        uInterior = glGetUniformLocationARB(program, "u_Interior");
+        uBoundary = glGetUniformLocationARB(program, "u_Boundary");
+        return program;
+    }
+
+    // a shader with a formula block, frag.shader or frag_slice.shader, with the block swapped for
+    // the user formula's; null keeps the Mandelbrot set
+    static ByteBuffer fragmentSource(String resource, UserFormula formula) throws IOException {
+        ByteBuffer template = ioResourceToByteBuffer(resource, 1024);
+        if (formula == null) {
+            return template;
+        }
+        byte[] bytes = new byte[template.remaining()];
+        template.get(bytes);
+        String source = new String(bytes, StandardCharsets.UTF_8);
+        int begin = source.indexOf(FORMULA_BEGIN);
+        int end = source.indexOf(FORMULA_END);
+        byte[] replaced = (source.substring(0, begin) + formula.getGlsl() + source.substring(end + FORMULA_END.length()))
+                .getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = BufferUtils.createByteBuffer(replaced.length);
+        buffer.put(replaced).flip();
+        return buffer;
+    }
+
+    static int linkProgram(String fragmentResource) throws IOException {
+        return linkProgram(createShader(fragmentResource, ARBFragmentShader.GL_FRAGMENT_SHADER_ARB));
+    }
+
+    static int linkProgram(int fragmentShader) throws IOException {
 
         int program = glCreateProgramObjectARB();
         int vertexShader = createShader("/shaders/vert.shader",
                 GL_VERTEX_SHADER_ARB);
-        int fragmentShader = createShader("/shaders/frag.shader",
-                ARBFragmentShader.GL_FRAGMENT_SHADER_ARB);
         glAttachObjectARB(program, vertexShader);
         glAttachObjectARB(program, fragmentShader);
         glLinkProgramARB(program);
@@ -273,16 +525,110 @@ public class MandelbrotShaderRenderer extends AbstractFractalRenderer implements
 
         glUseProgramObjectARB(program);
         GL20.glBindAttribLocation(program, 0, "in_Position");
-
-        uCameraZoom = glGetUniformLocationARB(program, "u_CameraZoom");
-        uCameraPos = glGetUniformLocationARB(program, "u_CameraPos");
-        uColor = glGetUniformLocationARB(program, "u_Color");
-        uMaxIter = glGetUniformLocationARB(program, "u_maxIter");
         return program;
     }
 
     public void setMaxIter(float maxIter) {
         this.maxIter[0] = maxIter;
+        requestFrame();
+    }
+
+    /**
+     * Switches between the fragment shader and perturbation rendering, which keeps working
+     * far below the zoom where doubles in the shader turn into blocks.
+     */
+    public void setDeepZoom(boolean deepZoom) {
+        this.deepZoom = deepZoom;
+        requestFrame();
+    }
+
+    public boolean isDeepZoom() {
+        return deepZoom;
+    }
+
+    /**
+     * Has deep zoom iterate the pixels in a shader against a reference orbit computed on the CPU,
+     * instead of iterating them on the CPU too. Falls back to the CPU when the shader did not build
+     * or the orbit is longer than a buffer texture of the driver can hold.
+     */
+    public void setGpuPerturbation(boolean gpuPerturbation) {
+        this.gpuPerturbation = gpuPerturbation;
+        requestFrame();
+    }
+
+    public boolean isGpuPerturbation() {
+        return gpuPerturbation;
+    }
+
+    /**
+     * Has the shader estimate the distance to the set, which the colouring pass uses to draw the
+     * boundary and filaments that a low iteration limit would miss. Not used by deep zoom.
+     */
+    public void setDistanceEstimation(boolean distanceEstimation) {
+        this.distanceEstimation = distanceEstimation;
+        requestFrame();
+    }
+
+    /**
+     * Spreads the iterations of each view over as many frames as it takes, a GPU time budget per
+     * frame, so high iteration limits do not stall the surface. Pixels appear as they resolve.
+     */
+    public void setSlicedIterations(boolean slicedIterations) {
+        this.slicedIterations = slicedIterations;
+        requestFrame();
+    }
+
+    public boolean isSlicedIterations() {
+        return slicedIterations;
+    }
+
+    /**
+     * Has frames that would redraw a still view add a sample at another sub-pixel offset instead,
+     * up to 64 samples averaged per pixel. Any change of the view, the limit or the colours starts
+     * over from one sample. Not used by sliced iterations or deep zoom.
+     */
+    public void setAccumulation(boolean accumulation) {
+        this.accumulation = accumulation;
+        requestFrame();
+    }
+
+    public boolean isAccumulation() {
+        return accumulation;
+    }
+
+    public UserFormula getUserFormula() {
+        return userFormula;
+    }
+
+    /**
+     * Iterates {@code formula} instead of z^2 + c, {@code null} for the Mandelbrot set again. Deep
+     * zoom stays with the Mandelbrot set.
+     */
+    public void setUserFormula(UserFormula formula) {
+        this.userFormula = formula;
+        requestFrame();
+    }
+
+    /**
+     * Whether the Mandelbrot set is drawn by the float-float program rather than the double one.
+     */
+    public boolean isFloatFloat() {
+        return floatFloat;
+    }
+
+    public boolean isDistanceEstimation() {
+        return distanceEstimation;
+    }
+
+    public Colorizer getColorizer() {
+        return colorizer;
+    }
+
+    /**
+     * Julia set of the point under the cursor, updated as the mouse moves.
+     */
+    public JuliaPreview getJuliaPreview() {
+        return juliaPreview;
     }
 
     @Override
@@ -297,6 +643,37 @@ public class MandelbrotShaderRenderer extends AbstractFractalRenderer implements
                 e.printStackTrace();
             }
         }
+        if (deepPending != null) {
+            deepPending.cancel(false);
+        }
+        if (deepEngine != null) {
+            deepEngine.shutdown();
+        }
+        juliaPreview.shutdown();
+        if (sliced != null) {
+            sliced.dispose();
+            sliced = null;
+        }
+        if (gpuDeep != null) {
+            gpuDeep.dispose();
+            gpuDeep = null;
+        }
+        if (deepTexture != null) {
+            deepTexture.delete();
+            deepTexture = null;
+        }
+        if (iterationTarget != null) {
+            iterationTarget.delete();
+            iterationTarget = null;
+        }
+        if (accumulationTarget != null) {
+            accumulationTarget.delete();
+            accumulationTarget = null;
+        }
+        if (paletteTexture != null) {
+            paletteTexture.delete();
+            paletteTexture = null;
+        }
         System.out.println("Disposing shaders");
         if (shaderHandler != null) {
             shaderHandler.unBindProgram();
@@ -305,6 +682,155 @@ public class MandelbrotShaderRenderer extends AbstractFractalRenderer implements
 
     @Override
     public void render() {
+        colorizer.tick();
+        unfinished = false;
+        UserFormula formula = userFormula;
+        if (deepZoom && formula == null) {
+            renderDeep();
+            return;
+        }
+        if (formula != programFormula) {
+            relinkProgram();
+        }
+        boolean distance = distanceEstimation;
+        if (slicedIterations && sliced != null && sliced.getProgram() != 0) {
+            int counts = sliced.update(cameraTranslation.x, cameraTranslation.y, 1 / cameraZoom, maxIter[0], distance,
+                    width, height);
+            glViewport(0, 0, width, height);
+            // the single pass draws again when the mode is switched off
+            lastMaxIter = -1;
+            lastDistanceEstimation = distance;
+            renderPalette(counts, distance);
+            unfinished = !sliced.isComplete();
+            return;
+        }
+        if (iterationTarget == null || !iterationTarget.fits(width, height)) {
+            if (iterationTarget != null) {
+                iterationTarget.delete();
+            }
+            iterationTarget = new FloatTarget(width, height);
+            lastMaxIter = -1;
+        }
+        // iterate only when the view changed, otherwise the last counts are coloured again
+        boolean changed = lastMaxIter != maxIter[0] || lastZoom != cameraZoom || lastDistanceEstimation != distance
+                || lastCameraX != cameraTranslation.x || lastCameraY != cameraTranslation.y;
+        if (changed) {
+            lastMaxIter = maxIter[0];
+            lastDistanceEstimation = distance;
+            lastZoom = cameraZoom;
+            lastCameraX = cameraTranslation.x;
+            lastCameraY = cameraTranslation.y;
+        }
+        if (accumulation) {
+            renderAccumulated(changed);
+            return;
+        }
+        if (changed || jittered) {
+            drawCounts(0, 0);
+        }
+        renderPalette(iterationTarget.getTextureID(), lastDistanceEstimation);
+    }
+
+    // one more sample of a still view per frame, coloured and blended into the running mean
+    private void renderAccumulated(boolean changed) {
+        if (accumulationTarget == null || !accumulationTarget.fits(width, height)) {
+            if (accumulationTarget != null) {
+                accumulationTarget.delete();
+            }
+            accumulationTarget = new FloatTarget(width, height, GL30.GL_RGBA32F);
+            samples = 0;
+        }
+        int colorVersion = colorizer.getVersion();
+        if (changed || colorVersion != accumulationColorVersion) {
+            accumulationColorVersion = colorVersion;
+            samples = 0;
+        }
+        if (samples < MAX_SAMPLES) {
+            // the first sample is the pixel centre, as without accumulation
+            if (samples > 0) {
+                drawCounts(halton(samples, 2) - 0.5f, halton(samples, 3) - 0.5f);
+            } else if (changed || jittered) {
+                drawCounts(0, 0);
+            }
+            int previous = accumulationTarget.bind();
+            if (samples > 0) {
+                // the new sample weighs 1 / (n + 1)
+                glEnable(GL_BLEND);
+                GL14.glBlendColor(0f, 0f, 0f, 1f / (samples + 1));
+                glBlendFunc(GL14.GL_CONSTANT_ALPHA, GL14.GL_ONE_MINUS_CONSTANT_ALPHA);
+            }
+            renderPalette(iterationTarget.getTextureID(), lastDistanceEstimation);
+            glDisable(GL_BLEND);
+            GL30.glBindFramebuffer(GL30.GL_FRAMEBUFFER, previous);
+            glViewport(0, 0, width, height);
+            samples++;
+        }
+        unfinished = samples < MAX_SAMPLES;
+        accumulationTarget.blit();
+    }
+
+    // iterates the view into iterationTarget with the sample points moved by a fraction of a pixel
+    private void drawCounts(float jitterX, float jitterY) {
+        int previous = iterationTarget.bind();
+        renderIterations(2 * jitterX / width, 2 * jitterY / height);
+        GL30.glBindFramebuffer(GL30.GL_FRAMEBUFFER, previous);
+        glViewport(0, 0, width, height);
+        jittered = jitterX != 0 || jitterY != 0;
+    }
+
+    // radical inverse of index in the given base, a low discrepancy sequence in [0, 1)
+    private static float halton(int index, int base) {
+        float result = 0;
+        float fraction = 1f / base;
+        for (int i = index; i > 0; i /= base) {
+            result += fraction * (i % base);
+            fraction /= base;
+        }
+        return result;
+    }
+
+    private void relinkProgram() {
+        try {
+            int relinked = createProgram();
+            glDeleteObjectARB(program);
+            program = relinked;
+            lastMaxIter = -1;
+        } catch (IOException | AssertionError e) {
+            // keep drawing the last formula that compiled
+            System.err.println("Could not build the formula shader: " + e.getMessage());
+            programFormula = userFormula;
+        }
+    }
+
+    private void renderPalette(int counts, boolean boundary) {
+        Palette palette = colorizer.getPalette();
+        paletteTexture.upload(palette, palette.getArgb(), palette.isRepeat());
+
+        // the quad covers every pixel, no clear, so accumulation can blend over the last samples
+        glUseProgramObjectARB(paletteProgram);
+        GL13.glActiveTexture(GL13.GL_TEXTURE0);
+        glBindTexture(GL_TEXTURE_2D, counts);
+        GL13.glActiveTexture(GL13.GL_TEXTURE1);
+        glBindTexture(GL_TEXTURE_1D, paletteTexture.getTextureID());
+        glUniform1iARB(uIterations, 0);
+        glUniform1iARB(uPalette, 1);
+        glUniform1fARB(uOffset, colorizer.getOffset());
+        glUniform1fARB(uDensity, colorizer.density((int) maxIter[0]));
+        int interior = palette.getInterior();
+        glUniform4fARB(uInterior, (interior >> 16 & 0xFF) / 255f, (interior >> 8 & 0xFF) / 255f,
+                (interior & 0xFF) / 255f, 1f);
+        glUniform1fARB(uBoundary, boundary ? colorizer.getBoundary() : 0f);
+
+        drawQuad();
+
+        glBindTexture(GL_TEXTURE_1D, 0);
+        GL13.glActiveTexture(GL13.GL_TEXTURE0);
+        glBindTexture(GL_TEXTURE_2D, 0);
+        glUseProgramObjectARB(0);
+    }
+
+    // jitter in clip space, see vert.shader
+    private void renderIterations(float jitterX, float jitterY) {
         glClear(GL_COLOR_BUFFER_BIT | GL_DEPTH_BUFFER_BIT); // clear the framebuffer
         //glEnable(GL_DEPTH_TEST);
         // Camera Movement
@@ -342,18 +868,44 @@ public class MandelbrotShaderRenderer extends AbstractFractalRenderer implements
             shaderHandler.setUniVec1f("u_maxIter", maxIter);
             */
 
-        glUseProgramObjectARB(program);
-        GL40.glUniform1dv(uCameraZoom, new double[]{1 / cameraZoom});
+        // user formulas are written in doubles, only the Mandelbrot set has a float-float program
+        boolean pairs = floatFloat && programFormula == null;
+        drawIterations(pairs, cameraTranslation.x, cameraTranslation.y, 1 / cameraZoom, maxIter[0], lastDistanceEstimation,
+                jitterX, jitterY);
 
-        try (MemoryStack stack = MemoryStack.stackPush()) {
-            DoubleBuffer cameraBuffer = cameraTranslation.get(stack.mallocDouble(2));
-            //shaderHandler.setUniVec2d(uCameraPos, cameraBuffer);
-            GL40.glUniform2dv(uCameraPos, cameraBuffer);
+        // GUI
+        final double currentTime = glfwGetTime();
+        final double deltaTime = (time > 0) ? (currentTime - time) : 1f / 60f;
+        time = currentTime;
+        //glfwSwapInterval(1);
 
+    }
+
+    // one pass of the iteration program; halfHeight is the distance from the centre to the top of the view
+    private void drawIterations(boolean pairs, double centreX, double centreY, double halfHeight, float iterations,
+                                boolean distance, float jitterX, float jitterY) {
+        if (pairs) {
+            glUseProgramObjectARB(floatFloatProgram);
+            float zoomHi = (float) halfHeight;
+            glUniform2fARB(uFfCameraZoom, zoomHi, (float) (halfHeight - zoomHi));
+            float xHi = (float) centreX;
+            float yHi = (float) centreY;
+            glUniform4fARB(uFfCameraPos, xHi, (float) (centreX - xHi), yHi, (float) (centreY - yHi));
+            glUniform1fARB(uFfMaxIter, iterations);
+            glUniform1iARB(uFfDistance, distance ? 1 : 0);
+            glUniform2fARB(uFfJitter, jitterX, jitterY);
+        } else {
+            glUseProgramObjectARB(program);
+            GL40.glUniform1dv(uCameraZoom, new double[]{halfHeight});
+            GL40.glUniform2dv(uCameraPos, new double[]{centreX, centreY});
+            glUniform1fARB(uMaxIter, iterations);
+            glUniform1iARB(uDistance, distance ? 1 : 0);
+            glUniform2fARB(uJitter, jitterX, jitterY);
         }
+        drawQuad();
+    }
 
-        GL40.glUniform1fv(uColor, color);
-        GL40.glUniform1fv(uMaxIter, maxIter);
+    private void drawQuad() {
         // Bind VAO
         GL30.glBindVertexArray(vaoID);
         GL30.glEnableVertexAttribArray(0);
@@ -367,12 +919,102 @@ public class MandelbrotShaderRenderer extends AbstractFractalRenderer implements
         GL30.glBindBuffer(GL30.GL_ELEMENT_ARRAY_BUFFER, 0);
         GL30.glDisableVertexAttribArray(0);
         GL30.glBindVertexArray(0);
+    }
 
-        // GUI
-        final double currentTime = glfwGetTime();
-        final double deltaTime = (time > 0) ? (currentTime - time) : 1f / 60f;
-        time = currentTime;
-        //glfwSwapInterval(1);
+    private void renderDeep() {
+        if (deepEngine == null) {
+            deepEngine = new EscapeTimeEngine();
+            perturbation = new PerturbationRenderer(deepEngine);
+        }
+        // same framing as the shader: the view height spans 4 / cameraZoom
+        DeepView view = new DeepView(deepCentreX, deepCentreY, 4 / (cameraZoom * height), width, height);
+        int iterations = Math.max(1, (int) maxIter[0]);
+        if (gpuPerturbation && perturbProgram != 0) {
+            if (gpuDeep == null) {
+                gpuDeep = new GpuPerturbation(perturbProgram, deepEngine, this::drawQuad, this::requestFrame);
+            }
+            if (gpuDeep.supports(iterations)) {
+                FloatTarget counts = gpuDeep.update(view, iterations);
+                glViewport(0, 0, width, height);
+                if (counts != null) {
+                    renderPalette(counts.getTextureID(), false);
+                } else {
+                    glClear(GL_COLOR_BUFFER_BIT | GL_DEPTH_BUFFER_BIT);
+                }
+                return;
+            }
+        }
+        if (deepTexture == null || !deepTexture.fits(width, height)) {
+            if (deepTexture != null) {
+                deepTexture.delete();
+            }
+            deepTexture = new StreamingTexture(width, height);
+            lastDeepView = null;
+        }
 
+        if (deepPending != null && deepPending.isDone()) {
+            if (!deepPending.isCompletedExceptionally() && deepTexture.fits(deepFrame.width, deepFrame.height)) {
+                deepTexture.upload(deepFrame.pixels);
+            }
+            deepPending = null;
+        }
+
+        int colorVersion = colorizer.getVersion();
+        if (deepPending == null && !sameDeepFrame(view, iterations)) {
+            if (deepFrame == null || deepFrame.width != width || deepFrame.height != height) {
+                deepFrame = new DeepFrame(width, height);
+            }
+            DeepFrame frame = deepFrame;
+            lastDeepView = view;
+            lastDeepMaxIter = iterations;
+            deepColorVersion = colorVersion;
+            deepPending = deepEngine.submit(() -> {
+                perturbation.render(view, iterations, frame.iterations);
+                colorizer.apply(frame.iterations, iterations, frame.pixels, deepEngine.getPool());
+            });
+            deepPending.whenComplete((done, e) -> requestFrame());
+        } else if (deepPending == null && deepColorVersion != colorVersion && lastDeepView != null) {
+            // only the colours changed, reuse the iterations of the last frame
+            DeepFrame frame = deepFrame;
+            deepColorVersion = colorVersion;
+            deepPending = deepEngine.submit(
+                    () -> colorizer.apply(frame.iterations, iterations, frame.pixels, deepEngine.getPool()));
+            deepPending.whenComplete((done, e) -> requestFrame());
+        }
+
+        glClear(GL_COLOR_BUFFER_BIT | GL_DEPTH_BUFFER_BIT);
+        deepTexture.draw();
+    }
+
+    /**
+     * Keeps drawing while colours cycle and while sliced iterations or accumulated samples are
+     * still adding to the view. Deep zoom workers request a frame when they finish instead.
+     */
+    @Override
+    public boolean needsFrame() {
+        return unfinished || colorizer.isCycling();
+    }
+
+    private boolean sameDeepFrame(DeepView view, int iterations) {
+        DeepView last = lastDeepView;
+        return last != null && lastDeepMaxIter == iterations
+                && last.getWidth() == view.getWidth() && last.getHeight() == view.getHeight()
+                && last.getScale() == view.getScale()
+                && last.getCentreX().compareTo(view.getCentreX()) == 0
+                && last.getCentreY().compareTo(view.getCentreY()) == 0;
+    }
+
+    private static class DeepFrame {
+        final int width;
+        final int height;
+        final IterationBuffer iterations;
+        final IntBuffer pixels;
+
+        DeepFrame(int width, int height) {
+            this.width = width;
+            this.height = height;
+            this.iterations = new IterationBuffer(width, height);
+            this.pixels = BufferUtils.createIntBuffer(width * height);
+        }
     }
 }
@@ -0,0 +1,191 @@
+package com.gdi.jfxfractals.renderimpl;
+
+import com.gdi.jfxfractals.renderer.PingPongTarget;
+import org.lwjgl.opengl.GL13;
+import org.lwjgl.opengl.GL15;
+import org.lwjgl.opengl.GL30;
+import org.lwjgl.opengl.GL33;
+import org.lwjgl.opengl.GL40;
+
+import static org.lwjgl.opengl.ARBShaderObjects.*;
+import static org.lwjgl.opengl.GL11.*;
+
+/**
+ * Runs frag_slice.shader a slice of iterations per frame, so a view with a limit in the hundreds
+ * of thousands never holds up the surface for longer than a frame. The orbit of every pixel is
+ * kept in a {@link PingPongTarget} between draws and pixels are coloured as they resolve. The
+ * slice follows the GPU time of earlier draws, read from timer queries without waiting on them,
+ * so each frame gets about {@link #TARGET_NANOS} of iterations however many pixels are still running.
+ * Only touched on the GL thread.
+ */
+class SlicedIterations {
+
+    // GPU time per frame, leaves room for the colouring pass and the surface at 60 Hz
+    static final long TARGET_NANOS = 10_000_000L;
+    private static final int FIRST_SLICE = 256;
+    private static final int MIN_SLICE = 16;
+    private static final int MAX_SLICE = 1 << 20;
+
+    private final Runnable drawQuad;
+    private int program;
+    private int uMaxIter;
+    private int uCameraPos;
+    private int uCameraZoom;
+    private int uDistance;
+    private int uSlice;
+    private int uStart;
+    private int uCounts;
+    private int uZ;
+    private int uSaved;
+    private int uState;
+
+    private PingPongTarget state;
+    private int slice = FIRST_SLICE;
+    // two timer queries so one can be read back while the other is in flight
+    private final int[] queries = {GL15.glGenQueries(), GL15.glGenQueries()};
+    private final int[] timedSlice = new int[2];
+    private final boolean[] timing = new boolean[2];
+    private int query;
+
+    // the view in progress; every pixel has run at least reached iterations of it
+    private boolean started;
+    private double centreX;
+    private double centreY;
+    private double halfHeight;
+    private boolean distance;
+    private int maxIter;
+    private int reached;
+
+    SlicedIterations(Runnable drawQuad) {
+        this.drawQuad = drawQuad;
+    }
+
+    /**
+     * Switches to a newly linked frag_slice.shader, e.g. for another formula, and starts over.
+     */
+    void setProgram(int program) {
+        this.program = program;
+        uMaxIter = glGetUniformLocationARB(program, "u_maxIter");
+        uCameraPos = glGetUniformLocationARB(program, "u_CameraPos");
+        uCameraZoom = glGetUniformLocationARB(program, "u_CameraZoom");
+        uDistance = glGetUniformLocationARB(program, "u_Distance");
+        uSlice = glGetUniformLocationARB(program, "u_Slice");
+        uStart = glGetUniformLocationARB(program, "u_Start");
+        uCounts = glGetUniformLocationARB(program, "u_Counts");
+        uZ = glGetUniformLocationARB(program, "u_Z");
+        uSaved = glGetUniformLocationARB(program, "u_Saved");
+        uState = glGetUniformLocationARB(program, "u_State");
+        started = false;
+    }
+
+    int getProgram() {
+        return program;
+    }
+
+    /**
+     * Runs the next slice of the given view, starting over when anything but a higher limit
+     * changed, and returns the RG32F texture of counts to colour. Restores the framebuffer but not
+     * the viewport.
+     */
+    int update(double centreX, double centreY, double halfHeight, float iterations, boolean distance,
+               int width, int height) {
+        if (state == null || !state.fits(width, height)) {
+            if (state != null) {
+                state.delete();
+            }
+            state = new PingPongTarget(width, height, GL30.GL_RG32F, GL30.GL_RGBA32UI, GL30.GL_RGBA32UI, GL30.GL_RGBA32UI);
+            started = false;
+        }
+        int limit = Math.max(1, (int) iterations);
+        // a raised limit carries on with the pixels that ran into the old one
+        boolean resume = started && centreX == this.centreX && centreY == this.centreY
+                && halfHeight == this.halfHeight && distance == this.distance && limit >= maxIter;
+        if (!resume) {
+            started = false;
+            this.centreX = centreX;
+            this.centreY = centreY;
+            this.halfHeight = halfHeight;
+            this.distance = distance;
+            reached = 0;
+        }
+        maxIter = limit;
+        if (!started || reached < maxIter) {
+            draw();
+        }
+        return state.getTextureID(0);
+    }
+
+    /**
+     * Whether every pixel of the last view has resolved or hit the limit.
+     */
+    boolean isComplete() {
+        return started && reached >= maxIter;
+    }
+
+    private void draw() {
+        collectTimings();
+
+        int previous = state.bind();
+        glUseProgramObjectARB(program);
+        for (int i = 0; i < 4; i++) {
+            GL13.glActiveTexture(GL13.GL_TEXTURE0 + i);
+            glBindTexture(GL_TEXTURE_2D, state.getTextureID(i));
+        }
+        glUniform1iARB(uCounts, 0);
+        glUniform1iARB(uZ, 1);
+        glUniform1iARB(uSaved, 2);
+        glUniform1iARB(uState, 3);
+        glUniform1iARB(uStart, started ? 0 : 1);
+        glUniform1iARB(uSlice, slice);
+        glUniform1fARB(uMaxIter, maxIter);
+        GL40.glUniform1dv(uCameraZoom, new double[]{halfHeight});
+        GL40.glUniform2dv(uCameraPos, new double[]{centreX, centreY});
+        glUniform1iARB(uDistance, distance ? 1 : 0);
+
+        // with both queries still in flight this slice goes untimed
+        boolean timed = !timing[query];
+        if (timed) {
+            GL15.glBeginQuery(GL33.GL_TIME_ELAPSED, queries[query]);
+        }
+        drawQuad.run();
+        if (timed) {
+            GL15.glEndQuery(GL33.GL_TIME_ELAPSED);
+            timing[query] = true;
+            timedSlice[query] = slice;
+            query = 1 - query;
+        }
+
+        for (int i = 3; i >= 0; i--) {
+            GL13.glActiveTexture(GL13.GL_TEXTURE0 + i);
+            glBindTexture(GL_TEXTURE_2D, 0);
+        }
+        glUseProgramObjectARB(0);
+        GL30.glBindFramebuffer(GL30.GL_FRAMEBUFFER, previous);
+        state.swap();
+        started = true;
+        reached = (int) Math.min(maxIter, (long) reached + slice);
+    }
+
+    // scales the slice by how far the last timed draw was off the target, at most doubling or halving it
+    private void collectTimings() {
+        for (int i = 0; i < queries.length; i++) {
+            if (!timing[i] || GL15.glGetQueryObjecti(queries[i], GL15.GL_QUERY_RESULT_AVAILABLE) == 0) {
+                continue;
+            }
+            long elapsed = GL33.glGetQueryObjecti64(queries[i], GL15.GL_QUERY_RESULT);
+            timing[i] = false;
+            if (elapsed > 0) {
+                double factor = Math.max(0.5, Math.min(2.0, (double) TARGET_NANOS / elapsed));
+                slice = (int) Math.max(MIN_SLICE, Math.min(MAX_SLICE, timedSlice[i] * factor));
+            }
+        }
+    }
+
+    void dispose() {
+        if (state != null) {
+            state.delete();
+            state = null;
+        }
+        GL15.glDeleteQueries(queries);
+    }
+}
@@ -0,0 +1,44 @@
+package com.gdi.jfxfractals.renderimpl.escape;
+
+/**
+ * z = (|Re z| + i |Im z|)^2 + c. Iterated with the imaginary axis mirrored, so the ship sails
+ * upright in a view whose y grows upwards.
+ */
+public class BurningShipKernel implements EscapeTimeKernel {
+
+    @Override
+    public void compute(ViewPort view, int maxIter, IterationBuffer out, int x0, int y0, int x1, int y1) {
+        int[] iterations = out.getIterations();
+        float[] smooth = out.getSmooth();
+        double eps = Interior.periodicityEpsilon(view.getScale(), 1e-15);
+        for (int py = y0; py < y1; py++) {
+            double cy = view.y(py);
+            int row = out.index(0, py);
+            for (int px = x0; px < x1; px++) {
+                double cx = view.x(px);
+                double x = 0, y = 0, xx = 0, yy = 0;
+                double hx = 0, hy = 0;
+                int checkpoint = 1;
+                int n = 0;
+                while (n < maxIter && xx + yy <= ScalarKernel.BAILOUT) {
+                    y = cy - Math.abs(2 * x * y);
+                    x = xx - yy + cx;
+                    xx = x * x;
+                    yy = y * y;
+                    n++;
+                    if (Math.abs(x - hx) < eps && Math.abs(y - hy) < eps) {
+                        n = maxIter;
+                        break;
+                    }
+                    if (n == checkpoint) {
+                        hx = x;
+                        hy = y;
+                        checkpoint <<= 1;
+                    }
+                }
+                iterations[row + px] = n;
+                smooth[row + px] = n >= maxIter ? IterationBuffer.INTERIOR : IterationBuffer.smooth(n, xx + yy);
+            }
+        }
+    }
+}
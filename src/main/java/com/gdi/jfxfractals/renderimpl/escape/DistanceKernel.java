@@ -0,0 +1,106 @@
+package com.gdi.jfxfractals.renderimpl.escape;
+
+/**
+ * Double precision z = z^2 + c that also carries the derivative of z along the orbit and writes
+ * the exterior distance estimate of every escaped pixel next to its smooth count. The estimate
+ * {@code |z| ln|z| / 2|z'|} is a lower bound, no point of the set is closer, so thin filaments
+ * show up as small distances long before enough iterations are spent to hit them.
+ * For a Julia set z starts at the pixel and c is fixed.
+ */
+public class DistanceKernel implements EscapeTimeKernel {
+
+    private final boolean julia;
+    private final double juliaX;
+    private final double juliaY;
+
+    public DistanceKernel() {
+        this(false, 0, 0);
+    }
+
+    private DistanceKernel(boolean julia, double juliaX, double juliaY) {
+        this.julia = julia;
+        this.juliaX = juliaX;
+        this.juliaY = juliaY;
+    }
+
+    /**
+     * The kernel for the Julia set of {@code c = cx + i cy}.
+     */
+    public static DistanceKernel julia(double cx, double cy) {
+        return new DistanceKernel(true, cx, cy);
+    }
+
+    @Override
+    public boolean estimatesDistance() {
+        return true;
+    }
+
+    @Override
+    public void compute(ViewPort view, int maxIter, IterationBuffer out, int x0, int y0, int x1, int y1) {
+        int[] iterations = out.getIterations();
+        float[] smooth = out.getSmooth();
+        float[] distance = out.getDistance();
+        double eps = Interior.periodicityEpsilon(view.getScale(), 1e-15);
+        for (int py = y0; py < y1; py++) {
+            int row = out.index(0, py);
+            for (int px = x0; px < x1; px++) {
+                double x, y, cx, cy, dx, dy;
+                if (julia) {
+                    x = view.x(px);
+                    y = view.y(py);
+                    cx = juliaX;
+                    cy = juliaY;
+                    dx = 1;
+                } else {
+                    x = 0;
+                    y = 0;
+                    cx = view.x(px);
+                    cy = view.y(py);
+                    dx = 0;
+                    if (Interior.inCardioidOrBulb(cx, cy)) {
+                        iterations[row + px] = maxIter;
+                        smooth[row + px] = IterationBuffer.INTERIOR;
+                        distance[row + px] = 0;
+                        continue;
+                    }
+                }
+                dy = 0;
+                double xx = x * x, yy = y * y;
+                double hx = x, hy = y;
+                int checkpoint = 1;
+                int n = 0;
+                while (n < maxIter && xx + yy <= ScalarKernel.BAILOUT) {
+                    // z' = 2 z z' (+ 1 for the Mandelbrot set, where z depends on c)
+                    double t = 2 * (x * dx - y * dy) + (julia ? 0 : 1);
+                    dy = 2 * (x * dy + y * dx);
+                    dx = t;
+                    y = 2 * x * y + cy;
+                    x = xx - yy + cx;
+                    xx = x * x;
+                    yy = y * y;
+                    n++;
+                    if (Math.abs(x - hx) < eps && Math.abs(y - hy) < eps) {
+                        n = maxIter;
+                        break;
+                    }
+                    if (n == checkpoint) {
+                        hx = x;
+                        hy = y;
+                        checkpoint <<= 1;
+                    }
+                }
+                iterations[row + px] = n;
+                if (n >= maxIter) {
+                    smooth[row + px] = IterationBuffer.INTERIOR;
+                    distance[row + px] = 0;
+                } else {
+                    double magnitude = xx + yy;
+                    double d = 0.25 * Math.sqrt(magnitude / (dx * dx + dy * dy)) * Math.log(magnitude);
+                    smooth[row + px] = IterationBuffer.smooth(n, magnitude);
+                    // a derivative that overflowed belongs to an orbit that stayed on the boundary for long
+                    distance[row + px] = Double.isNaN(d) ? 0 : (float) d;
+                }
+            }
+        }
+    }
+}
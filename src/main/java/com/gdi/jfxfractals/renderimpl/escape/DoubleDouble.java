@@ -0,0 +1,89 @@
+package com.gdi.jfxfractals.renderimpl.escape;
+
+import java.math.BigDecimal;
+
+/**
+ * A number kept as the unevaluated sum of two doubles, about 32 significant digits. Mutable so
+ * kernels can keep a handful per tile and iterate without allocating. Operands may alias the target.
+ */
+final class DoubleDouble {
+
+    double hi;
+    double lo;
+
+    DoubleDouble set(double hi, double lo) {
+        this.hi = hi;
+        this.lo = lo;
+        return this;
+    }
+
+    DoubleDouble set(DoubleDouble a) {
+        return set(a.hi, a.lo);
+    }
+
+    DoubleDouble set(BigDecimal value) {
+        double high = value.doubleValue();
+        return set(high, value.subtract(new BigDecimal(high)).doubleValue());
+    }
+
+    // a + b for a double b, exact before the final rounding to two doubles
+    DoubleDouble add(DoubleDouble a, double b) {
+        double s = a.hi + b;
+        double v = s - a.hi;
+        double e = (a.hi - (s - v)) + (b - v) + a.lo;
+        return normalize(s, e);
+    }
+
+    DoubleDouble add(DoubleDouble a, DoubleDouble b) {
+        double s = a.hi + b.hi;
+        double v = s - a.hi;
+        double e = (a.hi - (s - v)) + (b.hi - v);
+        double t = a.lo + b.lo;
+        double w = t - a.lo;
+        double f = (a.lo - (t - w)) + (b.lo - w);
+        e += t;
+        double hi = s + e;
+        e = e - (hi - s) + f;
+        return normalize(hi, e);
+    }
+
+    DoubleDouble sub(DoubleDouble a, DoubleDouble b) {
+        double s = a.hi - b.hi;
+        double v = s - a.hi;
+        double e = (a.hi - (s - v)) - (b.hi + v);
+        double t = a.lo - b.lo;
+        double w = t - a.lo;
+        double f = (a.lo - (t - w)) - (b.lo + w);
+        e += t;
+        double hi = s + e;
+        e = e - (hi - s) + f;
+        return normalize(hi, e);
+    }
+
+    DoubleDouble mul(DoubleDouble a, DoubleDouble b) {
+        double p = a.hi * b.hi;
+        double e = Math.fma(a.hi, b.hi, -p) + (a.hi * b.lo + a.lo * b.hi);
+        return normalize(p, e);
+    }
+
+    DoubleDouble sqr(DoubleDouble a) {
+        double p = a.hi * a.hi;
+        double e = Math.fma(a.hi, a.hi, -p) + 2 * a.hi * a.lo;
+        return normalize(p, e);
+    }
+
+    DoubleDouble twice(DoubleDouble a) {
+        return set(2 * a.hi, 2 * a.lo);
+    }
+
+    // a - b rounded to a double, exact enough to compare nearby values
+    static double difference(DoubleDouble a, DoubleDouble b) {
+        return (a.hi - b.hi) + (a.lo - b.lo);
+    }
+
+    private DoubleDouble normalize(double s, double e) {
+        hi = s + e;
+        lo = e - (hi - s);
+        return this;
+    }
+}
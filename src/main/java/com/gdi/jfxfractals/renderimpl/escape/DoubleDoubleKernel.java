@@ -0,0 +1,84 @@
+package com.gdi.jfxfractals.renderimpl.escape;
+
+import java.math.BigDecimal;
+
+/**
+ * z = z^2 + c in double-double arithmetic, good for pixels down to about 1e-28. Pixel
+ * coordinates of the view are offsets from an exact origin, so views can be relative to a
+ * centre doubles cannot hold. With a zero origin it iterates ordinary views, adding each pixel's
+ * offset to the centre without rounding it to a double first.
+ */
+public class DoubleDoubleKernel implements EscapeTimeKernel {
+
+    private final BigDecimal originX;
+    private final BigDecimal originY;
+
+    public DoubleDoubleKernel(BigDecimal originX, BigDecimal originY) {
+        this.originX = originX;
+        this.originY = originY;
+    }
+
+    @Override
+    public BigDecimal getOriginX() {
+        return originX;
+    }
+
+    @Override
+    public BigDecimal getOriginY() {
+        return originY;
+    }
+
+    @Override
+    public void compute(ViewPort view, int maxIter, IterationBuffer out, int x0, int y0, int x1, int y1) {
+        int[] iterations = out.getIterations();
+        float[] smooth = out.getSmooth();
+        double eps = Interior.periodicityEpsilon(view.getScale(), 1e-31);
+        DoubleDouble ox = new DoubleDouble().set(originX);
+        DoubleDouble oy = new DoubleDouble().set(originY);
+        ox.add(ox, view.getCentreX());
+        oy.add(oy, view.getCentreY());
+        DoubleDouble cx = new DoubleDouble();
+        DoubleDouble cy = new DoubleDouble();
+        DoubleDouble x = new DoubleDouble();
+        DoubleDouble y = new DoubleDouble();
+        DoubleDouble xx = new DoubleDouble();
+        DoubleDouble yy = new DoubleDouble();
+        DoubleDouble hx = new DoubleDouble();
+        DoubleDouble hy = new DoubleDouble();
+
+        for (int py = y0; py < y1; py++) {
+            cy.add(oy, view.offsetY(py));
+            int row = out.index(0, py);
+            for (int px = x0; px < x1; px++) {
+                cx.add(ox, view.offsetX(px));
+                x.set(0, 0);
+                y.set(0, 0);
+                xx.set(0, 0);
+                yy.set(0, 0);
+                hx.set(0, 0);
+                hy.set(0, 0);
+                int checkpoint = 1;
+                int n = 0;
+                while (n < maxIter && xx.hi + yy.hi <= ScalarKernel.BAILOUT) {
+                    // y = 2xy + cy, x = xx - yy + cx
+                    y.mul(x, y).twice(y).add(y, cy);
+                    x.sub(xx, yy).add(x, cx);
+                    xx.sqr(x);
+                    yy.sqr(y);
+                    n++;
+                    if (Math.abs(DoubleDouble.difference(x, hx)) < eps && Math.abs(DoubleDouble.difference(y, hy)) < eps) {
+                        n = maxIter;
+                        break;
+                    }
+                    if (n == checkpoint) {
+                        hx.set(x);
+                        hy.set(y);
+                        checkpoint <<= 1;
+                    }
+                }
+                iterations[row + px] = n;
+                smooth[row + px] = n >= maxIter ? IterationBuffer.INTERIOR : IterationBuffer.smooth(n, xx.hi + yy.hi);
+            }
+        }
+    }
+}
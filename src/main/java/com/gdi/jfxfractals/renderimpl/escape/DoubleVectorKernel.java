@@ -0,0 +1,119 @@
+package com.gdi.jfxfractals.renderimpl.escape;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * z = z^2 + c over a full SIMD register of pixels at once. Escaped lanes are masked out and
+ * keep their values, the batch finishes when every lane has escaped or hit the limit.
+ * Only load this class after checking {@link KernelType#isAvailable()}.
+ */
+public class DoubleVectorKernel implements EscapeTimeKernel {
+
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    @Override
+    public boolean recordsPending() {
+        return true;
+    }
+
+    @Override
+    public void compute(ViewPort view, int maxIter, IterationBuffer out, int x0, int y0, int x1, int y1) {
+        int lanes = SPECIES.length();
+        int[] iterations = out.getIterations();
+        float[] smooth = out.getSmooth();
+        double[] counts = new double[lanes];
+        double[] magnitudes = new double[lanes];
+        // orbit state of lanes that run out of iterations, see Worklist
+        Worklist pending = out.getPending();
+        double[][] orbit = new double[4][lanes];
+        double[] iota = new double[lanes];
+        for (int i = 0; i < lanes; i++) {
+            iota[i] = i;
+        }
+        DoubleVector laneOffsets = DoubleVector.fromArray(SPECIES, iota, 0);
+        DoubleVector bailout = DoubleVector.broadcast(SPECIES, ScalarKernel.BAILOUT);
+        DoubleVector one = DoubleVector.broadcast(SPECIES, 1);
+        double scale = view.getScale();
+        double left = view.getShiftX() - view.getWidth() / 2;
+        DoubleVector eps = DoubleVector.broadcast(SPECIES, Interior.periodicityEpsilon(scale, 1e-15));
+        DoubleVector limit = DoubleVector.broadcast(SPECIES, maxIter);
+
+        for (int py = y0; py < y1; py++) {
+            DoubleVector cy = DoubleVector.broadcast(SPECIES, view.y(py));
+            int row = out.index(0, py);
+            for (int px = x0; px < x1; px += lanes) {
+                VectorMask<Double> active = SPECIES.indexInRange(0, x1 - px);
+                DoubleVector cx = laneOffsets.add(px + left).mul(scale).add(view.getCentreX());
+                DoubleVector n = DoubleVector.zero(SPECIES);
+
+                VectorMask<Double> inside = inCardioidOrBulb(cx, cy);
+                n = n.blend(limit, inside);
+                active = active.andNot(inside);
+
+                DoubleVector x = DoubleVector.zero(SPECIES);
+                DoubleVector y = DoubleVector.zero(SPECIES);
+                DoubleVector hx = DoubleVector.zero(SPECIES);
+                DoubleVector hy = DoubleVector.zero(SPECIES);
+                int checkpoint = 1;
+
+                for (int i = 0; i < maxIter; i++) {
+                    DoubleVector xx = x.mul(x);
+                    DoubleVector yy = y.mul(y);
+                    active = active.and(xx.add(yy).compare(VectorOperators.LE, bailout));
+                    if (!active.anyTrue()) {
+                        break;
+                    }
+                    DoubleVector ny = x.mul(y).mul(2).add(cy);
+                    x = x.blend(xx.sub(yy).add(cx), active);
+                    y = y.blend(ny, active);
+                    n = n.add(one, active);
+
+                    VectorMask<Double> cycled = active
+                            .and(x.sub(hx).abs().compare(VectorOperators.LT, eps))
+                            .and(y.sub(hy).abs().compare(VectorOperators.LT, eps));
+                    n = n.blend(limit, cycled);
+                    active = active.andNot(cycled);
+                    if (i + 1 == checkpoint) {
+                        hx = x;
+                        hy = y;
+                        checkpoint <<= 1;
+                    }
+                }
+
+                n.intoArray(counts, 0);
+                x.mul(x).add(y.mul(y)).intoArray(magnitudes, 0);
+                if (pending != null && active.anyTrue()) {
+                    // lanes still active went through the whole loop
+                    x.intoArray(orbit[0], 0);
+                    y.intoArray(orbit[1], 0);
+                    hx.intoArray(orbit[2], 0);
+                    hy.intoArray(orbit[3], 0);
+                    for (int i = 0; i < lanes; i++) {
+                        if (active.laneIsSet(i)) {
+                            pending.add(row + px + i, maxIter, orbit[0][i], orbit[1][i], orbit[2][i], orbit[3][i]);
+                        }
+                    }
+                }
+                int len = Math.min(lanes, x1 - px);
+                for (int i = 0; i < len; i++) {
+                    int count = (int) counts[i];
+                    iterations[row + px + i] = count;
+                    smooth[row + px + i] = count >= maxIter ? IterationBuffer.INTERIOR : IterationBuffer.smooth(count, magnitudes[i]);
+                }
+            }
+        }
+    }
+
+    private static VectorMask<Double> inCardioidOrBulb(DoubleVector cx, DoubleVector cy) {
+        DoubleVector yy = cy.mul(cy);
+        DoubleVector x = cx.sub(0.25);
+        DoubleVector q = x.mul(x).add(yy);
+        VectorMask<Double> cardioid = q.mul(q.add(x)).compare(VectorOperators.LE, yy.mul(0.25));
+        DoubleVector x1 = cx.add(1);
+        VectorMask<Double> bulb = x1.mul(x1).add(yy).compare(VectorOperators.LE, 0.0625);
+        return cardioid.or(bulb);
+    }
+}
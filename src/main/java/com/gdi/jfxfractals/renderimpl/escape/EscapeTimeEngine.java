@@ -0,0 +1,281 @@
+package com.gdi.jfxfractals.renderimpl.escape;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * CPU escape-time renderer. A frame is cut into square tiles which are scheduled on a dedicated
+ * fork-join pool, so every core works on the frame and idle workers steal tiles from busy ones.
+ */
+public class EscapeTimeEngine {
+
+    public static final int DEFAULT_TILE_SIZE = 64;
+
+    private static final AtomicInteger poolCount = new AtomicInteger();
+
+    private final ForkJoinPool pool;
+    private final int tileSize;
+    private volatile EscapeTimeKernel kernel = KernelType.preferred().create();
+    private volatile RenderMode mode = RenderMode.TILED;
+    private volatile boolean autoPrecision;
+    private volatile boolean distanceEstimation;
+    private volatile Formula formula = Formula.MANDELBROT;
+    private volatile EscapeTimeKernel formulaKernel;
+    private final EscapeTimeKernel distanceKernel = new DistanceKernel();
+    private final Map<Precision, EscapeTimeKernel> precisionKernels = new EnumMap<>(Precision.class);
+    private final Map<Formula, EscapeTimeKernel> formulaKernels = new EnumMap<>(Formula.class);
+    // the last kernel from kernelAt, handed out again while the origin stays put
+    private EscapeTimeKernel originKernel;
+
+    public EscapeTimeEngine() {
+        this(Runtime.getRuntime().availableProcessors(), DEFAULT_TILE_SIZE);
+    }
+
+    public EscapeTimeEngine(int parallelism, int tileSize) {
+        if (tileSize <= 0) {
+            throw new IllegalArgumentException("tileSize");
+        }
+        String prefix = "escape-" + poolCount.getAndIncrement() + "-worker-";
+        this.pool = new ForkJoinPool(parallelism, p -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+            thread.setName(prefix + thread.getPoolIndex());
+            thread.setDaemon(true);
+            return thread;
+        }, null, false);
+        this.tileSize = tileSize;
+    }
+
+    /**
+     * Computes the whole view into {@code out}, blocking until every tile is done.
+     */
+    public void render(ViewPort view, int maxIter, IterationBuffer out) {
+        render(view, maxIter, out, kernelFor(view));
+    }
+
+    /**
+     * Renders the view around an exact centre in the cheapest {@link Precision} that resolves its
+     * pixels, whatever kernel is set. Returns the precision used. Formulas other than the
+     * Mandelbrot set always run in doubles.
+     */
+    public Precision render(BigDecimal centreX, BigDecimal centreY, double scale, int maxIter, IterationBuffer out) {
+        int width = out.getWidth();
+        int height = out.getHeight();
+        if (formula != Formula.MANDELBROT || formulaKernel != null) {
+            render(new ViewPort(centreX.doubleValue(), centreY.doubleValue(), scale, width, height), maxIter, out);
+            return Precision.DOUBLE;
+        }
+        Precision precision = Precision.forScale(scale);
+        if (precision.isNative()) {
+            render(new ViewPort(centreX.doubleValue(), centreY.doubleValue(), scale, width, height), maxIter, out,
+                    kernel(precision));
+        } else {
+            EscapeTimeKernel exact = precision == Precision.DOUBLE_DOUBLE
+                    ? new DoubleDoubleKernel(centreX, centreY) : new FixedPointKernel(centreX, centreY);
+            render(new ViewPort(0, 0, scale, width, height), maxIter, out, exact);
+        }
+        return precision;
+    }
+
+    /**
+     * Whether pixels of this size are beyond doubles, so views need their centre as an exact
+     * origin, see {@link #kernelAt}. Formulas other than the Mandelbrot set always run in doubles.
+     */
+    public boolean needsOrigin(double scale) {
+        return formula == Formula.MANDELBROT && formulaKernel == null && !Precision.forScale(scale).isNative();
+    }
+
+    /**
+     * The kernel for views given as offsets from an exact origin, in the cheapest precision that
+     * resolves pixels of this size where {@link #needsOrigin} holds. The same instance comes back
+     * while the origin and precision stay the same, so renders around one origin can reuse frames.
+     */
+    public synchronized EscapeTimeKernel kernelAt(BigDecimal originX, BigDecimal originY, double scale) {
+        boolean doubleDouble = Precision.forScale(scale) == Precision.DOUBLE_DOUBLE;
+        EscapeTimeKernel last = originKernel;
+        if (last == null || last instanceof DoubleDoubleKernel != doubleDouble
+                || last.getOriginX().compareTo(originX) != 0 || last.getOriginY().compareTo(originY) != 0) {
+            originKernel = doubleDouble ? new DoubleDoubleKernel(originX, originY) : new FixedPointKernel(originX, originY);
+        }
+        return originKernel;
+    }
+
+    /**
+     * Same as {@link #render(ViewPort, int, IterationBuffer)} with a one-off kernel instead of the engine's own.
+     */
+    public void render(ViewPort view, int maxIter, IterationBuffer out, EscapeTimeKernel kernel) {
+        if (!out.fits(view.getWidth(), view.getHeight())) {
+            throw new IllegalArgumentException("Buffer does not match " + view);
+        }
+        if (!kernel.estimatesDistance()) {
+            Arrays.fill(out.getDistance(), IterationBuffer.NO_DISTANCE);
+        }
+        if (subdivides()) {
+            pool.invoke(ForkJoinTask.adapt(() -> MarianiSilverTask.root(kernel, view, maxIter, out, tileSize).invoke()));
+        } else {
+            renderTiled(view, maxIter, out, kernel);
+        }
+    }
+
+    /**
+     * Iterates every pixel regardless of the render mode, for kernels that only touch some pixels.
+     */
+    public void renderTiled(ViewPort view, int maxIter, IterationBuffer out, EscapeTimeKernel kernel) {
+        if (!out.fits(view.getWidth(), view.getHeight())) {
+            throw new IllegalArgumentException("Buffer does not match " + view);
+        }
+        if (!kernel.estimatesDistance()) {
+            Arrays.fill(out.getDistance(), IterationBuffer.NO_DISTANCE);
+        }
+        pool.invoke(new TileTask(kernel, view, maxIter, out, tileSize, 0, 0, view.getWidth(), view.getHeight()));
+    }
+
+    /**
+     * Runs {@code frameJob} on the engine's pool and returns immediately. The job may call
+     * {@link #render} itself, the calling worker then helps with the tiles instead of blocking.
+     */
+    public CompletableFuture<Void> submit(Runnable frameJob) {
+        return CompletableFuture.runAsync(frameJob, pool);
+    }
+
+    public EscapeTimeKernel getKernel() {
+        return kernel;
+    }
+
+    /**
+     * The kernel used for {@code view}: the one set on the engine, or with automatic precision
+     * the cheapest one that still resolves the view's pixels. Distance estimation takes over
+     * wherever doubles are enough. Formulas other than the Mandelbrot set have one kernel each.
+     */
+    public EscapeTimeKernel kernelFor(ViewPort view) {
+        EscapeTimeKernel custom = formulaKernel;
+        if (custom != null) {
+            return custom;
+        }
+        Formula current = formula;
+        if (current != Formula.MANDELBROT) {
+            return kernel(current);
+        }
+        Precision precision = Precision.forScale(view.getScale());
+        if (distanceEstimation && precision.isNative()) {
+            return distanceKernel;
+        }
+        return autoPrecision ? kernel(precision) : kernel;
+    }
+
+    // one instance per precision, so renderers can tell when the kernel changes between frames
+    private synchronized EscapeTimeKernel kernel(Precision precision) {
+        return precisionKernels.computeIfAbsent(precision, p -> {
+            switch (p) {
+                case FLOAT:
+                    return (KernelType.VECTOR_FLOAT.isAvailable() ? KernelType.VECTOR_FLOAT : KernelType.SCALAR).create();
+                case DOUBLE:
+                    return (KernelType.VECTOR.isAvailable() ? KernelType.VECTOR : KernelType.SCALAR).create();
+                case DOUBLE_DOUBLE:
+                    return new DoubleDoubleKernel(BigDecimal.ZERO, BigDecimal.ZERO);
+                default:
+                    return new FixedPointKernel(BigDecimal.ZERO, BigDecimal.ZERO);
+            }
+        });
+    }
+
+    private synchronized EscapeTimeKernel kernel(Formula formula) {
+        return formulaKernels.computeIfAbsent(formula, Formula::create);
+    }
+
+    public Formula getFormula() {
+        return formula;
+    }
+
+    /**
+     * Switches what {@link #kernelFor} iterates; the kernel set with {@link #setKernel} is only
+     * used for the Mandelbrot set.
+     */
+    public void setFormula(Formula formula) {
+        if (formula == null) {
+            throw new IllegalArgumentException("formula");
+        }
+        this.formula = formula;
+    }
+
+    public EscapeTimeKernel getFormulaKernel() {
+        return formulaKernel;
+    }
+
+    /**
+     * A kernel that replaces the formula for every view, such as a formula compiled at runtime;
+     * {@code null} goes back to {@link #getFormula()}.
+     */
+    public void setFormulaKernel(EscapeTimeKernel formulaKernel) {
+        this.formulaKernel = formulaKernel;
+    }
+
+    public boolean isAutoPrecision() {
+        return autoPrecision;
+    }
+
+    /**
+     * Picks the kernel per view by its pixel size instead of always using the one set, so
+     * shallow views run in float and deep ones still resolve their pixels.
+     */
+    public void setAutoPrecision(boolean autoPrecision) {
+        this.autoPrecision = autoPrecision;
+    }
+
+    public boolean isDistanceEstimation() {
+        return distanceEstimation;
+    }
+
+    /**
+     * Renders with {@link DistanceKernel} so buffers get the distance to the set next to the smooth
+     * count. Views deeper than doubles resolve keep their precision kernel and get no distances.
+     */
+    public void setDistanceEstimation(boolean distanceEstimation) {
+        this.distanceEstimation = distanceEstimation;
+    }
+
+    public void setKernel(EscapeTimeKernel kernel) {
+        if (kernel == null) {
+            throw new IllegalArgumentException("kernel");
+        }
+        this.kernel = kernel;
+    }
+
+    public void setKernel(KernelType type) {
+        setKernel(type.create());
+    }
+
+    // boundary tracing fills enclosed regions, which only holds for connected sets
+    boolean subdivides() {
+        return mode == RenderMode.MARIANI_SILVER && formulaKernel == null && formula.isConnected();
+    }
+
+    public RenderMode getMode() {
+        return mode;
+    }
+
+    public void setMode(RenderMode mode) {
+        if (mode == null) {
+            throw new IllegalArgumentException("mode");
+        }
+        this.mode = mode;
+    }
+
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    public ForkJoinPool getPool() {
+        return pool;
+    }
+
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+}
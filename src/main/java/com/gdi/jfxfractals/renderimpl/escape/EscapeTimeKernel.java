@@ -0,0 +1,45 @@
+package com.gdi.jfxfractals.renderimpl.escape;
+
+import java.math.BigDecimal;
+
+/**
+ * Computes escape-time values for a rectangular region of an {@link IterationBuffer}.
+ * Implementations must be stateless, they are called concurrently from the engine's workers.
+ */
+public interface EscapeTimeKernel {
+
+    /**
+     * Fills pixels {@code [x0, x1) x [y0, y1)} of {@code out}.
+     */
+    void compute(ViewPort view, int maxIter, IterationBuffer out, int x0, int y0, int x1, int y1);
+
+    /**
+     * Whether pixels that run out of iterations are added to {@link IterationBuffer#getPending()},
+     * so results can be continued to a higher limit.
+     */
+    default boolean recordsPending() {
+        return false;
+    }
+
+    /**
+     * Whether {@link IterationBuffer#getDistance()} is written; other kernels leave it untouched.
+     */
+    default boolean estimatesDistance() {
+        return false;
+    }
+
+    /**
+     * Real part of the exact point view coordinates are offsets from, zero for kernels that take
+     * views as they are.
+     */
+    default BigDecimal getOriginX() {
+        return BigDecimal.ZERO;
+    }
+
+    /**
+     * Imaginary part of the exact point view coordinates are offsets from.
+     */
+    default BigDecimal getOriginY() {
+        return BigDecimal.ZERO;
+    }
+}
@@ -0,0 +1,133 @@
+package com.gdi.jfxfractals.renderimpl.escape;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+
+/**
+ * Two's complement fixed point numbers in {@code long[]} limbs of 32 bits each, most significant
+ * first. Limb 0 is the signed integer part, the others are the fraction. All operations write
+ * into arrays supplied by the caller, which may alias the operands unless noted otherwise.
+ */
+final class FixedPoint {
+
+    static final long MASK = 0xFFFFFFFFL;
+    private static final double LIMB = 4294967296.0;
+
+    private FixedPoint() {
+    }
+
+    /**
+     * Limbs needed to resolve pixels of the given size, with a guard limb against rounding
+     * errors growing over the orbit.
+     */
+    static int limbsFor(double scale) {
+        int bits = (int) Math.ceil(-Math.log(scale) / Math.log(2)) + 32;
+        return 1 + Math.max(2, (bits + 31) / 32);
+    }
+
+    static void set(BigDecimal value, long[] out) {
+        BigInteger bits = value.multiply(new BigDecimal(BigInteger.ONE.shiftLeft(32 * (out.length - 1))))
+                .setScale(0, RoundingMode.FLOOR).toBigInteger();
+        for (int i = out.length - 1; i >= 0; i--) {
+            out[i] = bits.longValue() & MASK;
+            bits = bits.shiftRight(32);
+        }
+    }
+
+    // truncated to the last limb, exact for values no finer than the limbs resolve
+    static void set(double value, long[] out) {
+        double m = Math.abs(value);
+        double whole = Math.floor(m);
+        out[0] = (long) whole;
+        m -= whole;
+        for (int i = 1; i < out.length; i++) {
+            m *= LIMB;
+            whole = Math.floor(m);
+            out[i] = (long) whole;
+            m -= whole;
+        }
+        if (value < 0) {
+            negate(out, out);
+        }
+    }
+
+    static void copy(long[] a, long[] out) {
+        System.arraycopy(a, 0, out, 0, a.length);
+    }
+
+    static boolean isNegative(long[] a) {
+        return (a[0] & 0x80000000L) != 0;
+    }
+
+    // signed integer part, rounded towards minus infinity
+    static int integer(long[] a) {
+        return (int) a[0];
+    }
+
+    static long[] negate(long[] a, long[] out) {
+        long carry = 1;
+        for (int i = a.length - 1; i >= 0; i--) {
+            long t = (~a[i] & MASK) + carry;
+            out[i] = t & MASK;
+            carry = t >>> 32;
+        }
+        return out;
+    }
+
+    static void add(long[] a, long[] b, long[] out) {
+        long carry = 0;
+        for (int i = a.length - 1; i >= 0; i--) {
+            long t = a[i] + b[i] + carry;
+            out[i] = t & MASK;
+            carry = t >>> 32;
+        }
+    }
+
+    static void sub(long[] a, long[] b, long[] out) {
+        long carry = 1;
+        for (int i = a.length - 1; i >= 0; i--) {
+            long t = a[i] + (~b[i] & MASK) + carry;
+            out[i] = t & MASK;
+            carry = t >>> 32;
+        }
+    }
+
+    /**
+     * a * b truncated towards zero. {@code out} must not alias the scratch arrays, {@code product}
+     * needs twice as many limbs as the operands. The integer part must not overflow 31 bits.
+     */
+    static void mul(long[] a, long[] b, long[] out, long[] scratchA, long[] scratchB, long[] product) {
+        int n = a.length;
+        boolean negative = isNegative(a) != isNegative(b);
+        long[] ma = isNegative(a) ? negate(a, scratchA) : a;
+        long[] mb = isNegative(b) ? negate(b, scratchB) : b;
+        // limb k of the product weighs 2^(32 * (2n - 1 - k)); unsigned arithmetic in longs never exceeds 64 bits
+        for (int i = n - 1; i >= 0; i--) {
+            long ai = ma[i];
+            long carry = 0;
+            for (int j = n - 1; j >= 0; j--) {
+                int k = i + j + 1;
+                long t = ai * mb[j] + (i == n - 1 ? 0 : product[k]) + carry;
+                product[k] = t & MASK;
+                carry = t >>> 32;
+            }
+            product[i] = carry;
+        }
+        System.arraycopy(product, 1, out, 0, n);
+        if (negative) {
+            negate(out, out);
+        }
+    }
+
+    static double toDouble(long[] a, long[] scratch) {
+        boolean negative = isNegative(a);
+        long[] m = negative ? negate(a, scratch) : a;
+        double r = 0;
+        for (int i = m.length - 1; i >= 1; i--) {
+            r = (r + m[i]) / LIMB;
+        }
+        r += m[0];
+        return negative ? -r : r;
+    }
+}
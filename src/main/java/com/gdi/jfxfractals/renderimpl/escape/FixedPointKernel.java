@@ -0,0 +1,118 @@
+package com.gdi.jfxfractals.renderimpl.escape;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+/**
+ * z = z^2 + c in multi-limb fixed point, for any depth. The number of limbs follows the view's
+ * pixel size. Like {@link DoubleDoubleKernel}, pixel coordinates are offsets from an exact origin
+ * and are added to the view's centre without rounding.
+ * Every limb array is allocated once per call, never per iteration.
+ */
+public class FixedPointKernel implements EscapeTimeKernel {
+
+    // an integer part this large means |z|^2 is past the bailout; checked before squaring so the
+    // squares never overflow. One more than the root since negative parts are rounded down
+    private static final int ESCAPED = (int) Math.sqrt(ScalarKernel.BAILOUT) + 1;
+
+    private final BigDecimal originX;
+    private final BigDecimal originY;
+
+    public FixedPointKernel(BigDecimal originX, BigDecimal originY) {
+        this.originX = originX;
+        this.originY = originY;
+    }
+
+    @Override
+    public BigDecimal getOriginX() {
+        return originX;
+    }
+
+    @Override
+    public BigDecimal getOriginY() {
+        return originY;
+    }
+
+    @Override
+    public void compute(ViewPort view, int maxIter, IterationBuffer out, int x0, int y0, int x1, int y1) {
+        int[] iterations = out.getIterations();
+        float[] smooth = out.getSmooth();
+        double eps = Interior.periodicityEpsilon(view.getScale(), 0);
+        int limbs = FixedPoint.limbsFor(view.getScale());
+        long[] ox = new long[limbs];
+        long[] oy = new long[limbs];
+        FixedPoint.set(originX, ox);
+        FixedPoint.set(originY, oy);
+        long[] t = new long[limbs];
+        FixedPoint.set(view.getCentreX(), t);
+        FixedPoint.add(ox, t, ox);
+        FixedPoint.set(view.getCentreY(), t);
+        FixedPoint.add(oy, t, oy);
+        long[] cx = new long[limbs];
+        long[] cy = new long[limbs];
+        long[] x = new long[limbs];
+        long[] y = new long[limbs];
+        long[] xx = new long[limbs];
+        long[] yy = new long[limbs];
+        long[] hx = new long[limbs];
+        long[] hy = new long[limbs];
+        long[] scratchA = new long[limbs];
+        long[] scratchB = new long[limbs];
+        long[] product = new long[2 * limbs];
+
+        for (int py = y0; py < y1; py++) {
+            FixedPoint.set(view.offsetY(py), t);
+            FixedPoint.add(oy, t, cy);
+            int row = out.index(0, py);
+            for (int px = x0; px < x1; px++) {
+                FixedPoint.set(view.offsetX(px), t);
+                FixedPoint.add(ox, t, cx);
+                Arrays.fill(x, 0);
+                Arrays.fill(y, 0);
+                Arrays.fill(hx, 0);
+                Arrays.fill(hy, 0);
+                int checkpoint = 1;
+                int n = 0;
+                double magnitude = 0;
+                while (n < maxIter) {
+                    if (Math.abs(FixedPoint.integer(x)) >= ESCAPED || Math.abs(FixedPoint.integer(y)) >= ESCAPED) {
+                        double dx = FixedPoint.toDouble(x, scratchA);
+                        double dy = FixedPoint.toDouble(y, scratchA);
+                        magnitude = dx * dx + dy * dy;
+                        break;
+                    }
+                    FixedPoint.mul(x, x, xx, scratchA, scratchB, product);
+                    FixedPoint.mul(y, y, yy, scratchA, scratchB, product);
+                    FixedPoint.add(xx, yy, t);
+                    if (FixedPoint.integer(t) >= ScalarKernel.BAILOUT) {
+                        magnitude = FixedPoint.toDouble(t, scratchA);
+                        break;
+                    }
+                    // y = 2xy + cy, x = xx - yy + cx
+                    FixedPoint.mul(x, y, t, scratchA, scratchB, product);
+                    FixedPoint.add(t, t, t);
+                    FixedPoint.add(t, cy, y);
+                    FixedPoint.sub(xx, yy, t);
+                    FixedPoint.add(t, cx, x);
+                    n++;
+
+                    FixedPoint.sub(x, hx, t);
+                    if (Math.abs(FixedPoint.toDouble(t, scratchA)) < eps) {
+                        FixedPoint.sub(y, hy, t);
+                        if (Math.abs(FixedPoint.toDouble(t, scratchA)) < eps) {
+                            n = maxIter;
+                            break;
+                        }
+                    }
+                    if (n == checkpoint) {
+                        FixedPoint.copy(x, hx);
+                        FixedPoint.copy(y, hy);
+                        checkpoint <<= 1;
+                    }
+                }
+                iterations[row + px] = n;
+                smooth[row + px] = n >= maxIter ? IterationBuffer.INTERIOR : IterationBuffer.smooth(n, magnitude);
+            }
+        }
+    }
+}
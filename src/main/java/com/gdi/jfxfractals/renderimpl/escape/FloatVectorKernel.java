@@ -0,0 +1,116 @@
+package com.gdi.jfxfractals.renderimpl.escape;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Single precision variant of {@link DoubleVectorKernel}, twice the lanes per register.
+ * Pixels blur together once the pixel size drops below about 1e-6.
+ */
+public class FloatVectorKernel implements EscapeTimeKernel {
+
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+    @Override
+    public boolean recordsPending() {
+        return true;
+    }
+
+    @Override
+    public void compute(ViewPort view, int maxIter, IterationBuffer out, int x0, int y0, int x1, int y1) {
+        int lanes = SPECIES.length();
+        int[] iterations = out.getIterations();
+        float[] smooth = out.getSmooth();
+        float[] counts = new float[lanes];
+        float[] magnitudes = new float[lanes];
+        // orbit state of lanes that run out of iterations, see Worklist
+        Worklist pending = out.getPending();
+        float[][] orbit = new float[4][lanes];
+        float[] cxs = new float[lanes];
+        FloatVector bailout = FloatVector.broadcast(SPECIES, (float) ScalarKernel.BAILOUT);
+        FloatVector one = FloatVector.broadcast(SPECIES, 1f);
+        FloatVector eps = FloatVector.broadcast(SPECIES, (float) Interior.periodicityEpsilon(view.getScale(), 1e-6));
+        FloatVector limit = FloatVector.broadcast(SPECIES, maxIter);
+
+        for (int py = y0; py < y1; py++) {
+            FloatVector cy = FloatVector.broadcast(SPECIES, (float) view.y(py));
+            int row = out.index(0, py);
+            for (int px = x0; px < x1; px += lanes) {
+                int len = Math.min(lanes, x1 - px);
+                // map in double first so the offset from the centre is not rounded twice
+                for (int i = 0; i < lanes; i++) {
+                    cxs[i] = (float) view.x(px + i);
+                }
+                VectorMask<Float> active = SPECIES.indexInRange(0, len);
+                FloatVector cx = FloatVector.fromArray(SPECIES, cxs, 0);
+                FloatVector n = FloatVector.zero(SPECIES);
+
+                VectorMask<Float> inside = inCardioidOrBulb(cx, cy);
+                n = n.blend(limit, inside);
+                active = active.andNot(inside);
+
+                FloatVector x = FloatVector.zero(SPECIES);
+                FloatVector y = FloatVector.zero(SPECIES);
+                FloatVector hx = FloatVector.zero(SPECIES);
+                FloatVector hy = FloatVector.zero(SPECIES);
+                int checkpoint = 1;
+
+                for (int i = 0; i < maxIter; i++) {
+                    FloatVector xx = x.mul(x);
+                    FloatVector yy = y.mul(y);
+                    active = active.and(xx.add(yy).compare(VectorOperators.LE, bailout));
+                    if (!active.anyTrue()) {
+                        break;
+                    }
+                    FloatVector ny = x.mul(y).mul(2f).add(cy);
+                    x = x.blend(xx.sub(yy).add(cx), active);
+                    y = y.blend(ny, active);
+                    n = n.add(one, active);
+
+                    VectorMask<Float> cycled = active
+                            .and(x.sub(hx).abs().compare(VectorOperators.LT, eps))
+                            .and(y.sub(hy).abs().compare(VectorOperators.LT, eps));
+                    n = n.blend(limit, cycled);
+                    active = active.andNot(cycled);
+                    if (i + 1 == checkpoint) {
+                        hx = x;
+                        hy = y;
+                        checkpoint <<= 1;
+                    }
+                }
+
+                n.intoArray(counts, 0);
+                x.mul(x).add(y.mul(y)).intoArray(magnitudes, 0);
+                if (pending != null && active.anyTrue()) {
+                    // lanes still active went through the whole loop
+                    x.intoArray(orbit[0], 0);
+                    y.intoArray(orbit[1], 0);
+                    hx.intoArray(orbit[2], 0);
+                    hy.intoArray(orbit[3], 0);
+                    for (int i = 0; i < lanes; i++) {
+                        if (active.laneIsSet(i)) {
+                            pending.add(row + px + i, maxIter, orbit[0][i], orbit[1][i], orbit[2][i], orbit[3][i]);
+                        }
+                    }
+                }
+                for (int i = 0; i < len; i++) {
+                    int count = (int) counts[i];
+                    iterations[row + px + i] = count;
+                    smooth[row + px + i] = count >= maxIter ? IterationBuffer.INTERIOR : IterationBuffer.smooth(count, magnitudes[i]);
+                }
+            }
+        }
+    }
+
+    private static VectorMask<Float> inCardioidOrBulb(FloatVector cx, FloatVector cy) {
+        FloatVector yy = cy.mul(cy);
+        FloatVector x = cx.sub(0.25f);
+        FloatVector q = x.mul(x).add(yy);
+        VectorMask<Float> cardioid = q.mul(q.add(x)).compare(VectorOperators.LE, yy.mul(0.25f));
+        FloatVector x1 = cx.add(1f);
+        VectorMask<Float> bulb = x1.mul(x1).add(yy).compare(VectorOperators.LE, 0.0625f);
+        return cardioid.or(bulb);
+    }
+}
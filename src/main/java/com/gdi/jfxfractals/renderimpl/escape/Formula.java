@@ -0,0 +1,74 @@
+package com.gdi.jfxfractals.renderimpl.escape;
+
+import java.util.Locale;
+
+/**
+ * The escape-time formulas the engine can iterate. Every formula has its own kernel class with
+ * the arithmetic written out in the loop, so each compiles on its own and the JIT never sees a
+ * call site shared between formulas. The Mandelbrot set keeps the engine's SIMD, precision and
+ * distance kernels; the others run in plain doubles.
+ */
+public enum Formula {
+    MANDELBROT("Mandelbrot", 2, true),
+    MULTIBROT_3("Multibrot z^3", 3, true),
+    MULTIBROT_4("Multibrot z^4", 4, true),
+    MULTIBROT_5("Multibrot z^5", 5, true),
+    BURNING_SHIP("Burning Ship", 2, false),
+    TRICORN("Tricorn", 2, false),
+    CELTIC("Celtic", 2, false);
+
+    private final String title;
+    private final int degree;
+    private final boolean connected;
+
+    Formula(String title, int degree, boolean connected) {
+        this.title = title;
+        this.degree = degree;
+        this.connected = connected;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    /**
+     * Power of z, sets the slope of the smooth iteration count.
+     */
+    public int getDegree() {
+        return degree;
+    }
+
+    /**
+     * Whether the set is connected, which boundary tracing relies on to fill enclosed regions.
+     */
+    public boolean isConnected() {
+        return connected;
+    }
+
+    /**
+     * Names the formula in tile cache keys.
+     */
+    public String getKey() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * A double precision kernel for this formula.
+     */
+    public EscapeTimeKernel create() {
+        switch (this) {
+            case MULTIBROT_3:
+            case MULTIBROT_4:
+            case MULTIBROT_5:
+                return new MultibrotKernel(degree);
+            case BURNING_SHIP:
+                return new BurningShipKernel();
+            case TRICORN:
+                return new TricornKernel();
+            case CELTIC:
+                return new CelticKernel();
+            default:
+                return new ScalarKernel();
+        }
+    }
+}
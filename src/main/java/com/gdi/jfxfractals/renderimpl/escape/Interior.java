@@ -0,0 +1,32 @@
+package com.gdi.jfxfractals.renderimpl.escape;
+
+/**
+ * Shortcuts for points that never escape.
+ */
+public final class Interior {
+
+    private Interior() {
+    }
+
+    /**
+     * Whether c lies in the main cardioid or the period-2 bulb, both known in closed form.
+     */
+    public static boolean inCardioidOrBulb(double cx, double cy) {
+        double yy = cy * cy;
+        double x = cx - 0.25;
+        double q = x * x + yy;
+        if (q * (q + x) <= 0.25 * yy) {
+            return true;
+        }
+        double x1 = cx + 1;
+        return x1 * x1 + yy <= 0.0625;
+    }
+
+    /**
+     * How close an orbit has to come back to a saved point to count as a cycle. A fraction of a
+     * pixel, so a false match can at worst misclassify pixels already touching the boundary.
+     */
+    public static double periodicityEpsilon(double scale, double floor) {
+        return Math.max(scale * 1e-3, floor);
+    }
+}
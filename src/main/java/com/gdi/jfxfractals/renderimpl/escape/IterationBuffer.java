@@ -0,0 +1,105 @@
+package com.gdi.jfxfractals.renderimpl.escape;
+
+import java.util.Arrays;
+
+/**
+ * Per-pixel escape-time results stored in flat primitive arrays, row-major from the bottom row.
+ * Next to the integer counts every pixel gets a smooth (normalized) iteration count, which is what
+ * colouring works from, and kernels that estimate it also write the distance to the set. Buffers are
+ * reused between frames and only reallocated when the view size changes.
+ */
+public class IterationBuffer {
+
+    /**
+     * Smooth value of pixels that did not escape.
+     */
+    public static final float INTERIOR = -1f;
+
+    /**
+     * Smooth value of pixels with no result yet, such as the parts of a zoom preview the previous
+     * frame did not cover.
+     */
+    public static final float MISSING = -2f;
+
+    /**
+     * Distance of pixels whose kernel does not estimate one.
+     */
+    public static final float NO_DISTANCE = Float.NaN;
+
+    private final int width;
+    private final int height;
+    private final int[] iterations;
+    private final float[] smooth;
+    private final float[] distance;
+    private volatile Worklist pending;
+
+    public IterationBuffer(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.iterations = new int[width * height];
+        this.smooth = new float[width * height];
+        this.distance = new float[width * height];
+        Arrays.fill(distance, NO_DISTANCE);
+    }
+
+    /**
+     * Normalized iteration count of a pixel that escaped after {@code n} iterations with
+     * {@code |z|^2 = magnitude}; continuous across the bands of the integer count.
+     */
+    public static float smooth(int n, double magnitude) {
+        double nu = n + 1 - Math.log(0.5 * Math.log(magnitude)) / Math.log(2);
+        return (float) Math.max(0, nu);
+    }
+
+    /**
+     * Same as {@link #smooth(int, double)} for z^degree + c, where |z| grows by that power per step.
+     */
+    public static float smooth(int n, double magnitude, double degree) {
+        double nu = n + 1 - Math.log(0.5 * Math.log(magnitude)) / Math.log(degree);
+        return (float) Math.max(0, nu);
+    }
+
+    public boolean fits(int width, int height) {
+        return this.width == width && this.height == height;
+    }
+
+    public int index(int x, int y) {
+        return y * width + x;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int[] getIterations() {
+        return iterations;
+    }
+
+    public float[] getSmooth() {
+        return smooth;
+    }
+
+    /**
+     * Lower bound of the distance from each escaped pixel to the set, in complex plane units
+     * rather than pixels so samples of coarse passes stay valid when painted over larger blocks.
+     */
+    public float[] getDistance() {
+        return distance;
+    }
+
+    public Worklist getPending() {
+        return pending;
+    }
+
+    /**
+     * When set, kernels add the pixels that run out of iterations to {@code pending} so they can
+     * be continued to a higher limit later. {@code null} by default.
+     */
+    public void setPending(Worklist pending) {
+        this.pending = pending;
+    }
+}
@@ -0,0 +1,134 @@
+package com.gdi.jfxfractals.renderimpl.escape;
+
+import com.gdi.jfxfractals.renderimpl.palette.Colorizer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.IntBuffer;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.IntStream;
+
+/**
+ * Small Julia set renders for a parameter that changes with every mouse move. Runs on its own
+ * engine with a couple of workers, so it never queues behind the frame of the main view. Only
+ * the latest parameter counts: a newer request stops the render in progress between bands of
+ * rows, and requests that arrive while one is running collapse into one.
+ */
+public class JuliaPreview {
+
+    /**
+     * Receives finished frames as ARGB pixels, bottom row first, on a worker thread. The array
+     * is not touched again by the preview.
+     */
+    public interface FrameListener {
+        void frameDone(int[] argb, int width, int height, double cx, double cy);
+    }
+
+    public static final int DEFAULT_WIDTH = 160;
+    public static final int DEFAULT_HEIGHT = 120;
+    public static final int DEFAULT_MAX_ITER = 256;
+
+    private static final Logger log = LoggerFactory.getLogger(JuliaPreview.class);
+
+    private static final int PARALLELISM = 2;
+    private static final int ROWS_PER_TASK = 8;
+    // the filled Julia set always fits in |z| <= 2
+    private static final double EXTENT = 4.0;
+
+    private final EscapeTimeEngine engine = new EscapeTimeEngine(PARALLELISM, EscapeTimeEngine.DEFAULT_TILE_SIZE);
+    private final Colorizer colorizer;
+    private volatile FrameListener listener;
+    private final AtomicInteger generation = new AtomicInteger();
+    private final AtomicReference<double[]> requested = new AtomicReference<>();
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final IterationBuffer buffer;
+    private final ViewPort view;
+    private volatile int maxIter = DEFAULT_MAX_ITER;
+
+    public JuliaPreview(Colorizer colorizer) {
+        this(DEFAULT_WIDTH, DEFAULT_HEIGHT, colorizer);
+    }
+
+    public JuliaPreview(int width, int height, Colorizer colorizer) {
+        this.colorizer = colorizer;
+        this.buffer = new IterationBuffer(width, height);
+        this.view = new ViewPort(0, 0, EXTENT / Math.min(width, height), width, height);
+    }
+
+    /**
+     * Renders the Julia set of {@code c = cx + i cy} as soon as possible, dropping older requests.
+     * Does nothing while no one listens.
+     */
+    public void request(double cx, double cy) {
+        if (listener == null) {
+            return;
+        }
+        // before publishing, so the drain never pairs this request with an older generation
+        generation.incrementAndGet();
+        requested.set(new double[]{cx, cy});
+        if (running.compareAndSet(false, true)) {
+            engine.submit(this::drain);
+        }
+    }
+
+    private void drain() {
+        double[] c;
+        while ((c = requested.getAndSet(null)) != null) {
+            render(c[0], c[1], generation.get());
+        }
+        running.set(false);
+        // a request may have slipped in between the last poll and the flag
+        if (requested.get() != null && running.compareAndSet(false, true)) {
+            engine.submit(this::drain);
+        }
+    }
+
+    private void render(double cx, double cy, int gen) {
+        long start = System.nanoTime();
+        EscapeTimeKernel kernel = DistanceKernel.julia(cx, cy);
+        int iterations = maxIter;
+        int width = view.getWidth();
+        int height = view.getHeight();
+        int tasks = (height + ROWS_PER_TASK - 1) / ROWS_PER_TASK;
+        engine.getPool().invoke(ForkJoinTask.adapt(() -> IntStream.range(0, tasks).parallel().forEach(task -> {
+            if (generation.get() == gen) {
+                int y0 = task * ROWS_PER_TASK;
+                kernel.compute(view, iterations, buffer, 0, y0, width, Math.min(height, y0 + ROWS_PER_TASK));
+            }
+        })));
+        if (generation.get() != gen) {
+            return;
+        }
+        int[] argb = new int[width * height];
+        colorizer.apply(buffer, view.getScale(), iterations, null, IntBuffer.wrap(argb), engine.getPool());
+        log.debug("Julia preview of {} + {}i in {} us", cx, cy, (System.nanoTime() - start) / 1000);
+        FrameListener target = listener;
+        if (target != null) {
+            target.frameDone(argb, width, height, cx, cy);
+        }
+    }
+
+    public FrameListener getListener() {
+        return listener;
+    }
+
+    public void setListener(FrameListener listener) {
+        this.listener = listener;
+    }
+
+    public int getMaxIter() {
+        return maxIter;
+    }
+
+    public void setMaxIter(int maxIter) {
+        this.maxIter = Math.max(1, maxIter);
+    }
+
+    public void shutdown() {
+        generation.incrementAndGet();
+        engine.shutdown();
+    }
+}
@@ -0,0 +1,61 @@
+package com.gdi.jfxfractals.renderimpl.escape;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Locale;
+
+/**
+ * The escape-time kernels the engine can run. The SIMD kernels need the
+ * {@code jdk.incubator.vector} module, started with {@code --add-modules jdk.incubator.vector}.
+ * The default can be forced with {@code -Djfxfractals.kernel=scalar|vector|vector_float}.
+ */
+public enum KernelType {
+    SCALAR,
+    VECTOR,
+    VECTOR_FLOAT;
+
+    public static final String KERNEL_PROPERTY = "jfxfractals.kernel";
+
+    private static final Logger log = LoggerFactory.getLogger(KernelType.class);
+
+    private static final boolean vectorModulePresent =
+            ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+
+    public boolean isAvailable() {
+        return this == SCALAR || vectorModulePresent;
+    }
+
+    public EscapeTimeKernel create() {
+        if (!isAvailable()) {
+            throw new IllegalStateException(this + " kernel needs --add-modules jdk.incubator.vector");
+        }
+        switch (this) {
+            case VECTOR:
+                return new DoubleVectorKernel();
+            case VECTOR_FLOAT:
+                return new FloatVectorKernel();
+            default:
+                return new ScalarKernel();
+        }
+    }
+
+    /**
+     * The kernel requested by the system property, otherwise the fastest double precision one.
+     */
+    public static KernelType preferred() {
+        String requested = System.getProperty(KERNEL_PROPERTY);
+        if (requested != null) {
+            try {
+                KernelType type = valueOf(requested.trim().toUpperCase(Locale.ROOT));
+                if (type.isAvailable()) {
+                    return type;
+                }
+                log.warn("Kernel {} is not available, falling back", type);
+            } catch (IllegalArgumentException e) {
+                log.warn("Unknown kernel {}", requested);
+            }
+        }
+        return VECTOR.isAvailable() ? VECTOR : SCALAR;
+    }
+}
@@ -0,0 +1,184 @@
+package com.gdi.jfxfractals.renderimpl.escape;
+
+import java.util.Arrays;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Mariani-Silver subdivision. A rectangle whose border is already computed is filled without
+ * iterating when the whole border is inside the set, otherwise it is cut in four along a
+ * computed cross and the quarters run in parallel. Relies on the connectedness of the set, so
+ * it can miss details thinner than the rectangles it fills. Escaped bands are not filled even
+ * when their border shares one count, the smooth count still varies across them, and a
+ * rectangle whose border escaped everywhere is iterated in one go rather than cut further.
+ * Bounds are inclusive and always include the computed border.
+ */
+class MarianiSilverTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    // below this many interior pixels the crosses cost more than the fills save; vertical ones
+    // leave most lanes of the vector kernels idle
+    static final int MIN_INTERIOR = 1024;
+
+    /**
+     * How the subdivision gets at the pixels of {@code out}. Rectangles are half-open, like
+     * {@link EscapeTimeKernel#compute}, and never overlap within one subdivision.
+     */
+    interface Pixels {
+
+        void compute(int x0, int y0, int x1, int y1);
+
+        /**
+         * Marks the rectangle as inside the set without iterating it.
+         */
+        void fill(int x0, int y0, int x1, int y1);
+    }
+
+    private final Pixels pixels;
+    private final int maxIter;
+    private final IterationBuffer out;
+    private final int left, bottom, right, top;
+
+    private MarianiSilverTask(Pixels pixels, int maxIter, IterationBuffer out, int left, int bottom, int right, int top) {
+        this.pixels = pixels;
+        this.maxIter = maxIter;
+        this.out = out;
+        this.left = left;
+        this.bottom = bottom;
+        this.right = right;
+        this.top = top;
+    }
+
+    /**
+     * Computes the border of the whole buffer and returns the task that fills the rest.
+     */
+    static MarianiSilverTask root(EscapeTimeKernel kernel, ViewPort view, int maxIter, IterationBuffer out,
+                                  int tileSize) {
+        return root(new Iterated(kernel, view, maxIter, out, tileSize), maxIter, out,
+                0, 0, view.getWidth() - 1, view.getHeight() - 1);
+    }
+
+    /**
+     * Computes the border of the rectangle and returns the task that fills the rest.
+     */
+    static MarianiSilverTask root(Pixels pixels, int maxIter, IterationBuffer out, int left, int bottom, int right, int top) {
+        pixels.compute(left, bottom, right + 1, bottom + 1);
+        if (top > bottom) {
+            pixels.compute(left, top, right + 1, top + 1);
+        }
+        pixels.compute(left, bottom + 1, left + 1, top);
+        if (right > left) {
+            pixels.compute(right, bottom + 1, right + 1, top);
+        }
+        return new MarianiSilverTask(pixels, maxIter, out, left, bottom, right, top);
+    }
+
+    @Override
+    protected void compute() {
+        int innerWidth = right - left - 1;
+        int innerHeight = top - bottom - 1;
+        if (innerWidth <= 0 || innerHeight <= 0) {
+            return;
+        }
+        if (innerWidth * innerHeight <= MIN_INTERIOR) {
+            pixels.compute(left + 1, bottom + 1, right, top);
+            return;
+        }
+
+        int inside = interiorOnBorder();
+        if (inside == 2 * (right - left + top - bottom)) {
+            pixels.fill(left + 1, bottom + 1, right, top);
+            return;
+        }
+        if (inside == 0) {
+            // no part of the border can become a filled rectangle, cutting it only costs the crosses
+            pixels.compute(left + 1, bottom + 1, right, top);
+            return;
+        }
+
+        int midX = (left + right) >>> 1;
+        int midY = (bottom + top) >>> 1;
+        pixels.compute(midX, bottom + 1, midX + 1, top);
+        pixels.compute(left + 1, midY, midX, midY + 1);
+        pixels.compute(midX + 1, midY, right, midY + 1);
+
+        invokeAll(new MarianiSilverTask(pixels, maxIter, out, left, bottom, midX, midY),
+                new MarianiSilverTask(pixels, maxIter, out, midX, bottom, right, midY),
+                new MarianiSilverTask(pixels, maxIter, out, left, midY, midX, top),
+                new MarianiSilverTask(pixels, maxIter, out, midX, midY, right, top));
+    }
+
+    /**
+     * Number of border pixels that did not escape.
+     */
+    private int interiorOnBorder() {
+        int[] iterations = out.getIterations();
+        int bottomRow = out.index(0, bottom);
+        int topRow = out.index(0, top);
+        int inside = 0;
+        for (int x = left; x <= right; x++) {
+            if (iterations[bottomRow + x] >= maxIter) {
+                inside++;
+            }
+            if (iterations[topRow + x] >= maxIter) {
+                inside++;
+            }
+        }
+        for (int y = bottom + 1; y < top; y++) {
+            int row = out.index(0, y);
+            if (iterations[row + left] >= maxIter) {
+                inside++;
+            }
+            if (iterations[row + right] >= maxIter) {
+                inside++;
+            }
+        }
+        return inside;
+    }
+
+    /**
+     * Every pixel iterated by the kernel straight into the buffer, rectangles larger than a tile
+     * split into tiles for the other workers.
+     */
+    private static final class Iterated implements Pixels {
+        private final EscapeTimeKernel kernel;
+        private final ViewPort view;
+        private final int maxIter;
+        private final IterationBuffer out;
+        private final int tileSize;
+
+        Iterated(EscapeTimeKernel kernel, ViewPort view, int maxIter, IterationBuffer out, int tileSize) {
+            this.kernel = kernel;
+            this.view = view;
+            this.maxIter = maxIter;
+            this.out = out;
+            this.tileSize = tileSize;
+        }
+
+        @Override
+        public void compute(int x0, int y0, int x1, int y1) {
+            new TileTask(kernel, view, maxIter, out, tileSize, x0, y0, x1, y1).invoke();
+        }
+
+        @Override
+        public void fill(int x0, int y0, int x1, int y1) {
+            int[] iterations = out.getIterations();
+            float[] smooth = out.getSmooth();
+            Worklist pending = out.getPending();
+            for (int y = y0; y < y1; y++) {
+                int row = out.index(0, y);
+                Arrays.fill(iterations, row + x0, row + x1, maxIter);
+                Arrays.fill(smooth, row + x0, row + x1, IterationBuffer.INTERIOR);
+                if (kernel.estimatesDistance()) {
+                    Arrays.fill(out.getDistance(), row + x0, row + x1, 0);
+                }
+                if (pending != null) {
+                    // never iterated, a higher limit has to start them from scratch
+                    for (int x = x0; x < x1; x++) {
+                        pending.add(row + x, 0, 0, 0, 0, 0);
+                    }
+                }
+            }
+        }
+    }
+}
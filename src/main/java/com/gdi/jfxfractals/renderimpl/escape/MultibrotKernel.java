@@ -0,0 +1,61 @@
+package com.gdi.jfxfractals.renderimpl.escape;
+
+/**
+ * z = z^n + c for a whole power n of at least 2, the power taken by repeated multiplication.
+ */
+public class MultibrotKernel implements EscapeTimeKernel {
+
+    private final int power;
+
+    public MultibrotKernel(int power) {
+        if (power < 2) {
+            throw new IllegalArgumentException("power");
+        }
+        this.power = power;
+    }
+
+    public int getPower() {
+        return power;
+    }
+
+    @Override
+    public void compute(ViewPort view, int maxIter, IterationBuffer out, int x0, int y0, int x1, int y1) {
+        int[] iterations = out.getIterations();
+        float[] smooth = out.getSmooth();
+        double eps = Interior.periodicityEpsilon(view.getScale(), 1e-15);
+        for (int py = y0; py < y1; py++) {
+            double cy = view.y(py);
+            int row = out.index(0, py);
+            for (int px = x0; px < x1; px++) {
+                double cx = view.x(px);
+                double x = 0, y = 0, magnitude = 0;
+                double hx = 0, hy = 0;
+                int checkpoint = 1;
+                int n = 0;
+                while (n < maxIter && magnitude <= ScalarKernel.BAILOUT) {
+                    double zx = x, zy = y;
+                    for (int k = 1; k < power; k++) {
+                        double t = zx * x - zy * y;
+                        zy = zx * y + zy * x;
+                        zx = t;
+                    }
+                    x = zx + cx;
+                    y = zy + cy;
+                    magnitude = x * x + y * y;
+                    n++;
+                    if (Math.abs(x - hx) < eps && Math.abs(y - hy) < eps) {
+                        n = maxIter;
+                        break;
+                    }
+                    if (n == checkpoint) {
+                        hx = x;
+                        hy = y;
+                        checkpoint <<= 1;
+                    }
+                }
+                iterations[row + px] = n;
+                smooth[row + px] = n >= maxIter ? IterationBuffer.INTERIOR : IterationBuffer.smooth(n, magnitude, power);
+            }
+        }
+    }
+}
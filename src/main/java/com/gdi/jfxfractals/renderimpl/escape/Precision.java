@@ -0,0 +1,42 @@
+package com.gdi.jfxfractals.renderimpl.escape;
+
+/**
+ * Number formats the engine can iterate in, cheapest first. Each one is used down to the pixel
+ * size where neighbouring pixels would start to share coordinates, see {@link #forScale}.
+ */
+public enum Precision {
+    FLOAT(1e-5),
+    DOUBLE(1e-13),
+    DOUBLE_DOUBLE(1e-28),
+    FIXED_POINT(0);
+
+    private final double minScale;
+
+    Precision(double minScale) {
+        this.minScale = minScale;
+    }
+
+    /**
+     * The cheapest precision for pixels of the given size.
+     */
+    public static Precision forScale(double scale) {
+        for (Precision precision : values()) {
+            if (scale >= precision.minScale) {
+                return precision;
+            }
+        }
+        return FIXED_POINT;
+    }
+
+    /**
+     * Whether views at this precision can be described by a plain {@link ViewPort}. The others
+     * need the view centre as an exact origin, see {@link EscapeTimeEngine#render(java.math.BigDecimal, java.math.BigDecimal, double, int, IterationBuffer)}.
+     */
+    public boolean isNative() {
+        return this == FLOAT || this == DOUBLE;
+    }
+
+    public double getMinScale() {
+        return minScale;
+    }
+}
@@ -0,0 +1,788 @@
+package com.gdi.jfxfractals.renderimpl.escape;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+/**
+ * Coarse to fine rendering for interactive views. The first pass samples every 4th pixel in both
+ * directions and fills 4x4 blocks, the following passes only compute the pixels in between and
+ * refine the blocks to 2x2 and then single pixels, so no sample is computed twice. Within a pass
+ * tiles are taken nearest the focus point first. Starting a new render cancels the running one
+ * at the next tile boundary. With a {@link TileCache} attached, cached tiles are copied in before
+ * the first pass and only the missing ones are iterated. Rendering the last complete view again
+ * with a higher iteration limit only continues the pixels that had not escaped, see {@link Worklist}.
+ * A view panned by whole pixels from the last complete one is shifted in place instead, only the
+ * exposed rows and columns are iterated.
+ * Any other view first gets a preview resampled from whatever the buffer showed before, which the
+ * passes then refine sample by sample instead of painting blocks over it.
+ * When the engine is set to {@link RenderMode#MARIANI_SILVER}, the last pass subdivides each tile
+ * it iterates: the tile border is completed at full resolution first and regions it encloses
+ * inside the set are filled instead of iterated, see {@link MarianiSilverTask}.
+ */
+public class ProgressiveRenderer {
+
+    /**
+     * Called from the engine pool after each completed pass; {@code out} is fully covered from the first pass on.
+     */
+    public interface PassListener {
+
+        /**
+         * Pass number of the preview resampled from the previous frame, reported before the first pass.
+         */
+        int PREVIEW = -1;
+
+        void passDone(int pass, int passCount);
+    }
+
+    private static final Grid[][] PASSES = {
+            {new Grid(4, 0, 0, 4)},
+            {new Grid(4, 2, 0, 2), new Grid(4, 0, 2, 2), new Grid(4, 2, 2, 2)},
+            {new Grid(2, 1, 0, 1), new Grid(2, 0, 1, 1), new Grid(2, 1, 1, 1)},
+    };
+
+    private static final Logger log = LoggerFactory.getLogger(ProgressiveRenderer.class);
+
+    private final EscapeTimeEngine engine;
+    private final AtomicInteger generation = new AtomicInteger();
+    private volatile TileCache cache;
+    private volatile String formula = "mandelbrot";
+    private CompletableFuture<Void> last = CompletableFuture.completedFuture(null);
+
+    // what the last complete render left to raise its limit, only touched by the render currently running
+    private Resumable resumable;
+
+    // the view out approximately shows, resampled for a preview when the next view differs
+    private ViewPort shown;
+    private EscapeTimeKernel shownKernel;
+    private IterationBuffer shownOut;
+    private int[] previewIterations;
+    private float[] previewSmooth;
+    private float[] previewDistance;
+
+    // one buffer per grid, only touched by the render currently running
+    private IterationBuffer[][] scratch;
+    private int scratchWidth;
+    private int scratchHeight;
+
+    public ProgressiveRenderer(EscapeTimeEngine engine) {
+        this.engine = engine;
+    }
+
+    /**
+     * Reuses whole tiles from {@code cache} for views built with {@link TileCache#snap}, other views
+     * are rendered as if there was no cache. {@code null} turns caching off.
+     */
+    public void setCache(TileCache cache) {
+        if (cache != null && cache.getTileSize() % 4 != 0) {
+            throw new IllegalArgumentException("Tile size must be a multiple of the coarsest sample stride");
+        }
+        this.cache = cache;
+    }
+
+    public TileCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Names what the kernel iterates, so tiles of different formulas never mix in the cache.
+     */
+    public void setFormula(String formula) {
+        this.formula = formula;
+    }
+
+    public static int passCount() {
+        return PASSES.length;
+    }
+
+    /**
+     * Cancels any running render and starts a new one. The new render only begins once the
+     * cancelled one has left its current tile, so the two never write to {@code out} together.
+     *
+     * @param focusX pixel column to refine first, usually under the cursor
+     * @param focusY pixel row to refine first
+     */
+    public CompletableFuture<Void> render(ViewPort view, int maxIter, IterationBuffer out,
+                                          int focusX, int focusY, PassListener listener) {
+        return render(view, engine.kernelFor(view), maxIter, out, focusX, focusY, listener);
+    }
+
+    /**
+     * Same as {@link #render(ViewPort, int, IterationBuffer, int, int, PassListener)} with a kernel
+     * picked by the caller, such as one around an exact origin from {@link EscapeTimeEngine#kernelAt}.
+     * Frames and cached tiles are only reused by renders around the same origin.
+     */
+    public synchronized CompletableFuture<Void> render(ViewPort view, EscapeTimeKernel kernel, int maxIter,
+                                                       IterationBuffer out, int focusX, int focusY,
+                                                       PassListener listener) {
+        if (!out.fits(view.getWidth(), view.getHeight())) {
+            throw new IllegalArgumentException("Buffer does not match " + view);
+        }
+        int gen = generation.incrementAndGet();
+        last = last.handle((v, e) -> null)
+                .thenRunAsync(() -> run(gen, view, kernel, maxIter, out, focusX, focusY, listener), engine.getPool());
+        return last;
+    }
+
+    /**
+     * Runs {@code job} on the engine pool once the current render has finished or given up,
+     * for work that reads the output buffer, such as colouring it again.
+     */
+    public synchronized CompletableFuture<Void> then(Runnable job) {
+        last = last.handle((v, e) -> null).thenRunAsync(job, engine.getPool());
+        return last;
+    }
+
+    public void cancel() {
+        generation.incrementAndGet();
+    }
+
+    private boolean cancelled(int gen) {
+        return generation.get() != gen;
+    }
+
+    private void run(int gen, ViewPort view, EscapeTimeKernel kernel, int maxIter, IterationBuffer out,
+                     int focusX, int focusY, PassListener listener) {
+        if (cancelled(gen)) {
+            return;
+        }
+        Resumable previous = resumable;
+        resumable = null;
+        if (previous != null && previous.matches(view, out, kernel, formula) && kernel.recordsPending()
+                && maxIter >= previous.worklist.getLimit()) {
+            resume(gen, previous, view, maxIter, out, listener);
+            return;
+        }
+        int[] offset = previous != null && maxIter == previous.worklist.getLimit()
+                ? previous.offset(view, out, kernel, formula) : null;
+        if (offset != null) {
+            shift(gen, previous, view, maxIter, out, offset[0], offset[1], listener);
+            return;
+        }
+        int width = view.getWidth();
+        int height = view.getHeight();
+
+        // with a cache, tiles and sample grids are aligned to the cache grid instead of the frame corner
+        TileCache tileCache = TileCache.isSnapped(view) ? cache : null;
+        int tileSize = tileCache != null ? tileCache.getTileSize() : engine.getTileSize();
+        Alignment alignment = tileCache != null ? Alignment.of(view, tileSize) : new Alignment(0, 0, width, height);
+
+        boolean preview = reproject(view, kernel, out);
+        List<int[]> tiles = tilesAround(alignment, tileSize, focusX, focusY);
+        List<int[]> hits = new ArrayList<>();
+        if (tileCache != null) {
+            String precision = precision(kernel);
+            List<int[]> missing = new ArrayList<>();
+            for (int[] tile : tiles) {
+                IterationBuffer cached = tileCache.get(key(view, maxIter, precision, alignment, tileSize, tile));
+                if (cached != null) {
+                    copy(cached, tileSize, tile, alignment, out, true);
+                    hits.add(tile);
+                } else {
+                    missing.add(tile);
+                }
+            }
+            tiles = missing;
+        }
+        if (preview) {
+            shown = view;
+            shownKernel = kernel;
+            listener.passDone(PassListener.PREVIEW, PASSES.length);
+        }
+
+        IterationBuffer[][] buffers = scratch(alignment.width, alignment.height);
+        for (IterationBuffer[] passBuffers : buffers) {
+            for (IterationBuffer buffer : passBuffers) {
+                buffer.getPending().reset(maxIter);
+            }
+        }
+        // pixels the last pass filled instead of iterating
+        Worklist filled = new Worklist();
+        filled.reset(maxIter);
+        boolean subdivide = engine.subdivides();
+        List<int[]> work = tiles;
+        for (int p = 0; p < PASSES.length; p++) {
+            if (work.isEmpty()) {
+                // everything came from the cache
+                listener.passDone(PASSES.length - 1, PASSES.length);
+                break;
+            }
+            Grid[] grids = PASSES[p];
+            ViewPort[] views = new ViewPort[grids.length];
+            for (int g = 0; g < grids.length; g++) {
+                views[g] = grids[g].view(view, alignment, buffers[p][g]);
+            }
+            IterationBuffer[] passBuffers = buffers[p];
+            // the earlier passes leave every other pixel of a tile border computed, the last one completes it
+            Subdivision subdivision = subdivide && p == PASSES.length - 1
+                    ? new Subdivision(kernel, grids, views, maxIter, passBuffers, out, alignment, preview, filled) : null;
+
+            AtomicInteger next = new AtomicInteger();
+            List<ForkJoinTask<?>> workers = new ArrayList<>();
+            for (int w = 0; w < engine.getPool().getParallelism(); w++) {
+                workers.add(ForkJoinTask.adapt(() -> {
+                    int t;
+                    while (!cancelled(gen) && (t = next.getAndIncrement()) < work.size()) {
+                        int[] tile = work.get(t);
+                        if (subdivision != null) {
+                            subdivision.run(tile);
+                            continue;
+                        }
+                        for (int g = 0; g < grids.length; g++) {
+                            grids[g].compute(kernel, views[g], maxIter, passBuffers[g], out, alignment, tile, preview);
+                        }
+                    }
+                }));
+            }
+            ForkJoinTask.invokeAll(workers);
+
+            if (cancelled(gen)) {
+                return;
+            }
+            shown = view;
+            shownKernel = kernel;
+            shownOut = out;
+            listener.passDone(p, PASSES.length);
+        }
+
+        // the pixels that ran out of iterations, so a higher limit can carry on from here
+        Worklist worklist = new Worklist();
+        worklist.reset(maxIter);
+        for (int p = 0; p < PASSES.length; p++) {
+            for (int g = 0; g < PASSES[p].length; g++) {
+                PASSES[p][g].collect(buffers[p][g], alignment, out, worklist);
+            }
+        }
+        filled.moveTo(worklist, pixel -> pixel);
+        for (int[] tile : hits) {
+            // cached tiles come without orbits, their interior has to start over
+            pendFromScratch(tile, alignment, maxIter, out, worklist);
+        }
+        resumable = new Resumable(view, out, kernel, formula, worklist);
+
+        if (tileCache != null) {
+            store(tileCache, view, maxIter, kernel, alignment, work, out);
+        }
+    }
+
+    // carries the pixels of the last complete render on to a higher limit
+    private void resume(int gen, Resumable previous, ViewPort view, int maxIter, IterationBuffer out,
+                        PassListener listener) {
+        Worklist worklist = previous.worklist;
+        int pending = worklist.size();
+        worklist.resume(view, maxIter, out, engine.getPool(), () -> cancelled(gen));
+        // a cancelled resume leaves every entry valid, the next one picks up from there
+        resumable = previous;
+        if (cancelled(gen)) {
+            return;
+        }
+        log.debug("Resumed {} pixels to {} iterations, {} still running", pending, maxIter, worklist.size());
+        shown = view;
+        shownKernel = previous.kernel;
+        listener.passDone(PASSES.length - 1, PASSES.length);
+
+        TileCache tileCache = TileCache.isSnapped(view) ? cache : null;
+        if (tileCache != null) {
+            Alignment alignment = Alignment.of(view, tileCache.getTileSize());
+            List<int[]> tiles = tilesAround(alignment, tileCache.getTileSize(), 0, 0);
+            store(tileCache, view, maxIter, previous.kernel, alignment, tiles, out);
+        }
+    }
+
+    /**
+     * Resamples what {@code out} shows to {@code view}, nearest pixel, so a zoom has something to
+     * show before the first pass is done. Pixels the old view did not cover become
+     * {@link IterationBuffer#MISSING}. Returns false when there is nothing to resample.
+     */
+    private boolean reproject(ViewPort view, EscapeTimeKernel kernel, IterationBuffer out) {
+        ViewPort old = shown;
+        if (old == null || shownOut != out || !out.fits(view.getWidth(), view.getHeight())) {
+            return false;
+        }
+        // views around different origins are apart by the distance between the origins
+        double originX = shownKernel.getOriginX().subtract(kernel.getOriginX()).doubleValue();
+        double originY = shownKernel.getOriginY().subtract(kernel.getOriginY()).doubleValue();
+        if (old.equals(view) && originX == 0 && originY == 0) {
+            return true;
+        }
+        int width = out.getWidth();
+        int height = out.getHeight();
+        if (previewIterations == null || previewIterations.length != width * height) {
+            previewIterations = new int[width * height];
+            previewSmooth = new float[width * height];
+            previewDistance = new float[width * height];
+        }
+        int[] iterations = previewIterations;
+        float[] smooth = previewSmooth;
+        float[] distance = previewDistance;
+        System.arraycopy(out.getIterations(), 0, iterations, 0, iterations.length);
+        System.arraycopy(out.getSmooth(), 0, smooth, 0, smooth.length);
+        System.arraycopy(out.getDistance(), 0, distance, 0, distance.length);
+
+        double oldScale = old.getScale();
+        double left = old.x(0) + originX;
+        double bottom = old.y(0) + originY;
+        IntStream.range(0, height).parallel().forEach(y -> {
+            int row = out.index(0, y);
+            int sy = (int) Math.floor((view.y(y) - bottom) / oldScale + 0.5);
+            for (int x = 0; x < width; x++) {
+                int sx = (int) Math.floor((view.x(x) - left) / oldScale + 0.5);
+                if (sx < 0 || sy < 0 || sx >= width || sy >= height) {
+                    out.getIterations()[row + x] = 0;
+                    out.getSmooth()[row + x] = IterationBuffer.MISSING;
+                    out.getDistance()[row + x] = IterationBuffer.NO_DISTANCE;
+                } else {
+                    out.getIterations()[row + x] = iterations[out.index(sx, sy)];
+                    out.getSmooth()[row + x] = smooth[out.index(sx, sy)];
+                    out.getDistance()[row + x] = distance[out.index(sx, sy)];
+                }
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Pans the last complete frame by whole pixels: pixel {@code (x, y)} of the new view is pixel
+     * {@code (x + dx, y + dy)} of the old one. The overlap is moved in place and only the exposed
+     * rows and columns are iterated, at full resolution straight away.
+     */
+    private void shift(int gen, Resumable previous, ViewPort view, int maxIter, IterationBuffer out, int dx, int dy,
+                       PassListener listener) {
+        int width = out.getWidth();
+        int height = out.getHeight();
+        int[] iterations = out.getIterations();
+        float[] smooth = out.getSmooth();
+        float[] distance = out.getDistance();
+        int length = width - Math.abs(dx);
+        int from = Math.max(0, dx);
+        int to = Math.max(0, -dx);
+        // walk rows away from the side that is overwritten first
+        for (int k = 0; k < height - Math.abs(dy); k++) {
+            int y = dy >= 0 ? k : height - 1 - k;
+            System.arraycopy(iterations, out.index(from, y + dy), iterations, out.index(to, y), length);
+            System.arraycopy(smooth, out.index(from, y + dy), smooth, out.index(to, y), length);
+            System.arraycopy(distance, out.index(from, y + dy), distance, out.index(to, y), length);
+        }
+
+        Worklist worklist = new Worklist();
+        worklist.reset(maxIter);
+        previous.worklist.moveTo(worklist, pixel -> {
+            int x = pixel % width - dx;
+            int y = pixel / width - dy;
+            return x >= 0 && y >= 0 && x < width && y < height ? out.index(x, y) : -1;
+        });
+
+        // exposed columns over the full height, exposed rows only between them
+        int[][] strips = {
+                dx > 0 ? new int[]{width - dx, 0, width, height} : new int[]{0, 0, -dx, height},
+                dy > 0 ? new int[]{to, height - dy, to + length, height} : new int[]{to, 0, to + length, -dy},
+        };
+        EscapeTimeKernel kernel = previous.kernel;
+        int tileSize = engine.getTileSize();
+        out.setPending(worklist);
+        try {
+            ForkJoinTask.invokeAll(
+                    new TileTask(kernel, view, maxIter, out, tileSize, strips[0][0], strips[0][1], strips[0][2], strips[0][3]),
+                    new TileTask(kernel, view, maxIter, out, tileSize, strips[1][0], strips[1][1], strips[1][2], strips[1][3]));
+        } finally {
+            out.setPending(null);
+        }
+        resumable = new Resumable(view, out, kernel, previous.formula, worklist);
+        shown = view;
+        shownKernel = kernel;
+        if (cancelled(gen)) {
+            return;
+        }
+        listener.passDone(PASSES.length - 1, PASSES.length);
+
+        TileCache tileCache = TileCache.isSnapped(view) ? cache : null;
+        if (tileCache != null) {
+            // only tiles that got new pixels, the rest are cached already or were cut before
+            Alignment alignment = Alignment.of(view, tileCache.getTileSize());
+            List<int[]> touched = new ArrayList<>();
+            for (int[] tile : tilesAround(alignment, tileCache.getTileSize(), 0, 0)) {
+                for (int[] strip : strips) {
+                    if (strip[0] < strip[2] && strip[1] < strip[3]
+                            && tile[0] - alignment.x < strip[2] && strip[0] < tile[2] - alignment.x
+                            && tile[1] - alignment.y < strip[3] && strip[1] < tile[3] - alignment.y) {
+                        touched.add(tile);
+                        break;
+                    }
+                }
+            }
+            store(tileCache, view, maxIter, kernel, alignment, touched, out);
+        }
+    }
+
+    // tiles cut by the frame edge are not complete, only whole ones are kept
+    private void store(TileCache tileCache, ViewPort view, int maxIter, EscapeTimeKernel kernel, Alignment alignment,
+                       List<int[]> tiles, IterationBuffer out) {
+        int tileSize = tileCache.getTileSize();
+        String precision = precision(kernel);
+        for (int[] tile : tiles) {
+            if (alignment.contains(tile) && tile[2] - tile[0] == tileSize && tile[3] - tile[1] == tileSize) {
+                IterationBuffer counts = new IterationBuffer(tileSize, tileSize);
+                copy(counts, tileSize, tile, alignment, out, false);
+                tileCache.put(key(view, maxIter, precision, alignment, tileSize, tile), counts);
+            }
+        }
+        log.debug("{}", tileCache);
+    }
+
+    // tile coordinates are offsets from the kernel's origin, so tiles around another origin never match
+    private static String precision(EscapeTimeKernel kernel) {
+        String name = kernel.getClass().getSimpleName();
+        BigDecimal originX = kernel.getOriginX();
+        BigDecimal originY = kernel.getOriginY();
+        return originX.signum() == 0 && originY.signum() == 0 ? name : name + " at " + originX + ", " + originY;
+    }
+
+    private TileCache.Key key(ViewPort view, int maxIter, String precision, Alignment alignment, int tileSize,
+                              int[] tile) {
+        return new TileCache.Key(formula, maxIter, precision, TileCache.level(view.getScale()),
+                Math.floorDiv(alignment.originX - alignment.x + tile[0], tileSize),
+                Math.floorDiv(alignment.originY - alignment.y + tile[1], tileSize));
+    }
+
+    private static void pendFromScratch(int[] tile, Alignment alignment, int maxIter, IterationBuffer out,
+                                        Worklist worklist) {
+        int[] iterations = out.getIterations();
+        int x0 = Math.max(0, tile[0] - alignment.x);
+        int x1 = Math.min(out.getWidth(), tile[2] - alignment.x);
+        int y0 = Math.max(0, tile[1] - alignment.y);
+        int y1 = Math.min(out.getHeight(), tile[3] - alignment.y);
+        for (int y = y0; y < y1; y++) {
+            for (int x = x0; x < x1; x++) {
+                if (iterations[out.index(x, y)] >= maxIter) {
+                    worklist.add(out.index(x, y), 0, 0, 0, 0, 0);
+                }
+            }
+        }
+    }
+
+    // moves a tile between its cache buffer and the visible part of the frame
+    private static void copy(IterationBuffer cached, int tileSize, int[] tile, Alignment alignment, IterationBuffer out,
+                             boolean toFrame) {
+        int x0 = Math.max(0, tile[0] - alignment.x);
+        int x1 = Math.min(out.getWidth(), tile[2] - alignment.x);
+        int y0 = Math.max(0, tile[1] - alignment.y);
+        int y1 = Math.min(out.getHeight(), tile[3] - alignment.y);
+        for (int y = y0; y < y1; y++) {
+            int src = (y + alignment.y - tile[1]) * tileSize + (x0 + alignment.x - tile[0]);
+            int dst = out.index(x0, y);
+            if (toFrame) {
+                System.arraycopy(cached.getIterations(), src, out.getIterations(), dst, x1 - x0);
+                System.arraycopy(cached.getSmooth(), src, out.getSmooth(), dst, x1 - x0);
+                System.arraycopy(cached.getDistance(), src, out.getDistance(), dst, x1 - x0);
+            } else {
+                System.arraycopy(out.getIterations(), dst, cached.getIterations(), src, x1 - x0);
+                System.arraycopy(out.getSmooth(), dst, cached.getSmooth(), src, x1 - x0);
+                System.arraycopy(out.getDistance(), dst, cached.getDistance(), src, x1 - x0);
+            }
+        }
+    }
+
+    private IterationBuffer[][] scratch(int width, int height) {
+        if (scratch == null || scratchWidth != width || scratchHeight != height) {
+            scratchWidth = width;
+            scratchHeight = height;
+            scratch = new IterationBuffer[PASSES.length][];
+            for (int p = 0; p < PASSES.length; p++) {
+                scratch[p] = new IterationBuffer[PASSES[p].length];
+                for (int g = 0; g < PASSES[p].length; g++) {
+                    Grid grid = PASSES[p][g];
+                    scratch[p][g] = new IterationBuffer(Grid.size(width, grid.stride, grid.offsetX),
+                            Grid.size(height, grid.stride, grid.offsetY));
+                    scratch[p][g].setPending(new Worklist());
+                }
+            }
+        }
+        return scratch;
+    }
+
+    // tile bounds are in aligned coordinates, see Alignment
+    private static List<int[]> tilesAround(Alignment alignment, int tileSize, int focusX, int focusY) {
+        List<int[]> tiles = new ArrayList<>();
+        for (int y = 0; y < alignment.height; y += tileSize) {
+            for (int x = 0; x < alignment.width; x += tileSize) {
+                tiles.add(new int[]{x, y, Math.min(alignment.width, x + tileSize), Math.min(alignment.height, y + tileSize)});
+            }
+        }
+        long fx = focusX + alignment.x;
+        long fy = focusY + alignment.y;
+        tiles.sort(Comparator.comparingLong(t -> {
+            long dx = (t[0] + t[2]) / 2 - fx;
+            long dy = (t[1] + t[3]) / 2 - fy;
+            return dx * dx + dy * dy;
+        }));
+        return tiles;
+    }
+
+    /**
+     * Frame pixel {@code (px, py)} sits at {@code (px + x, py + y)} in aligned coordinates, whose
+     * origin is a tile corner at or before the frame corner. {@code width} and {@code height}
+     * cover the frame in aligned coordinates.
+     */
+    private static final class Alignment {
+        final int x;
+        final int y;
+        final int width;
+        final int height;
+        // frame corner in pixels from the origin of the complex plane
+        final long originX;
+        final long originY;
+
+        Alignment(int x, int y, int frameWidth, int frameHeight) {
+            this(x, y, frameWidth, frameHeight, 0, 0);
+        }
+
+        private Alignment(int x, int y, int frameWidth, int frameHeight, long originX, long originY) {
+            this.x = x;
+            this.y = y;
+            this.width = frameWidth + x;
+            this.height = frameHeight + y;
+            this.originX = originX;
+            this.originY = originY;
+        }
+
+        // tile corners on multiples of tileSize pixels from the origin of the complex plane
+        static Alignment of(ViewPort view, int tileSize) {
+            long originX = Math.round(view.x(0) / view.getScale());
+            long originY = Math.round(view.y(0) / view.getScale());
+            return new Alignment((int) Math.floorMod(originX, (long) tileSize), (int) Math.floorMod(originY, (long) tileSize),
+                    view.getWidth(), view.getHeight(), originX, originY);
+        }
+
+        boolean contains(int[] tile) {
+            return tile[0] >= x && tile[1] >= y && tile[2] <= width && tile[3] <= height;
+        }
+    }
+
+    /**
+     * The pixels {@code (i * stride + offsetX, j * stride + offsetY)}, each painted as a
+     * {@code block x block} square until a later pass refines it.
+     */
+    private static final class Grid {
+        final int stride;
+        final int offsetX;
+        final int offsetY;
+        final int block;
+
+        Grid(int stride, int offsetX, int offsetY, int block) {
+            this.stride = stride;
+            this.offsetX = offsetX;
+            this.offsetY = offsetY;
+            this.block = block;
+        }
+
+        // samples of this grid on a line of the given length
+        static int size(int length, int stride, int offset) {
+            return Math.max(1, (length - offset + stride - 1) / stride);
+        }
+
+        // a view whose pixel (i, j) lands exactly on aligned pixel (i * stride + offsetX, j * stride + offsetY)
+        ViewPort view(ViewPort full, Alignment alignment, IterationBuffer buffer) {
+            int w = buffer.getWidth();
+            int h = buffer.getHeight();
+            return new ViewPort(full.x(w / 2 * stride + offsetX - alignment.x),
+                    full.y(h / 2 * stride + offsetY - alignment.y), full.getScale() * stride, w, h);
+        }
+
+        /**
+         * Iterates the samples of this grid within {@code tile} and paints them into {@code out}.
+         * Over a preview only the sample pixel itself and pixels still missing are painted.
+         */
+        void compute(EscapeTimeKernel kernel, ViewPort sub, int maxIter, IterationBuffer samples,
+                     IterationBuffer out, Alignment alignment, int[] tile, boolean overPreview) {
+            int i0 = first(tile[0], offsetX);
+            int j0 = first(tile[1], offsetY);
+            int i1 = Math.min(first(tile[2], offsetX), samples.getWidth());
+            int j1 = Math.min(first(tile[3], offsetY), samples.getHeight());
+            if (i0 >= i1 || j0 >= j1) {
+                return;
+            }
+            kernel.compute(sub, maxIter, samples, i0, j0, i1, j1);
+
+            int[] src = samples.getIterations();
+            float[] srcSmooth = samples.getSmooth();
+            int[] dst = out.getIterations();
+            float[] dstSmooth = out.getSmooth();
+            float[] srcDistance = samples.getDistance();
+            float[] dstDistance = out.getDistance();
+            boolean distances = kernel.estimatesDistance();
+            int width = out.getWidth();
+            int height = out.getHeight();
+            for (int j = j0; j < j1; j++) {
+                int sy = j * stride + offsetY - alignment.y;
+                int yEnd = Math.min(height, sy + block);
+                int y = Math.max(0, sy);
+                for (int i = i0; i < i1; i++) {
+                    int sx = i * stride + offsetX - alignment.x;
+                    int xEnd = Math.min(width, sx + block);
+                    int x = Math.max(0, sx);
+                    int sample = samples.index(i, j);
+                    int n = src[sample];
+                    float nu = srcSmooth[sample];
+                    float d = distances ? srcDistance[sample] : IterationBuffer.NO_DISTANCE;
+                    for (int yy = y; yy < yEnd; yy++) {
+                        int row = out.index(0, yy);
+                        for (int xx = x; xx < xEnd; xx++) {
+                            if (overPreview && (yy != sy || xx != sx) && dstSmooth[row + xx] != IterationBuffer.MISSING) {
+                                continue;
+                            }
+                            dst[row + xx] = n;
+                            dstSmooth[row + xx] = nu;
+                            dstDistance[row + xx] = d;
+                        }
+                    }
+                }
+            }
+        }
+
+        // hands the orbits this grid left unfinished over as frame pixels, samples off the frame are dropped
+        void collect(IterationBuffer samples, Alignment alignment, IterationBuffer out, Worklist target) {
+            int samplesWidth = samples.getWidth();
+            samples.getPending().moveTo(target, sample -> {
+                int x = sample % samplesWidth * stride + offsetX - alignment.x;
+                int y = sample / samplesWidth * stride + offsetY - alignment.y;
+                return x >= 0 && y >= 0 && x < out.getWidth() && y < out.getHeight() ? out.index(x, y) : -1;
+            });
+        }
+
+        // first sample index at or after full resolution coordinate p
+        private int first(int p, int offset) {
+            return Math.max(0, (p - offset + stride - 1) / stride);
+        }
+    }
+
+    /**
+     * The last pass over one tile at a time as a Mariani-Silver subdivision. Pixels with both aligned
+     * coordinates even come from the earlier passes; the rest are iterated through the last pass's
+     * grids or filled as interior, so no sample is computed twice here either.
+     */
+    private static final class Subdivision implements MarianiSilverTask.Pixels {
+        private final EscapeTimeKernel kernel;
+        private final Grid[] grids;
+        private final ViewPort[] views;
+        private final int maxIter;
+        private final IterationBuffer[] samples;
+        private final IterationBuffer out;
+        private final Alignment alignment;
+        private final boolean overPreview;
+        private final Worklist filled;
+
+        Subdivision(EscapeTimeKernel kernel, Grid[] grids, ViewPort[] views, int maxIter, IterationBuffer[] samples,
+                    IterationBuffer out, Alignment alignment, boolean overPreview, Worklist filled) {
+            this.kernel = kernel;
+            this.grids = grids;
+            this.views = views;
+            this.maxIter = maxIter;
+            this.samples = samples;
+            this.out = out;
+            this.alignment = alignment;
+            this.overPreview = overPreview;
+            this.filled = filled;
+        }
+
+        // the part of the tile on the frame, subdivided on the calling worker and whoever steals from it
+        void run(int[] tile) {
+            int x0 = Math.max(0, tile[0] - alignment.x);
+            int x1 = Math.min(out.getWidth(), tile[2] - alignment.x);
+            int y0 = Math.max(0, tile[1] - alignment.y);
+            int y1 = Math.min(out.getHeight(), tile[3] - alignment.y);
+            if (x0 < x1 && y0 < y1) {
+                MarianiSilverTask.root(this, maxIter, out, x0, y0, x1 - 1, y1 - 1).invoke();
+            }
+        }
+
+        @Override
+        public void compute(int x0, int y0, int x1, int y1) {
+            int[] rect = {x0 + alignment.x, y0 + alignment.y, x1 + alignment.x, y1 + alignment.y};
+            for (int g = 0; g < grids.length; g++) {
+                grids[g].compute(kernel, views[g], maxIter, samples[g], out, alignment, rect, overPreview);
+            }
+        }
+
+        @Override
+        public void fill(int x0, int y0, int x1, int y1) {
+            int[] iterations = out.getIterations();
+            float[] smooth = out.getSmooth();
+            float[] distance = out.getDistance();
+            float d = kernel.estimatesDistance() ? 0 : IterationBuffer.NO_DISTANCE;
+            for (int y = y0; y < y1; y++) {
+                int row = out.index(0, y);
+                boolean evenRow = ((y + alignment.y) & 1) == 0;
+                for (int x = x0; x < x1; x++) {
+                    if (evenRow && ((x + alignment.x) & 1) == 0) {
+                        continue;
+                    }
+                    iterations[row + x] = maxIter;
+                    smooth[row + x] = IterationBuffer.INTERIOR;
+                    distance[row + x] = d;
+                    // never iterated, a higher limit has to start them from scratch
+                    filled.add(row + x, 0, 0, 0, 0, 0);
+                }
+            }
+        }
+    }
+
+    /**
+     * A finished frame and the pixels it left running, reused when the same view is rendered
+     * with a higher limit or panned by whole pixels.
+     */
+    private static final class Resumable {
+        // pixel offsets further than this from a whole pixel are not pans
+        static final double MAX_SUBPIXEL = 1e-6;
+
+        final ViewPort view;
+        final IterationBuffer out;
+        final EscapeTimeKernel kernel;
+        final String formula;
+        final Worklist worklist;
+
+        Resumable(ViewPort view, IterationBuffer out, EscapeTimeKernel kernel, String formula, Worklist worklist) {
+            this.view = view;
+            this.out = out;
+            this.kernel = kernel;
+            this.formula = formula;
+            this.worklist = worklist;
+        }
+
+        boolean matches(ViewPort view, IterationBuffer out, EscapeTimeKernel kernel, String formula) {
+            return this.out == out && this.kernel == kernel && this.view.equals(view) && this.formula.equals(formula);
+        }
+
+        /**
+         * How many whole pixels {@code view} is panned from this frame, or {@code null} when it
+         * shows something else or too little of this frame is left to be worth shifting.
+         */
+        int[] offset(ViewPort view, IterationBuffer out, EscapeTimeKernel kernel, String formula) {
+            if (this.out != out || this.kernel != kernel || !this.formula.equals(formula)
+                    || view.getScale() != this.view.getScale() || !out.fits(view.getWidth(), view.getHeight())) {
+                return null;
+            }
+            double dx = (view.getCentreX() - this.view.getCentreX()) / view.getScale();
+            double dy = (view.getCentreY() - this.view.getCentreY()) / view.getScale();
+            long x = Math.round(dx);
+            long y = Math.round(dy);
+            if (Math.abs(dx - x) > MAX_SUBPIXEL || Math.abs(dy - y) > MAX_SUBPIXEL) {
+                return null;
+            }
+            int width = view.getWidth();
+            int height = view.getHeight();
+            long kept = Math.max(0, width - Math.abs(x)) * Math.max(0, height - Math.abs(y));
+            if (kept < (long) width * height / 2) {
+                return null;
+            }
+            return new int[]{(int) x, (int) y};
+        }
+    }
+}
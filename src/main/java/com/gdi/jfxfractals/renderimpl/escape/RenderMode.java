@@ -0,0 +1,17 @@
+package com.gdi.jfxfractals.renderimpl.escape;
+
+/**
+ * How the engine walks the pixels of a frame.
+ */
+public enum RenderMode {
+    /**
+     * Every pixel is iterated, tile by tile.
+     */
+    TILED,
+    /**
+     * Rectangles whose border lies entirely inside the set are filled without iterating, see
+     * {@link MarianiSilverTask}. Escaped regions are always iterated. Progressive renders use it
+     * on their last, full resolution pass.
+     */
+    MARIANI_SILVER
+}
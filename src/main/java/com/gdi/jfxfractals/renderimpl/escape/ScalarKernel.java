@@ -0,0 +1,64 @@
+package com.gdi.jfxfractals.renderimpl.escape;
+
+/**
+ * Plain double precision z = z^2 + c, one pixel at a time. Points in the main cardioid or the
+ * period-2 bulb are skipped, orbits that settle into a cycle stop early.
+ */
+public class ScalarKernel implements EscapeTimeKernel {
+
+    // |z|^2 limit; far beyond 2 so the smooth count is accurate, which costs a few iterations per pixel
+    public static final double BAILOUT = 65536.0;
+
+    @Override
+    public boolean recordsPending() {
+        return true;
+    }
+
+    @Override
+    public void compute(ViewPort view, int maxIter, IterationBuffer out, int x0, int y0, int x1, int y1) {
+        int[] iterations = out.getIterations();
+        float[] smooth = out.getSmooth();
+        Worklist pending = out.getPending();
+        double eps = Interior.periodicityEpsilon(view.getScale(), 1e-15);
+        for (int py = y0; py < y1; py++) {
+            double cy = view.y(py);
+            int row = out.index(0, py);
+            for (int px = x0; px < x1; px++) {
+                double cx = view.x(px);
+                if (Interior.inCardioidOrBulb(cx, cy)) {
+                    iterations[row + px] = maxIter;
+                    smooth[row + px] = IterationBuffer.INTERIOR;
+                    continue;
+                }
+                double x = 0, y = 0, xx = 0, yy = 0;
+                // Brent: compare against a point saved at every power of two
+                double hx = 0, hy = 0;
+                int checkpoint = 1;
+                int n = 0;
+                boolean settled = false;
+                while (n < maxIter && xx + yy <= BAILOUT) {
+                    y = 2 * x * y + cy;
+                    x = xx - yy + cx;
+                    xx = x * x;
+                    yy = y * y;
+                    n++;
+                    if (Math.abs(x - hx) < eps && Math.abs(y - hy) < eps) {
+                        n = maxIter;
+                        settled = true;
+                        break;
+                    }
+                    if (n == checkpoint) {
+                        hx = x;
+                        hy = y;
+                        checkpoint <<= 1;
+                    }
+                }
+                iterations[row + px] = n;
+                smooth[row + px] = n >= maxIter ? IterationBuffer.INTERIOR : IterationBuffer.smooth(n, xx + yy);
+                if (n >= maxIter && !settled && pending != null) {
+                    pending.add(row + px, n, x, y, hx, hy);
+                }
+            }
+        }
+    }
+}
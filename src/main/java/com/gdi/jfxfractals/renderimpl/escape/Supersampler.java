@@ -0,0 +1,214 @@
+package com.gdi.jfxfractals.renderimpl.escape;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.BooleanSupplier;
+import java.util.stream.IntStream;
+
+/**
+ * Anti-aliasing for finished frames: pixels whose smooth count jumps against a neighbour get
+ * {@link Supersamples#SAMPLES} more points iterated inside them, one in each quarter of the
+ * pixel at a random spot. Smooth regions keep their single sample, so the cost follows the
+ * amount of detail rather than the frame size. With a distance estimating kernel, pixels the
+ * estimate puts well clear of the set are skipped as well. Not thread safe, one frame at a time.
+ */
+public class Supersampler {
+
+    // smooth count difference to a neighbour that marks a pixel as an edge
+    public static final float DEFAULT_THRESHOLD = 1f;
+
+    private static final int ROWS_PER_TASK = 8;
+
+    // pixels at least this many pixel sizes from the set are smooth whatever their counts
+    private static final double FAR = 4;
+
+    private volatile float threshold = DEFAULT_THRESHOLD;
+
+    // sample results, written row by row so tasks never share a row
+    private IterationBuffer scratch;
+
+    /**
+     * Samples the edges of {@code in}, a complete render of {@code view} with {@code kernel}.
+     * Returns {@code null} when {@code cancelled} turns true before all rows are done.
+     */
+    public Supersamples sample(ViewPort view, int maxIter, IterationBuffer in, EscapeTimeKernel kernel,
+                               ForkJoinPool pool, BooleanSupplier cancelled) {
+        int width = view.getWidth();
+        int height = view.getHeight();
+        if (scratch == null || !scratch.fits(width, height)) {
+            scratch = new IterationBuffer(width, height);
+        }
+        IterationBuffer sampled = scratch;
+        float limit = threshold;
+        boolean distances = kernel.estimatesDistance();
+        double far = distances ? FAR * view.getScale() : Double.POSITIVE_INFINITY;
+        int tasks = (height + ROWS_PER_TASK - 1) / ROWS_PER_TASK;
+        Supersamples[] parts = new Supersamples[tasks];
+
+        pool.invoke(ForkJoinTask.adapt(() -> IntStream.range(0, tasks).parallel().forEach(task -> {
+            Supersamples part = new Supersamples();
+            int[] edges = new int[width];
+            int end = Math.min(height, (task + 1) * ROWS_PER_TASK);
+            for (int y = task * ROWS_PER_TASK; y < end && !cancelled.getAsBoolean(); y++) {
+                int count = edges(in, y, limit, far, edges);
+                if (count > 0) {
+                    sampleRow(view, maxIter, in, kernel, sampled, y, edges, count, part, distances);
+                }
+            }
+            parts[task] = part;
+        })));
+        return cancelled.getAsBoolean() ? null : Supersamples.concat(parts);
+    }
+
+    // columns of row y with a neighbour across the interior boundary or too far off in smooth count
+    private static int edges(IterationBuffer in, int y, float limit, double far, int[] edges) {
+        float[] smooth = in.getSmooth();
+        float[] distance = in.getDistance();
+        int width = in.getWidth();
+        int height = in.getHeight();
+        int row = in.index(0, y);
+        int count = 0;
+        for (int x = 0; x < width; x++) {
+            float nu = smooth[row + x];
+            if (distance[row + x] > far) {
+                continue;
+            }
+            if ((x > 0 && differs(nu, smooth[row + x - 1], limit))
+                    || (x < width - 1 && differs(nu, smooth[row + x + 1], limit))
+                    || (y > 0 && differs(nu, smooth[row + x - width], limit))
+                    || (y < height - 1 && differs(nu, smooth[row + x + width], limit))) {
+                edges[count++] = x;
+            }
+        }
+        return count;
+    }
+
+    private static boolean differs(float a, float b, float limit) {
+        if (a < 0 || b < 0) {
+            return (a < 0) != (b < 0);
+        }
+        return Math.abs(a - b) > limit;
+    }
+
+    private static void sampleRow(ViewPort view, int maxIter, IterationBuffer in, EscapeTimeKernel kernel,
+                                  IterationBuffer sampled, int y, int[] edges, int count, Supersamples part,
+                                  boolean distances) {
+        float[] values = sampled.getSmooth();
+        float[] distance = sampled.getDistance();
+        int row = in.index(0, y);
+        int first = part.size();
+        for (int e = 0; e < count; e++) {
+            part.add(row + edges[e]);
+        }
+        // seeded by row so the same frame always gets the same samples
+        SplittableRandom random = new SplittableRandom(y);
+        for (int s = 0; s < Supersamples.SAMPLES; s++) {
+            double jx = ((s & 1) + random.nextDouble()) / 2 - 0.5;
+            double jy = ((s >> 1) + random.nextDouble()) / 2 - 0.5;
+            // the kernel adds the jitter in its own precision, a double centre would round it away when deep
+            ViewPort shifted = view.shifted(jx, jy);
+            // neighbouring edge pixels go to the kernel together
+            int e = 0;
+            while (e < count) {
+                int x0 = edges[e];
+                int x1 = x0 + 1;
+                while (++e < count && edges[e] == x1) {
+                    x1++;
+                }
+                kernel.compute(shifted, maxIter, sampled, x0, y, x1, y + 1);
+            }
+            for (e = 0; e < count; e++) {
+                int pixel = row + edges[e];
+                part.set(first + e, s, values[pixel], distances ? distance[pixel] : IterationBuffer.NO_DISTANCE);
+            }
+        }
+    }
+
+    public float getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * Smooth count difference to a neighbour above which a pixel is supersampled; lower values
+     * catch fainter edges at the cost of more samples.
+     */
+    public void setThreshold(float threshold) {
+        this.threshold = threshold;
+    }
+
+    /**
+     * Extra samples of the edge pixels of one frame, ordered by pixel index.
+     */
+    public static final class Supersamples {
+
+        public static final int SAMPLES = 4;
+
+        private int size;
+        private int[] pixels;
+        private float[] smooth;
+        private float[] distance;
+
+        Supersamples() {
+            this(64);
+        }
+
+        private Supersamples(int capacity) {
+            pixels = new int[capacity];
+            smooth = new float[capacity * SAMPLES];
+            distance = new float[capacity * SAMPLES];
+        }
+
+        static Supersamples concat(Supersamples[] parts) {
+            int total = 0;
+            for (Supersamples part : parts) {
+                total += part.size;
+            }
+            Supersamples all = new Supersamples(total);
+            for (Supersamples part : parts) {
+                System.arraycopy(part.pixels, 0, all.pixels, all.size, part.size);
+                System.arraycopy(part.smooth, 0, all.smooth, all.size * SAMPLES, part.size * SAMPLES);
+                System.arraycopy(part.distance, 0, all.distance, all.size * SAMPLES, part.size * SAMPLES);
+                all.size += part.size;
+            }
+            return all;
+        }
+
+        void add(int pixel) {
+            if (size == pixels.length) {
+                pixels = Arrays.copyOf(pixels, size * 2);
+                smooth = Arrays.copyOf(smooth, size * 2 * SAMPLES);
+                distance = Arrays.copyOf(distance, size * 2 * SAMPLES);
+            }
+            pixels[size++] = pixel;
+        }
+
+        void set(int entry, int sample, float nu, float d) {
+            smooth[entry * SAMPLES + sample] = nu;
+            distance[entry * SAMPLES + sample] = d;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public int pixel(int entry) {
+            return pixels[entry];
+        }
+
+        /**
+         * Smooth count of one sample, {@link IterationBuffer#INTERIOR} for samples that did not escape.
+         */
+        public float smooth(int entry, int sample) {
+            return smooth[entry * SAMPLES + sample];
+        }
+
+        /**
+         * Distance estimate of one sample, {@link IterationBuffer#NO_DISTANCE} without one.
+         */
+        public float distance(int entry, int sample) {
+            return distance[entry * SAMPLES + sample];
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.gdi.jfxfractals.renderimpl.escape;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Iteration results of square tiles on a grid fixed in the complex plane, evicted least recently
+ * used first once the byte budget is exceeded. Views only share tiles when they are built with
+ * {@link #snap}: the scale is rounded to one of a fixed ladder of zoom levels and the centre to a
+ * whole pixel, so tile {@code (tx, ty)} of a level always covers the same points.
+ */
+public class TileCache {
+
+    public static final int DEFAULT_TILE_SIZE = 64;
+    public static final long DEFAULT_BUDGET = 64L * 1024 * 1024;
+
+    // 16 zoom levels per halving of the scale, finer than one scroll step
+    private static final double LEVELS_PER_OCTAVE = 16;
+    private static final double MAX_PIXEL = 1L << 52;
+
+    private final int tileSize;
+    private final long budgetBytes;
+    private final LinkedHashMap<Key, IterationBuffer> tiles = new LinkedHashMap<>(256, 0.75f, true);
+    private long bytes;
+    private long hits;
+    private long misses;
+
+    public TileCache() {
+        this(DEFAULT_TILE_SIZE, DEFAULT_BUDGET);
+    }
+
+    public TileCache(int tileSize, long budgetBytes) {
+        if (tileSize <= 0) {
+            throw new IllegalArgumentException("tileSize");
+        }
+        this.tileSize = tileSize;
+        this.budgetBytes = budgetBytes;
+    }
+
+    public static int level(double scale) {
+        return (int) Math.round(-Math.log(scale) / Math.log(2) * LEVELS_PER_OCTAVE);
+    }
+
+    public static double scale(int level) {
+        return Math.pow(2, -level / LEVELS_PER_OCTAVE);
+    }
+
+    /**
+     * The view nearest to the given camera whose pixels lie on the cache grid.
+     */
+    public static ViewPort snap(double centreX, double centreY, double scale, int width, int height) {
+        double snapped = scale(level(scale));
+        return new ViewPort(Math.rint(centreX / snapped) * snapped, Math.rint(centreY / snapped) * snapped,
+                snapped, width, height);
+    }
+
+    public static boolean isSnapped(ViewPort view) {
+        double scale = view.getScale();
+        // deeper than this the pixel position of the centre is no longer a whole number in a double
+        if (Math.abs(view.getCentreX() / scale) >= MAX_PIXEL || Math.abs(view.getCentreY() / scale) >= MAX_PIXEL) {
+            return false;
+        }
+        return scale == scale(level(scale))
+                && view.getCentreX() == Math.rint(view.getCentreX() / scale) * scale
+                && view.getCentreY() == Math.rint(view.getCentreY() / scale) * scale;
+    }
+
+    public synchronized IterationBuffer get(Key key) {
+        IterationBuffer tile = tiles.get(key);
+        if (tile == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return tile;
+    }
+
+    public synchronized void put(Key key, IterationBuffer tile) {
+        if (!tile.fits(tileSize, tileSize)) {
+            throw new IllegalArgumentException("Expected a " + tileSize + "x" + tileSize + " tile");
+        }
+        IterationBuffer old = tiles.put(key, tile);
+        if (old == null) {
+            bytes += bytes(tile);
+        }
+        Iterator<Map.Entry<Key, IterationBuffer>> eldest = tiles.entrySet().iterator();
+        while (bytes > budgetBytes && eldest.hasNext()) {
+            bytes -= bytes(eldest.next().getValue());
+            eldest.remove();
+        }
+    }
+
+    public synchronized void clear() {
+        tiles.clear();
+        bytes = 0;
+    }
+
+    // counts, smooth values and distances plus the array headers
+    private static long bytes(IterationBuffer tile) {
+        return 96 + 12L * tile.getWidth() * tile.getHeight();
+    }
+
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    public long getBudgetBytes() {
+        return budgetBytes;
+    }
+
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    public synchronized int getTileCount() {
+        return tiles.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized double getHitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : hits / (double) lookups;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("TileCache{%d tiles, %d/%d KiB, hit rate %.1f%% of %d}",
+                tiles.size(), bytes / 1024, budgetBytes / 1024, getHitRate() * 100, hits + misses);
+    }
+
+    /**
+     * Everything a tile's iteration counts depend on.
+     */
+    public static final class Key {
+        private final String formula;
+        private final int maxIter;
+        private final String precision;
+        private final int level;
+        private final long tileX;
+        private final long tileY;
+
+        public Key(String formula, int maxIter, String precision, int level, long tileX, long tileY) {
+            this.formula = formula;
+            this.maxIter = maxIter;
+            this.precision = precision;
+            this.level = level;
+            this.tileX = tileX;
+            this.tileY = tileY;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return maxIter == key.maxIter && level == key.level && tileX == key.tileX && tileY == key.tileY
+                    && formula.equals(key.formula) && precision.equals(key.precision);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(formula, maxIter, precision, level, tileX, tileY);
+        }
+
+        @Override
+        public String toString() {
+            return formula + "/" + precision + "/" + maxIter + " L" + level + " (" + tileX + ", " + tileY + ")";
+        }
+    }
+}
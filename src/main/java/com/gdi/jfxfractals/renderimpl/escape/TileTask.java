@@ -0,0 +1,57 @@
+package com.gdi.jfxfractals.renderimpl.escape;
+
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Splits a region in halves until it is no larger than one tile, so idle workers can steal
+ * the remaining halves from busy ones.
+ */
+class TileTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private final EscapeTimeKernel kernel;
+    private final ViewPort view;
+    private final int maxIter;
+    private final IterationBuffer out;
+    private final int tileSize;
+    private final int x0, y0, x1, y1;
+
+    TileTask(EscapeTimeKernel kernel, ViewPort view, int maxIter, IterationBuffer out, int tileSize,
+             int x0, int y0, int x1, int y1) {
+        this.kernel = kernel;
+        this.view = view;
+        this.maxIter = maxIter;
+        this.out = out;
+        this.tileSize = tileSize;
+        this.x0 = x0;
+        this.y0 = y0;
+        this.x1 = x1;
+        this.y1 = y1;
+    }
+
+    @Override
+    protected void compute() {
+        int w = x1 - x0;
+        int h = y1 - y0;
+        if (w <= tileSize && h <= tileSize) {
+            kernel.compute(view, maxIter, out, x0, y0, x1, y1);
+            return;
+        }
+        if (w >= h) {
+            int mid = x0 + split(w);
+            invokeAll(new TileTask(kernel, view, maxIter, out, tileSize, x0, y0, mid, y1),
+                    new TileTask(kernel, view, maxIter, out, tileSize, mid, y0, x1, y1));
+        } else {
+            int mid = y0 + split(h);
+            invokeAll(new TileTask(kernel, view, maxIter, out, tileSize, x0, y0, x1, mid),
+                    new TileTask(kernel, view, maxIter, out, tileSize, x0, mid, x1, y1));
+        }
+    }
+
+    // keep split points on tile boundaries so leaves are full tiles wherever possible
+    private int split(int length) {
+        int tiles = (length + tileSize - 1) / tileSize;
+        return (tiles / 2) * tileSize;
+    }
+}
@@ -0,0 +1,124 @@
+package com.gdi.jfxfractals.renderimpl.escape;
+
+import java.util.Objects;
+
+/**
+ * Maps a {@code width x height} pixel grid onto the complex plane.
+ * Row 0 is the bottom row so buffers can be handed to OpenGL without flipping.
+ */
+public final class ViewPort {
+
+    private final double centreX;
+    private final double centreY;
+    private final double scale;
+    private final int width;
+    private final int height;
+    // sub-pixel shift of every sample, in pixels
+    private final double shiftX;
+    private final double shiftY;
+
+    /**
+     * @param centreX real part of the point shown in the middle of the view
+     * @param centreY imaginary part of the point shown in the middle of the view
+     * @param scale   size of one pixel in the complex plane
+     */
+    public ViewPort(double centreX, double centreY, double scale, int width, int height) {
+        this(centreX, centreY, scale, width, height, 0, 0);
+    }
+
+    private ViewPort(double centreX, double centreY, double scale, int width, int height, double shiftX, double shiftY) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Invalid view size " + width + "x" + height);
+        }
+        this.centreX = centreX;
+        this.centreY = centreY;
+        this.scale = scale;
+        this.width = width;
+        this.height = height;
+        this.shiftX = shiftX;
+        this.shiftY = shiftY;
+    }
+
+    /**
+     * The same view sampled {@code dx, dy} pixels away from each pixel's usual point, e.g. for supersampling.
+     * The shift is kept apart from the centre, so kernels working in more than double precision
+     * add it in their own arithmetic instead of losing it to the rounding of a double centre.
+     */
+    public ViewPort shifted(double dx, double dy) {
+        return new ViewPort(centreX, centreY, scale, width, height, shiftX + dx, shiftY + dy);
+    }
+
+    public double x(int px) {
+        return offsetX(px) + centreX;
+    }
+
+    public double y(int py) {
+        return offsetY(py) + centreY;
+    }
+
+    /**
+     * Distance of column {@code px} from the centre, for kernels that add the centre themselves.
+     */
+    public double offsetX(int px) {
+        return (px - width / 2 + shiftX) * scale;
+    }
+
+    /**
+     * Distance of row {@code py} from the centre, for kernels that add the centre themselves.
+     */
+    public double offsetY(int py) {
+        return (py - height / 2 + shiftY) * scale;
+    }
+
+    public double getCentreX() {
+        return centreX;
+    }
+
+    public double getCentreY() {
+        return centreY;
+    }
+
+    public double getScale() {
+        return scale;
+    }
+
+    public double getShiftX() {
+        return shiftX;
+    }
+
+    public double getShiftY() {
+        return shiftY;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ViewPort)) {
+            return false;
+        }
+        ViewPort view = (ViewPort) o;
+        return Double.compare(centreX, view.centreX) == 0 && Double.compare(centreY, view.centreY) == 0
+                && Double.compare(scale, view.scale) == 0 && width == view.width && height == view.height
+                && Double.compare(shiftX, view.shiftX) == 0 && Double.compare(shiftY, view.shiftY) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(centreX, centreY, scale, width, height, shiftX, shiftY);
+    }
+
+    @Override
+    public String toString() {
+        return "ViewPort{" + centreX + ", " + centreY + ", scale=" + scale + ", " + width + "x" + height + "}";
+    }
+}
@@ -0,0 +1,174 @@
+package com.gdi.jfxfractals.renderimpl.escape;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.BooleanSupplier;
+import java.util.function.IntUnaryOperator;
+import java.util.stream.IntStream;
+
+/**
+ * Pixels that used up the iteration limit without escaping or settling into a cycle, with the
+ * orbit state needed to carry on: z, the iteration count and the periodicity checkpoint. Raising
+ * the limit then only costs the new iterations of these pixels instead of a whole render.
+ * Kernels append to the worklist of the buffer they write, see {@link IterationBuffer#setPending}.
+ * Pixels recorded with a count of 0 start from z = 0, for results that were filled in rather
+ * than iterated.
+ */
+public final class Worklist {
+
+    private static final int CHUNK = 64;
+
+    private int limit;
+    private int size;
+    private int[] pixels = new int[64];
+    private int[] counts = new int[64];
+    private double[] zx = new double[64];
+    private double[] zy = new double[64];
+    private double[] hx = new double[64];
+    private double[] hy = new double[64];
+
+    /**
+     * Empties the list for a render up to {@code limit} iterations.
+     */
+    public synchronized void reset(int limit) {
+        this.limit = limit;
+        size = 0;
+    }
+
+    public synchronized void add(int pixel, int n, double x, double y, double checkX, double checkY) {
+        if (size == pixels.length) {
+            int capacity = size * 2;
+            pixels = Arrays.copyOf(pixels, capacity);
+            counts = Arrays.copyOf(counts, capacity);
+            zx = Arrays.copyOf(zx, capacity);
+            zy = Arrays.copyOf(zy, capacity);
+            hx = Arrays.copyOf(hx, capacity);
+            hy = Arrays.copyOf(hy, capacity);
+        }
+        pixels[size] = pixel;
+        counts[size] = n;
+        zx[size] = x;
+        zy[size] = y;
+        hx[size] = checkX;
+        hy[size] = checkY;
+        size++;
+    }
+
+    /**
+     * Appends every entry to {@code target} under the pixel index {@code remap} returns for it,
+     * dropping entries it maps to a negative index, and empties this list.
+     */
+    public synchronized void moveTo(Worklist target, IntUnaryOperator remap) {
+        for (int e = 0; e < size; e++) {
+            int pixel = remap.applyAsInt(pixels[e]);
+            if (pixel >= 0) {
+                target.add(pixel, counts[e], zx[e], zy[e], hx[e], hy[e]);
+            }
+        }
+        size = 0;
+    }
+
+    /**
+     * Continues every pixel up to {@code maxIter} in double precision and writes the results to
+     * {@code out}, the buffer the pixels were recorded for. Pixels that still have not escaped
+     * stay on the list. Stops between chunks once {@code cancelled} returns true; the list stays
+     * valid and can be resumed again, {@code out} is then only partly updated.
+     */
+    public synchronized void resume(ViewPort view, int maxIter, IterationBuffer out, ForkJoinPool pool,
+                                    BooleanSupplier cancelled) {
+        if (maxIter < limit) {
+            throw new IllegalArgumentException("Cannot lower the limit from " + limit + " to " + maxIter);
+        }
+        // pixels already known to be inside only get the new limit as their count
+        int[] iterations = out.getIterations();
+        for (int i = 0; i < iterations.length; i++) {
+            if (iterations[i] >= limit) {
+                iterations[i] = maxIter;
+            }
+        }
+        limit = maxIter;
+        double eps = Interior.periodicityEpsilon(view.getScale(), 1e-15);
+        int chunks = (size + CHUNK - 1) / CHUNK;
+        pool.invoke(ForkJoinTask.adapt(() -> IntStream.range(0, chunks).parallel().forEach(chunk -> {
+            if (cancelled.getAsBoolean()) {
+                return;
+            }
+            int end = Math.min(size, (chunk + 1) * CHUNK);
+            for (int e = chunk * CHUNK; e < end; e++) {
+                continueOrbit(e, view, maxIter, eps, out);
+            }
+        })));
+
+        // drop the pixels that escaped or settled
+        int kept = 0;
+        for (int e = 0; e < size; e++) {
+            if (counts[e] >= 0) {
+                pixels[kept] = pixels[e];
+                counts[kept] = counts[e];
+                zx[kept] = zx[e];
+                zy[kept] = zy[e];
+                hx[kept] = hx[e];
+                hy[kept] = hy[e];
+                kept++;
+            }
+        }
+        size = kept;
+    }
+
+    // the loop of ScalarKernel, picked up where the entry stopped
+    private void continueOrbit(int e, ViewPort view, int maxIter, double eps, IterationBuffer out) {
+        int pixel = pixels[e];
+        double cx = view.x(pixel % out.getWidth());
+        double cy = view.y(pixel / out.getWidth());
+        int n = counts[e];
+        double x = zx[e], y = zy[e];
+        double xx = x * x, yy = y * y;
+        double checkX = hx[e], checkY = hy[e];
+        int checkpoint = n == 0 ? 1 : Integer.highestOneBit(n) << 1;
+        boolean settled = n == 0 && Interior.inCardioidOrBulb(cx, cy);
+
+        while (!settled && n < maxIter && xx + yy <= ScalarKernel.BAILOUT) {
+            y = 2 * x * y + cy;
+            x = xx - yy + cx;
+            xx = x * x;
+            yy = y * y;
+            n++;
+            if (Math.abs(x - checkX) < eps && Math.abs(y - checkY) < eps) {
+                settled = true;
+            } else if (n == checkpoint) {
+                checkX = x;
+                checkY = y;
+                checkpoint <<= 1;
+            }
+        }
+
+        if (settled || n >= maxIter) {
+            out.getIterations()[pixel] = maxIter;
+            out.getSmooth()[pixel] = IterationBuffer.INTERIOR;
+        } else {
+            out.getIterations()[pixel] = n;
+            out.getSmooth()[pixel] = IterationBuffer.smooth(n, xx + yy);
+        }
+        if (settled || n < maxIter) {
+            counts[e] = -1;
+        } else {
+            counts[e] = n;
+            zx[e] = x;
+            zy[e] = y;
+            hx[e] = checkX;
+            hy[e] = checkY;
+        }
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * The highest iteration limit the pixels were rendered or resumed to.
+     */
+    public synchronized int getLimit() {
+        return limit;
+    }
+}
@@ -0,0 +1,183 @@
+package com.gdi.jfxfractals.renderimpl.escape.formula;
+
+import java.util.Locale;
+
+/**
+ * A node of a parsed formula. Every node has a complex value; constants are folded by the parser,
+ * so code generators only ever see them as leaves.
+ */
+public final class Expression {
+
+    public enum Op {
+        CONSTANT, Z, C,
+        NEG, ADD, SUB, MUL, DIV, POW,
+        SIN, COS, SINH, COSH, EXP, LOG, SQRT, ABS, CONJ, RE, IM;
+
+        /**
+         * The function of this name, or {@code null} when there is none.
+         */
+        static Op function(String name) {
+            switch (name) {
+                case "sin":
+                    return SIN;
+                case "cos":
+                    return COS;
+                case "sinh":
+                    return SINH;
+                case "cosh":
+                    return COSH;
+                case "exp":
+                    return EXP;
+                case "log":
+                case "ln":
+                    return LOG;
+                case "sqrt":
+                    return SQRT;
+                case "abs":
+                    return ABS;
+                case "conj":
+                    return CONJ;
+                case "re":
+                    return RE;
+                case "im":
+                    return IM;
+                default:
+                    return null;
+            }
+        }
+
+        public boolean isFunction() {
+            return ordinal() >= SIN.ordinal();
+        }
+
+        public String getName() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    private final Op op;
+    private final Expression left;
+    private final Expression right;
+    private final double re;
+    private final double im;
+
+    private Expression(Op op, Expression left, Expression right, double re, double im) {
+        this.op = op;
+        this.left = left;
+        this.right = right;
+        this.re = re;
+        this.im = im;
+    }
+
+    public static Expression constant(double re, double im) {
+        return new Expression(Op.CONSTANT, null, null, re, im);
+    }
+
+    public static Expression variable(Op op) {
+        return new Expression(op, null, null, 0, 0);
+    }
+
+    public static Expression unary(Op op, Expression arg) {
+        return new Expression(op, arg, null, 0, 0);
+    }
+
+    public static Expression binary(Op op, Expression left, Expression right) {
+        return new Expression(op, left, right, 0, 0);
+    }
+
+    public Op getOp() {
+        return op;
+    }
+
+    /**
+     * The operand of unary nodes and functions, the left operand of binary ones.
+     */
+    public Expression getLeft() {
+        return left;
+    }
+
+    public Expression getRight() {
+        return right;
+    }
+
+    public double getRe() {
+        return re;
+    }
+
+    public double getIm() {
+        return im;
+    }
+
+    public boolean isConstant() {
+        return op == Op.CONSTANT;
+    }
+
+    /**
+     * Whether this is a real whole number that fits an int, as exponents often are.
+     */
+    public boolean isInteger() {
+        return op == Op.CONSTANT && im == 0 && re == Math.rint(re) && Math.abs(re) <= Integer.MAX_VALUE;
+    }
+
+    public boolean dependsOnZ() {
+        return op == Op.Z || (left != null && left.dependsOnZ()) || (right != null && right.dependsOnZ());
+    }
+
+    /**
+     * How fast |z| grows per step far from the origin, the power of the leading term of a
+     * polynomial in z. Drives the smooth iteration count; formulas that are not polynomials get
+     * the quadratic rate.
+     */
+    public double degree() {
+        switch (op) {
+            case Z:
+                return 1;
+            case CONSTANT:
+            case C:
+                return 0;
+            case NEG:
+            case CONJ:
+            case ABS:
+            case RE:
+            case IM:
+                return left.degree();
+            case ADD:
+            case SUB:
+                return Math.max(left.degree(), right.degree());
+            case MUL:
+                return left.degree() + right.degree();
+            case DIV:
+                return Math.max(0, left.degree() - right.degree());
+            case POW:
+                return right.isConstant() && right.getIm() == 0 ? left.degree() * Math.max(0, right.getRe()) : 2;
+            default:
+                return dependsOnZ() ? 2 : 0;
+        }
+    }
+
+    @Override
+    public String toString() {
+        switch (op) {
+            case CONSTANT:
+                return im == 0 ? Double.toString(re) : "(" + re + (im < 0 ? "-" : "+") + Math.abs(im) + "i)";
+            case Z:
+                return "z";
+            case C:
+                return "c";
+            case NEG:
+                return "(-" + left + ")";
+            case ADD:
+                return "(" + left + " + " + right + ")";
+            case SUB:
+                return "(" + left + " - " + right + ")";
+            case MUL:
+                return "(" + left + " * " + right + ")";
+            case DIV:
+                return "(" + left + " / " + right + ")";
+            case POW:
+                return "(" + left + " ^ " + right + ")";
+            default:
+                return op.getName() + "(" + left + ")";
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package com.gdi.jfxfractals.renderimpl.escape.formula;
+
+import com.gdi.jfxfractals.renderimpl.escape.formula.Expression.Op;
+
+/**
+ * Recursive descent parser for iteration formulas such as {@code z^3 + sin(z) + c}. Knows the
+ * variables {@code z} and {@code c}, the constants {@code i} and {@code pi}, the operators
+ * {@code + - * / ^} and the functions of {@link Op}. A number or name right after a factor
+ * multiplies it, so {@code 2z} and {@code 0.5i} work. Arithmetic on constants is folded.
+ */
+public final class FormulaParser {
+
+    private final String source;
+    private int pos;
+
+    private FormulaParser(String source) {
+        this.source = source;
+    }
+
+    /**
+     * @throws IllegalArgumentException naming the position of the first error
+     */
+    public static Expression parse(String source) {
+        FormulaParser parser = new FormulaParser(source);
+        Expression expression = parser.sum();
+        parser.skipSpace();
+        if (parser.pos < source.length()) {
+            throw parser.error("Unexpected '" + source.charAt(parser.pos) + "'");
+        }
+        return expression;
+    }
+
+    // sum := product (('+' | '-') product)*
+    private Expression sum() {
+        Expression left = product();
+        while (true) {
+            if (accept('+')) {
+                left = fold(Op.ADD, left, product());
+            } else if (accept('-')) {
+                left = fold(Op.SUB, left, product());
+            } else {
+                return left;
+            }
+        }
+    }
+
+    // product := unary (('*' | '/')? unary)*
+    private Expression product() {
+        Expression left = unary();
+        while (true) {
+            if (accept('*')) {
+                left = fold(Op.MUL, left, unary());
+            } else if (accept('/')) {
+                left = fold(Op.DIV, left, unary());
+            } else if (startsFactor()) {
+                left = fold(Op.MUL, left, power());
+            } else {
+                return left;
+            }
+        }
+    }
+
+    // unary := '-' unary | '+' unary | power
+    private Expression unary() {
+        if (accept('-')) {
+            return fold(Op.NEG, unary(), null);
+        }
+        if (accept('+')) {
+            return unary();
+        }
+        return power();
+    }
+
+    // power := primary ('^' unary)?, so z^-2 parses and a^b^c groups to the right
+    private Expression power() {
+        Expression base = primary();
+        if (accept('^')) {
+            return fold(Op.POW, base, unary());
+        }
+        return base;
+    }
+
+    private Expression primary() {
+        skipSpace();
+        if (pos >= source.length()) {
+            throw error("Unexpected end of formula");
+        }
+        char ch = source.charAt(pos);
+        if (accept('(')) {
+            Expression inner = sum();
+            expect(')');
+            return inner;
+        }
+        if (Character.isDigit(ch) || ch == '.') {
+            return Expression.constant(number(), 0);
+        }
+        if (Character.isLetter(ch)) {
+            int start = pos;
+            String name = name();
+            switch (name) {
+                case "z":
+                    return Expression.variable(Op.Z);
+                case "c":
+                    return Expression.variable(Op.C);
+                case "i":
+                    return Expression.constant(0, 1);
+                case "pi":
+                    return Expression.constant(Math.PI, 0);
+                default:
+                    Op function = Op.function(name);
+                    if (function == null) {
+                        pos = start;
+                        throw error("Unknown name '" + name + "'");
+                    }
+                    expect('(');
+                    Expression arg = sum();
+                    expect(')');
+                    return Expression.unary(function, arg);
+            }
+        }
+        throw error("Unexpected '" + ch + "'");
+    }
+
+    private double number() {
+        int start = pos;
+        while (pos < source.length() && (Character.isDigit(source.charAt(pos)) || source.charAt(pos) == '.')) {
+            pos++;
+        }
+        // an exponent only when digits follow, 2e would otherwise swallow a name
+        if (pos + 1 < source.length() && (source.charAt(pos) == 'e' || source.charAt(pos) == 'E')) {
+            int mark = pos++;
+            if (source.charAt(pos) == '+' || source.charAt(pos) == '-') {
+                pos++;
+            }
+            if (pos < source.length() && Character.isDigit(source.charAt(pos))) {
+                while (pos < source.length() && Character.isDigit(source.charAt(pos))) {
+                    pos++;
+                }
+            } else {
+                pos = mark;
+            }
+        }
+        try {
+            return Double.parseDouble(source.substring(start, pos));
+        } catch (NumberFormatException e) {
+            pos = start;
+            throw error("Malformed number");
+        }
+    }
+
+    private String name() {
+        int start = pos;
+        while (pos < source.length() && Character.isLetterOrDigit(source.charAt(pos))) {
+            pos++;
+        }
+        return source.substring(start, pos);
+    }
+
+    private boolean startsFactor() {
+        skipSpace();
+        if (pos >= source.length()) {
+            return false;
+        }
+        char ch = source.charAt(pos);
+        return ch == '(' || Character.isLetterOrDigit(ch) || ch == '.';
+    }
+
+    private boolean accept(char ch) {
+        skipSpace();
+        if (pos < source.length() && source.charAt(pos) == ch) {
+            pos++;
+            return true;
+        }
+        return false;
+    }
+
+    private void expect(char ch) {
+        if (!accept(ch)) {
+            throw error("Expected '" + ch + "'");
+        }
+    }
+
+    private void skipSpace() {
+        while (pos < source.length() && Character.isWhitespace(source.charAt(pos))) {
+            pos++;
+        }
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(message + " at " + (pos + 1) + " in '" + source + "'");
+    }
+
+    private static Expression fold(Op op, Expression left, Expression right) {
+        if (!left.isConstant() || (right != null && !right.isConstant())) {
+            return right == null ? Expression.unary(op, left) : Expression.binary(op, left, right);
+        }
+        double a = left.getRe(), b = left.getIm();
+        switch (op) {
+            case NEG:
+                return Expression.constant(-a, -b);
+            case ADD:
+                return Expression.constant(a + right.getRe(), b + right.getIm());
+            case SUB:
+                return Expression.constant(a - right.getRe(), b - right.getIm());
+            case MUL:
+                return Expression.constant(a * right.getRe() - b * right.getIm(), a * right.getIm() + b * right.getRe());
+            case DIV: {
+                double c = right.getRe(), d = right.getIm();
+                double m = c * c + d * d;
+                return Expression.constant((a * c + b * d) / m, (b * c - a * d) / m);
+            }
+            default:
+                // powers of constants stay nodes, the generators already handle them
+                return Expression.binary(op, left, right);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.gdi.jfxfractals.renderimpl.escape.formula;
+
+/**
+ * Writes an {@link Expression} as the {@code formula} function of frag.shader. Arithmetic stays
+ * in doubles; GLSL has no double precision transcendental functions, so those go through floats.
+ */
+final class GlslWriter {
+
+    // helpers the expressions call, complex numbers are dvec2(re, im)
+    private static final String HELPERS = String.join("\n",
+            "dvec2 f_mul(dvec2 a, dvec2 b) { return dvec2(a.x * b.x - a.y * b.y, a.x * b.y + a.y * b.x); }",
+            "dvec2 f_div(dvec2 a, dvec2 b) { return dvec2(a.x * b.x + a.y * b.y, a.y * b.x - a.x * b.y) / dot(b, b); }",
+            "dvec2 f_powi(dvec2 a, int n) {",
+            "    dvec2 r = dvec2(1.0, 0.0);",
+            "    for (int k = 0; k < n; k++) { r = f_mul(r, a); }",
+            "    return r;",
+            "}",
+            "dvec2 f_sin(dvec2 a) { vec2 f = vec2(a); return dvec2(sin(f.x) * cosh(f.y), cos(f.x) * sinh(f.y)); }",
+            "dvec2 f_cos(dvec2 a) { vec2 f = vec2(a); return dvec2(cos(f.x) * cosh(f.y), -sin(f.x) * sinh(f.y)); }",
+            "dvec2 f_sinh(dvec2 a) { vec2 f = vec2(a); return dvec2(sinh(f.x) * cos(f.y), cosh(f.x) * sin(f.y)); }",
+            "dvec2 f_cosh(dvec2 a) { vec2 f = vec2(a); return dvec2(cosh(f.x) * cos(f.y), sinh(f.x) * sin(f.y)); }",
+            "dvec2 f_exp(dvec2 a) { vec2 f = vec2(a); return dvec2(exp(f.x) * vec2(cos(f.y), sin(f.y))); }",
+            "dvec2 f_log(dvec2 a) { vec2 f = vec2(a); return dvec2(0.5 * log(dot(f, f)), atan(f.y, f.x)); }",
+            "dvec2 f_sqrt(dvec2 a) {",
+            "    double r = sqrt(dot(a, a));",
+            "    return dvec2(sqrt((r + a.x) * 0.5), (a.y < 0.0 ? -1.0 : 1.0) * sqrt((r - a.x) * 0.5));",
+            "}",
+            "dvec2 f_abs(dvec2 a) { return dvec2(sqrt(dot(a, a)), 0.0); }",
+            "dvec2 f_conj(dvec2 a) { return dvec2(a.x, -a.y); }",
+            "dvec2 f_re(dvec2 a) { return dvec2(a.x, 0.0); }",
+            "dvec2 f_im(dvec2 a) { return dvec2(a.y, 0.0); }",
+            // 0^w is 0 for Re(w) > 0, as on the CPU; GLSL leaves log(0) undefined
+            "dvec2 f_powr(dvec2 a, double k) {",
+            "    if (a.x == 0.0 && a.y == 0.0 && k > 0.0) { return dvec2(0.0); }",
+            "    return f_exp(k * f_log(a));",
+            "}",
+            "dvec2 f_pow(dvec2 a, dvec2 w) {",
+            "    if (a.x == 0.0 && a.y == 0.0 && w.x > 0.0) { return dvec2(0.0); }",
+            "    return f_exp(f_mul(w, f_log(a)));",
+            "}");
+
+    private GlslWriter() {
+    }
+
+    /**
+     * The declarations replacing the formula block of frag.shader.
+     */
+    static String write(Expression formula) {
+        return HELPERS + "\n"
+                + "const bool mandelbrot = false;\n"
+                + "const float degree = " + literal(UserFormula.escapeRate(formula)) + ";\n"
+                + "dvec2 formula(dvec2 z, dvec2 c) {\n"
+                + "    return " + expression(formula) + ";\n"
+                + "}\n";
+    }
+
+    private static String expression(Expression e) {
+        switch (e.getOp()) {
+            case CONSTANT:
+                return "dvec2(" + literal(e.getRe()) + "lf, " + literal(e.getIm()) + "lf)";
+            case Z:
+                return "z";
+            case C:
+                return "c";
+            case NEG:
+                return "(-" + expression(e.getLeft()) + ")";
+            case ADD:
+                return "(" + expression(e.getLeft()) + " + " + expression(e.getRight()) + ")";
+            case SUB:
+                return "(" + expression(e.getLeft()) + " - " + expression(e.getRight()) + ")";
+            case MUL:
+                return "f_mul(" + expression(e.getLeft()) + ", " + expression(e.getRight()) + ")";
+            case DIV:
+                return "f_div(" + expression(e.getLeft()) + ", " + expression(e.getRight()) + ")";
+            case POW: {
+                Expression exponent = e.getRight();
+                if (exponent.isInteger() && Math.abs(exponent.getRe()) <= 64) {
+                    int n = (int) exponent.getRe();
+                    String power = "f_powi(" + expression(e.getLeft()) + ", " + Math.abs(n) + ")";
+                    return n >= 0 ? power : "f_div(dvec2(1.0, 0.0), " + power + ")";
+                }
+                if (exponent.isConstant() && exponent.getIm() == 0) {
+                    return "f_powr(" + expression(e.getLeft()) + ", " + literal(exponent.getRe()) + "lf)";
+                }
+                return "f_pow(" + expression(e.getLeft()) + ", " + expression(exponent) + ")";
+            }
+            default:
+                return "f_" + e.getOp().getName() + "(" + expression(e.getLeft()) + ")";
+        }
+    }
+
+    // GLSL floating point literal, always with a point or exponent
+    private static String literal(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            throw new IllegalArgumentException("Formula constant out of range");
+        }
+        return Double.toString(value);
+    }
+}
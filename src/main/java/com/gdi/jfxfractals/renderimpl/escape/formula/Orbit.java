@@ -0,0 +1,13 @@
+package com.gdi.jfxfractals.renderimpl.escape.formula;
+
+/**
+ * One orbit of a compiled formula, implemented by the hidden classes {@link OrbitCompiler} defines.
+ */
+interface Orbit {
+
+    /**
+     * Iterates from z = 0 until {@code |z|^2 > bailout} or {@code maxIter} steps, leaves the last
+     * z in {@code z[0], z[1]} and returns the number of steps taken.
+     */
+    int iterate(double cx, double cy, int maxIter, double bailout, double[] z);
+}
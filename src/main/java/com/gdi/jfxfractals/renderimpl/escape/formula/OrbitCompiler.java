@@ -0,0 +1,793 @@
+package com.gdi.jfxfractals.renderimpl.escape.formula;
+
+import com.gdi.jfxfractals.renderimpl.escape.formula.Expression.Op;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Turns an {@link Expression} into the bytecode of an {@link Orbit} and loads it as a hidden
+ * class. The formula is written out as straight-line double arithmetic on local variables, one
+ * pair of locals per node, inside the same loop the built-in kernels use, so the JIT compiles it
+ * like hand-written code. Each formula gets its own class, unloaded once it is no longer used.
+ */
+final class OrbitCompiler {
+
+    private static final String CLASS_NAME = "com/gdi/jfxfractals/renderimpl/escape/formula/CompiledOrbit";
+    private static final String ORBIT = "com/gdi/jfxfractals/renderimpl/escape/formula/Orbit";
+    private static final String COMPILER = "com/gdi/jfxfractals/renderimpl/escape/formula/OrbitCompiler";
+
+    // locals of iterate(double cx, double cy, int maxIter, double bailout, double[] z)
+    private static final int CX = 1;
+    private static final int MAX_ITER = 5;
+    private static final int BAILOUT = 6;
+    private static final int OUT = 8;
+    private static final int ZX = 9;
+    private static final int ZY = 11;
+    private static final int N = 13;
+    private static final int FIRST_TEMP = 14;
+
+    // beyond this power z^n is taken through exp and log
+    private static final int MAX_UNROLLED_POWER = 64;
+
+    // class file format, JVMS chapter 4
+    private static final int MAGIC = 0xCAFEBABE;
+    private static final int JAVA_17 = 61;
+    private static final int ACC_PUBLIC = 0x0001;
+    private static final int ACC_FINAL = 0x0010;
+    private static final int ACC_SUPER = 0x0020;
+
+    // constant pool tags
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_DOUBLE = 6;
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_METHODREF = 10;
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+
+    // opcodes, JVMS chapter 6
+    private static final int ICONST_0 = 0x03;
+    private static final int ICONST_1 = 0x04;
+    private static final int DCONST_0 = 0x0e;
+    private static final int DCONST_1 = 0x0f;
+    private static final int LDC2_W = 0x14;
+    private static final int ILOAD = 0x15;
+    private static final int DLOAD = 0x18;
+    private static final int ALOAD = 0x19;
+    private static final int ALOAD_0 = 0x2a;
+    private static final int ISTORE = 0x36;
+    private static final int DSTORE = 0x39;
+    private static final int DASTORE = 0x52;
+    private static final int DADD = 0x63;
+    private static final int DSUB = 0x67;
+    private static final int DMUL = 0x6b;
+    private static final int DDIV = 0x6f;
+    private static final int DNEG = 0x77;
+    private static final int IINC = 0x84;
+    private static final int DCMPG = 0x98;
+    private static final int IFGT = 0x9d;
+    private static final int IF_ICMPGE = 0xa2;
+    private static final int GOTO = 0xa7;
+    private static final int IRETURN = 0xac;
+    private static final int RETURN = 0xb1;
+    private static final int INVOKESPECIAL = 0xb7;
+    private static final int INVOKESTATIC = 0xb8;
+    private static final int WIDE = 0xc4;
+
+    // stack map frame type and verification types
+    private static final int FULL_FRAME = 255;
+    private static final int ITEM_INTEGER = 1;
+    private static final int ITEM_DOUBLE = 3;
+    private static final int ITEM_OBJECT = 7;
+
+    private final ConstantPool pool = new ConstantPool();
+    private final Code code = new Code();
+    private int nextLocal = FIRST_TEMP;
+
+    private OrbitCompiler() {
+    }
+
+    static Orbit compile(Expression formula) {
+        byte[] bytes = new OrbitCompiler().classFile(formula);
+        try {
+            MethodHandles.Lookup hidden = MethodHandles.lookup().defineHiddenClass(bytes, true);
+            return (Orbit) hidden.findConstructor(hidden.lookupClass(), MethodType.methodType(void.class)).invoke();
+        } catch (Throwable e) {
+            throw new IllegalStateException("Could not load compiled formula " + formula, e);
+        }
+    }
+
+    private byte[] classFile(Expression formula) {
+        int thisClass = pool.classRef(CLASS_NAME);
+        int objectClass = pool.classRef("java/lang/Object");
+        int orbitClass = pool.classRef(ORBIT);
+        int arrayClass = pool.classRef("[D");
+        byte[] iterate = iterate(formula, thisClass, arrayClass);
+        byte[] init = init(objectClass);
+
+        Code out = new Code();
+        out.u4(MAGIC);
+        out.u2(0);
+        out.u2(JAVA_17);
+        pool.writeTo(out);
+        out.u2(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+        out.u2(thisClass);
+        out.u2(objectClass);
+        out.u2(1);
+        out.u2(orbitClass);
+        out.u2(0);
+        out.u2(2);
+        out.bytes(init);
+        out.bytes(iterate);
+        out.u2(0);
+        return out.toByteArray();
+    }
+
+    private byte[] init(int objectClass) {
+        Code body = new Code();
+        body.u1(ALOAD_0);
+        body.u1(INVOKESPECIAL);
+        body.u2(pool.methodRef(objectClass, "<init>", "()V"));
+        body.u1(RETURN);
+        return method("<init>", "()V", 1, 1, body, null);
+    }
+
+    private byte[] iterate(Expression formula, int thisClass, int arrayClass) {
+        // z = 0, n = 0
+        code.u1(DCONST_0);
+        store(ZX);
+        code.u1(DCONST_0);
+        store(ZY);
+        code.u1(ICONST_0);
+        istore(N);
+
+        // loop: while (n < maxIter && zx * zx + zy * zy <= bailout)
+        int loop = code.size();
+        iload(N);
+        iload(MAX_ITER);
+        int exitOnLimit = code.branch(IF_ICMPGE);
+        load(ZX);
+        load(ZX);
+        code.u1(DMUL);
+        load(ZY);
+        load(ZY);
+        code.u1(DMUL);
+        code.u1(DADD);
+        load(BAILOUT);
+        // dcmpg, so a NaN orbit counts as escaped instead of running to the limit
+        code.u1(DCMPG);
+        int exitOnBailout = code.branch(IFGT);
+
+        int result = emit(formula);
+        load(result);
+        store(ZX);
+        load(result + 2);
+        store(ZY);
+        code.u1(IINC);
+        code.u1(N);
+        code.u1(1);
+        int back = code.branch(GOTO);
+        code.patch(back, loop);
+
+        int exit = code.size();
+        code.patch(exitOnLimit, exit);
+        code.patch(exitOnBailout, exit);
+        // z[0] = zx, z[1] = zy, return n
+        aload(OUT);
+        code.u1(ICONST_0);
+        load(ZX);
+        code.u1(DASTORE);
+        aload(OUT);
+        code.u1(ICONST_1);
+        load(ZY);
+        code.u1(DASTORE);
+        iload(N);
+        code.u1(IRETURN);
+
+        // the same locals at the loop head and the exit, temporaries are dead at both
+        Code frames = new Code();
+        frames.u2(2);
+        frame(frames, loop, thisClass, arrayClass);
+        frame(frames, exit - loop - 1, thisClass, arrayClass);
+        return method("iterate", "(DDID[D)I", 8, nextLocal, code, frames);
+    }
+
+    // A full frame: offset from the previous frame (minus one after the first), the locals, then the
+    // operand stack, which is always empty here. Each local is a verification type, doubles take
+    // one entry for their two slots and objects are followed by their class.
+    //
+    // These two frames are only right as long as the generated code keeps three invariants:
+    // - the loop head and the exit are the only branch targets, so the body of the loop is
+    //   straight-line code and anything conditional is left to a static method it calls;
+    // - the operand stack is empty at both;
+    // - no temporary from FIRST_TEMP on is read before it is written in the same iteration, so
+    //   they can be left out of the frame and count as unusable at both targets.
+    // A formula construct that needs a branch inside the body breaks the first one and would
+    // need frames for its own targets, with the temporaries assigned on every path to them.
+    private static void frame(Code frames, int offsetDelta, int thisClass, int arrayClass) {
+        frames.u1(FULL_FRAME);
+        frames.u2(offsetDelta);
+        frames.u2(9);
+        frames.u1(ITEM_OBJECT);
+        frames.u2(thisClass);
+        // cx, cy, maxIter, bailout, z[], zx, zy, n
+        frames.u1(ITEM_DOUBLE);
+        frames.u1(ITEM_DOUBLE);
+        frames.u1(ITEM_INTEGER);
+        frames.u1(ITEM_DOUBLE);
+        frames.u1(ITEM_OBJECT);
+        frames.u2(arrayClass);
+        frames.u1(ITEM_DOUBLE);
+        frames.u1(ITEM_DOUBLE);
+        frames.u1(ITEM_INTEGER);
+        frames.u2(0);
+    }
+
+    private byte[] method(String name, String descriptor, int maxStack, int maxLocals, Code body, Code frames) {
+        if (body.size() > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Formula too long");
+        }
+        Code attributes = new Code();
+        attributes.u2(maxStack);
+        attributes.u2(maxLocals);
+        attributes.u4(body.size());
+        attributes.bytes(body.toByteArray());
+        attributes.u2(0);
+        if (frames != null) {
+            attributes.u2(1);
+            attributes.u2(pool.utf8("StackMapTable"));
+            attributes.u4(frames.size());
+            attributes.bytes(frames.toByteArray());
+        } else {
+            attributes.u2(0);
+        }
+        Code method = new Code();
+        method.u2(ACC_PUBLIC);
+        method.u2(pool.utf8(name));
+        method.u2(pool.utf8(descriptor));
+        method.u2(1);
+        method.u2(pool.utf8("Code"));
+        method.u4(attributes.size());
+        method.bytes(attributes.toByteArray());
+        return method.toByteArray();
+    }
+
+    // value of e into a fresh pair of locals, or the locals already holding it; returns the real part's slot
+    private int emit(Expression e) {
+        switch (e.getOp()) {
+            case Z:
+                return ZX;
+            case C:
+                return CX;
+            case CONSTANT: {
+                int r = pair();
+                constant(e.getRe());
+                store(r);
+                constant(e.getIm());
+                store(r + 2);
+                return r;
+            }
+            case NEG: {
+                int a = emit(e.getLeft());
+                int r = pair();
+                load(a);
+                code.u1(DNEG);
+                store(r);
+                load(a + 2);
+                code.u1(DNEG);
+                store(r + 2);
+                return r;
+            }
+            case ADD:
+            case SUB: {
+                int a = emit(e.getLeft());
+                int b = emit(e.getRight());
+                int op = e.getOp() == Op.ADD ? DADD : DSUB;
+                int r = pair();
+                load(a);
+                load(b);
+                code.u1(op);
+                store(r);
+                load(a + 2);
+                load(b + 2);
+                code.u1(op);
+                store(r + 2);
+                return r;
+            }
+            case MUL:
+                if (isReal(e.getLeft())) {
+                    return scale(emit(e.getRight()), e.getLeft().getRe());
+                }
+                if (isReal(e.getRight())) {
+                    return scale(emit(e.getLeft()), e.getRight().getRe());
+                }
+                return mul(emit(e.getLeft()), emit(e.getRight()));
+            case DIV:
+                if (isReal(e.getRight())) {
+                    return scale(emit(e.getLeft()), 1 / e.getRight().getRe());
+                }
+                return div(emit(e.getLeft()), emit(e.getRight()));
+            case POW: {
+                Expression exponent = e.getRight();
+                int a = emit(e.getLeft());
+                if (exponent.isInteger() && Math.abs(exponent.getRe()) <= MAX_UNROLLED_POWER) {
+                    int n = (int) exponent.getRe();
+                    if (n == 0) {
+                        return emit(Expression.constant(1, 0));
+                    }
+                    int p = power(a, Math.abs(n));
+                    return n > 0 ? p : div(emit(Expression.constant(1, 0)), p);
+                }
+                // z^w = exp(w log z); a real w scales the log, so 0^w stays 0 instead of 0 * -inf
+                if (isReal(exponent)) {
+                    return exp(scale(log(a), exponent.getRe()));
+                }
+                return complexPower(a, emit(exponent));
+            }
+            default:
+                return function(e.getOp(), emit(e.getLeft()));
+        }
+    }
+
+    // z^w = exp(w log z), but 0 for z = 0 and Re(w) > 0, where w log 0 has an infinite imaginary
+    // part; the polar helpers test for the zero modulus so the loop body stays free of branches
+    private int complexPower(int a, int w) {
+        int t = mul(w, log(a));
+        int e = single();
+        load(t);
+        math("exp", 1);
+        store(e);
+        int r = pair();
+        load(e);
+        load(t + 2);
+        helper("polarRe");
+        store(r);
+        load(e);
+        load(t + 2);
+        helper("polarIm");
+        store(r + 2);
+        return r;
+    }
+
+    /**
+     * {@code modulus * cos(angle)}, called by compiled formulas; 0 for a zero modulus even when
+     * the angle is infinite.
+     */
+    static double polarRe(double modulus, double angle) {
+        return modulus == 0 ? 0 : modulus * Math.cos(angle);
+    }
+
+    /**
+     * {@code modulus * sin(angle)}, called by compiled formulas; 0 for a zero modulus even when
+     * the angle is infinite.
+     */
+    static double polarIm(double modulus, double angle) {
+        return modulus == 0 ? 0 : modulus * Math.sin(angle);
+    }
+
+    private static boolean isReal(Expression e) {
+        return e.isConstant() && e.getIm() == 0;
+    }
+
+    private int function(Op op, int a) {
+        int r = pair();
+        switch (op) {
+            case SIN:
+                // sin a cosh b + i cos a sinh b
+                product(a, "sin", a + 2, "cosh");
+                store(r);
+                product(a, "cos", a + 2, "sinh");
+                store(r + 2);
+                return r;
+            case COS:
+                // cos a cosh b - i sin a sinh b
+                product(a, "cos", a + 2, "cosh");
+                store(r);
+                product(a, "sin", a + 2, "sinh");
+                code.u1(DNEG);
+                store(r + 2);
+                return r;
+            case SINH:
+                product(a, "sinh", a + 2, "cos");
+                store(r);
+                product(a, "cosh", a + 2, "sin");
+                store(r + 2);
+                return r;
+            case COSH:
+                product(a, "cosh", a + 2, "cos");
+                store(r);
+                product(a, "sinh", a + 2, "sin");
+                store(r + 2);
+                return r;
+            case EXP:
+                return exp(a);
+            case LOG:
+                return log(a);
+            case SQRT: {
+                // sqrt((|z| + a) / 2) + i sign(b) sqrt((|z| - a) / 2)
+                int modulus = single();
+                magnitude(a);
+                math("sqrt", 1);
+                store(modulus);
+                load(modulus);
+                load(a);
+                code.u1(DADD);
+                constant(0.5);
+                code.u1(DMUL);
+                math("sqrt", 1);
+                store(r);
+                load(modulus);
+                load(a);
+                code.u1(DSUB);
+                constant(0.5);
+                code.u1(DMUL);
+                math("sqrt", 1);
+                load(a + 2);
+                math("copySign", 2);
+                store(r + 2);
+                return r;
+            }
+            case ABS:
+                magnitude(a);
+                math("sqrt", 1);
+                store(r);
+                code.u1(DCONST_0);
+                store(r + 2);
+                return r;
+            case CONJ:
+                load(a);
+                store(r);
+                load(a + 2);
+                code.u1(DNEG);
+                store(r + 2);
+                return r;
+            case RE:
+            case IM:
+                load(op == Op.RE ? a : a + 2);
+                store(r);
+                code.u1(DCONST_0);
+                store(r + 2);
+                return r;
+            default:
+                throw new IllegalArgumentException("Unsupported operation " + op);
+        }
+    }
+
+    private int scale(int a, double k) {
+        int r = pair();
+        load(a);
+        constant(k);
+        code.u1(DMUL);
+        store(r);
+        load(a + 2);
+        constant(k);
+        code.u1(DMUL);
+        store(r + 2);
+        return r;
+    }
+
+    private int mul(int a, int b) {
+        int r = pair();
+        load(a);
+        load(b);
+        code.u1(DMUL);
+        load(a + 2);
+        load(b + 2);
+        code.u1(DMUL);
+        code.u1(DSUB);
+        store(r);
+        load(a);
+        load(b + 2);
+        code.u1(DMUL);
+        load(a + 2);
+        load(b);
+        code.u1(DMUL);
+        code.u1(DADD);
+        store(r + 2);
+        return r;
+    }
+
+    private int div(int a, int b) {
+        int m = single();
+        magnitude(b);
+        store(m);
+        int r = pair();
+        load(a);
+        load(b);
+        code.u1(DMUL);
+        load(a + 2);
+        load(b + 2);
+        code.u1(DMUL);
+        code.u1(DADD);
+        load(m);
+        code.u1(DDIV);
+        store(r);
+        load(a + 2);
+        load(b);
+        code.u1(DMUL);
+        load(a);
+        load(b + 2);
+        code.u1(DMUL);
+        code.u1(DSUB);
+        load(m);
+        code.u1(DDIV);
+        store(r + 2);
+        return r;
+    }
+
+    // a^n for n >= 1 by repeated squaring
+    private int power(int a, int n) {
+        if (n == 1) {
+            return a;
+        }
+        int half = power(a, n / 2);
+        int square = mul(half, half);
+        return n % 2 == 0 ? square : mul(square, a);
+    }
+
+    private int exp(int a) {
+        int e = single();
+        load(a);
+        math("exp", 1);
+        store(e);
+        int r = pair();
+        load(e);
+        load(a + 2);
+        math("cos", 1);
+        code.u1(DMUL);
+        store(r);
+        load(e);
+        load(a + 2);
+        math("sin", 1);
+        code.u1(DMUL);
+        store(r + 2);
+        return r;
+    }
+
+    // ln|z| + i arg z
+    private int log(int a) {
+        int r = pair();
+        magnitude(a);
+        math("log", 1);
+        constant(0.5);
+        code.u1(DMUL);
+        store(r);
+        load(a + 2);
+        load(a);
+        math("atan2", 2);
+        store(r + 2);
+        return r;
+    }
+
+    // pushes f(x) * g(y)
+    private void product(int x, String f, int y, String g) {
+        load(x);
+        math(f, 1);
+        load(y);
+        math(g, 1);
+        code.u1(DMUL);
+    }
+
+    // pushes re^2 + im^2
+    private void magnitude(int a) {
+        load(a);
+        load(a);
+        code.u1(DMUL);
+        load(a + 2);
+        load(a + 2);
+        code.u1(DMUL);
+        code.u1(DADD);
+    }
+
+    private void math(String name, int arity) {
+        code.u1(INVOKESTATIC);
+        code.u2(pool.methodRef(pool.classRef("java/lang/Math"), name, arity == 1 ? "(D)D" : "(DD)D"));
+    }
+
+    // the hidden class shares this package, so it can call package-private helpers of the compiler
+    private void helper(String name) {
+        code.u1(INVOKESTATIC);
+        code.u2(pool.methodRef(pool.classRef(COMPILER), name, "(DD)D"));
+    }
+
+    private void constant(double value) {
+        if (Double.doubleToRawLongBits(value) == 0L) {
+            code.u1(DCONST_0);
+        } else if (value == 1.0) {
+            code.u1(DCONST_1);
+        } else {
+            code.u1(LDC2_W);
+            code.u2(pool.doubleConstant(value));
+        }
+    }
+
+    private int pair() {
+        int slot = nextLocal;
+        nextLocal += 4;
+        return slot;
+    }
+
+    private int single() {
+        int slot = nextLocal;
+        nextLocal += 2;
+        return slot;
+    }
+
+    private void load(int slot) {
+        local(DLOAD, slot);
+    }
+
+    private void store(int slot) {
+        local(DSTORE, slot);
+    }
+
+    private void iload(int slot) {
+        local(ILOAD, slot);
+    }
+
+    private void istore(int slot) {
+        local(ISTORE, slot);
+    }
+
+    private void aload(int slot) {
+        local(ALOAD, slot);
+    }
+
+    private void local(int opcode, int slot) {
+        if (slot > 0xFFFF) {
+            throw new IllegalArgumentException("Formula too long");
+        }
+        if (slot > 0xFF) {
+            // wide
+            code.u1(WIDE);
+            code.u1(opcode);
+            code.u2(slot);
+        } else {
+            code.u1(opcode);
+            code.u1(slot);
+        }
+    }
+
+    /**
+     * Growable big-endian byte buffer.
+     */
+    private static final class Code {
+
+        private byte[] bytes = new byte[256];
+        private int size;
+
+        int size() {
+            return size;
+        }
+
+        void u1(int value) {
+            if (size == bytes.length) {
+                bytes = Arrays.copyOf(bytes, size * 2);
+            }
+            bytes[size++] = (byte) value;
+        }
+
+        void u2(int value) {
+            u1(value >>> 8);
+            u1(value);
+        }
+
+        void u4(int value) {
+            u2(value >>> 16);
+            u2(value);
+        }
+
+        void bytes(byte[] values) {
+            for (byte value : values) {
+                u1(value);
+            }
+        }
+
+        // a branch instruction with its offset still open, returns where it starts
+        int branch(int opcode) {
+            int at = size;
+            u1(opcode);
+            u2(0);
+            return at;
+        }
+
+        void patch(int branch, int target) {
+            int offset = target - branch;
+            if (offset != (short) offset) {
+                throw new IllegalArgumentException("Formula too long");
+            }
+            bytes[branch + 1] = (byte) (offset >>> 8);
+            bytes[branch + 2] = (byte) offset;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(bytes, size);
+        }
+    }
+
+    /**
+     * Constant pool with every entry stored once.
+     */
+    private static final class ConstantPool {
+
+        private final List<byte[]> entries = new ArrayList<>();
+        private final Map<String, Integer> indices = new HashMap<>();
+        // slot 0 is unused, doubles take two
+        private int count = 1;
+
+        int utf8(String value) {
+            return entry("U" + value, 1, () -> {
+                Code entry = new Code();
+                entry.u1(CONSTANT_UTF8);
+                byte[] text = value.getBytes(StandardCharsets.UTF_8);
+                entry.u2(text.length);
+                entry.bytes(text);
+                return entry;
+            });
+        }
+
+        int classRef(String name) {
+            int nameIndex = utf8(name);
+            return entry("C" + name, 1, () -> {
+                Code entry = new Code();
+                entry.u1(CONSTANT_CLASS);
+                entry.u2(nameIndex);
+                return entry;
+            });
+        }
+
+        int methodRef(int owner, String name, String descriptor) {
+            int nameIndex = utf8(name);
+            int descriptorIndex = utf8(descriptor);
+            int nameAndType = entry("N" + name + descriptor, 1, () -> {
+                Code entry = new Code();
+                entry.u1(CONSTANT_NAME_AND_TYPE);
+                entry.u2(nameIndex);
+                entry.u2(descriptorIndex);
+                return entry;
+            });
+            return entry("M" + owner + "." + name + descriptor, 1, () -> {
+                Code entry = new Code();
+                entry.u1(CONSTANT_METHODREF);
+                entry.u2(owner);
+                entry.u2(nameAndType);
+                return entry;
+            });
+        }
+
+        int doubleConstant(double value) {
+            long bits = Double.doubleToRawLongBits(value);
+            return entry("D" + bits, 2, () -> {
+                Code entry = new Code();
+                entry.u1(CONSTANT_DOUBLE);
+                entry.u4((int) (bits >>> 32));
+                entry.u4((int) bits);
+                return entry;
+            });
+        }
+
+        private int entry(String key, int slots, Supplier<Code> writer) {
+            Integer index = indices.get(key);
+            if (index == null) {
+                index = count;
+                entries.add(writer.get().toByteArray());
+                indices.put(key, index);
+                count += slots;
+            }
+            return index;
+        }
+
+        void writeTo(Code out) {
+            out.u2(count);
+            for (byte[] entry : entries) {
+                out.bytes(entry);
+            }
+        }
+    }
+}
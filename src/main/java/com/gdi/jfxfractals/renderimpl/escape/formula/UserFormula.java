@@ -0,0 +1,105 @@
+package com.gdi.jfxfractals.renderimpl.escape.formula;
+
+import com.gdi.jfxfractals.renderimpl.escape.EscapeTimeKernel;
+import com.gdi.jfxfractals.renderimpl.escape.IterationBuffer;
+import com.gdi.jfxfractals.renderimpl.escape.ScalarKernel;
+import com.gdi.jfxfractals.renderimpl.escape.ViewPort;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An iteration formula typed by the user, e.g. {@code z^3 + sin(z) + c}, compiled once for both
+ * renderers: to a hidden class the CPU kernel runs, and to GLSL for the shader. Orbits start at
+ * z = 0 with c the pixel.
+ */
+public final class UserFormula implements EscapeTimeKernel {
+
+    private static final Logger log = LoggerFactory.getLogger(UserFormula.class);
+
+    private final String source;
+    private final Expression expression;
+    private final Orbit orbit;
+    private final String glsl;
+    private final double degree;
+
+    private UserFormula(String source, Expression expression) {
+        this.source = source;
+        this.expression = expression;
+        this.orbit = OrbitCompiler.compile(expression);
+        this.glsl = GlslWriter.write(expression);
+        this.degree = escapeRate(expression);
+    }
+
+    /**
+     * Parses and compiles {@code source}.
+     *
+     * @throws IllegalArgumentException with the position of the error when the formula does not parse
+     */
+    public static UserFormula compile(String source) {
+        long start = System.nanoTime();
+        Expression expression = FormulaParser.parse(source);
+        if (!expression.dependsOnZ()) {
+            throw new IllegalArgumentException("Formula does not use z: '" + source + "'");
+        }
+        UserFormula formula = new UserFormula(source.trim(), expression);
+        log.debug("Compiled {} as {} in {} us", source, expression, (System.nanoTime() - start) / 1000);
+        return formula;
+    }
+
+    @Override
+    public void compute(ViewPort view, int maxIter, IterationBuffer out, int x0, int y0, int x1, int y1) {
+        int[] iterations = out.getIterations();
+        float[] smooth = out.getSmooth();
+        double[] z = new double[2];
+        for (int py = y0; py < y1; py++) {
+            double cy = view.y(py);
+            int row = out.index(0, py);
+            for (int px = x0; px < x1; px++) {
+                int n = orbit.iterate(view.x(px), cy, maxIter, ScalarKernel.BAILOUT, z);
+                double magnitude = z[0] * z[0] + z[1] * z[1];
+                iterations[row + px] = n;
+                if (n >= maxIter) {
+                    smooth[row + px] = IterationBuffer.INTERIOR;
+                } else {
+                    // orbits that blew up to infinity or NaN in one step have no fraction
+                    smooth[row + px] = magnitude > ScalarKernel.BAILOUT && magnitude < Double.POSITIVE_INFINITY
+                            ? IterationBuffer.smooth(n, magnitude, degree) : n;
+                }
+            }
+        }
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public Expression getExpression() {
+        return expression;
+    }
+
+    /**
+     * Replacement for the formula block of frag.shader, see {@code MandelbrotShaderRenderer}.
+     */
+    public String getGlsl() {
+        return glsl;
+    }
+
+    /**
+     * Polynomials escape at the rate of their leading power, anything else is treated as quadratic.
+     */
+    static double escapeRate(Expression expression) {
+        double rate = expression.degree();
+        return rate > 1 ? rate : 2;
+    }
+
+    public double getDegree() {
+        return degree;
+    }
+
+    /**
+     * Names the formula in tile cache keys.
+     */
+    public String getKey() {
+        return "user:" + source;
+    }
+}
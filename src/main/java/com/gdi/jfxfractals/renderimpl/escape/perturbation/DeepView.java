@@ -0,0 +1,73 @@
+package com.gdi.jfxfractals.renderimpl.escape.perturbation;
+
+import com.gdi.jfxfractals.renderimpl.escape.ViewPort;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+
+/**
+ * A view whose centre is kept in arbitrary precision. Pixel offsets from the centre stay small
+ * enough for doubles, which is what the perturbation kernel iterates on.
+ */
+public final class DeepView {
+
+    // digits kept beyond what is needed to tell two neighbouring pixels apart
+    private static final int GUARD_DIGITS = 12;
+
+    private final BigDecimal centreX;
+    private final BigDecimal centreY;
+    private final double scale;
+    private final int width;
+    private final int height;
+
+    public DeepView(BigDecimal centreX, BigDecimal centreY, double scale, int width, int height) {
+        if (!(scale > 0)) {
+            throw new IllegalArgumentException("scale " + scale);
+        }
+        this.centreX = centreX;
+        this.centreY = centreY;
+        this.scale = scale;
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Pixel grid with coordinates relative to the exact centre.
+     */
+    public ViewPort relative() {
+        return new ViewPort(0, 0, scale, width, height);
+    }
+
+    public MathContext mathContext() {
+        int digits = Math.max(20, (int) Math.ceil(-Math.log10(scale)) + GUARD_DIGITS);
+        return new MathContext(digits, RoundingMode.HALF_EVEN);
+    }
+
+    /**
+     * Largest distance between the centre and any pixel of the view.
+     */
+    public double maxDelta() {
+        return Math.hypot(width / 2 + 1, height / 2 + 1) * scale;
+    }
+
+    public BigDecimal getCentreX() {
+        return centreX;
+    }
+
+    public BigDecimal getCentreY() {
+        return centreY;
+    }
+
+    public double getScale() {
+        return scale;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+}
@@ -0,0 +1,114 @@
+package com.gdi.jfxfractals.renderimpl.escape.perturbation;
+
+import com.gdi.jfxfractals.renderimpl.escape.EscapeTimeEngine;
+import com.gdi.jfxfractals.renderimpl.escape.IterationBuffer;
+import com.gdi.jfxfractals.renderimpl.escape.ViewPort;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+
+/**
+ * Log-polar samples of the plane around a zoom centre. Column {@code j} is the angle
+ * {@code j * step}, row {@code v} the radius {@code maxRadius * exp(-v * step)}, with
+ * {@code step = 2 pi / columns} so that every cell is close to square. A frame of a zoom into the
+ * centre covers a band of consecutive rows, and zooming in only slides the band down the strip,
+ * so all frames of a zoom video can be resampled from one strip instead of being rendered one by one.
+ */
+public final class ExponentialMap {
+
+    // digits kept beyond what is needed to resolve the smallest radius
+    private static final int GUARD_DIGITS = 12;
+
+    private final BigDecimal centreX;
+    private final BigDecimal centreY;
+    private final int columns;
+    private final int rows;
+    private final double step;
+    private final double logMaxRadius;
+    private final double minRadius;
+
+    public ExponentialMap(BigDecimal centreX, BigDecimal centreY, double maxRadius, double minRadius, int columns) {
+        if (!(minRadius > 0) || !(maxRadius > minRadius) || columns <= 0) {
+            throw new IllegalArgumentException("Invalid radii " + minRadius + " to " + maxRadius);
+        }
+        this.centreX = centreX;
+        this.centreY = centreY;
+        this.columns = columns;
+        this.step = 2 * Math.PI / columns;
+        this.logMaxRadius = Math.log(maxRadius);
+        this.minRadius = minRadius;
+        // one row past the smallest radius so it can still be interpolated
+        this.rows = (int) Math.ceil((logMaxRadius - Math.log(minRadius)) / step) + 2;
+    }
+
+    /**
+     * The strip for a zoom from pixels of {@code startScale} down to {@code endScale} in frames of
+     * the given size. Its cells are no larger than a frame pixel, even in the corners.
+     */
+    public static ExponentialMap forZoom(BigDecimal centreX, BigDecimal centreY, int width, int height,
+                                         double startScale, double endScale) {
+        double halfDiagonal = halfDiagonal(width, height);
+        int columns = (int) Math.ceil(2 * Math.PI * halfDiagonal / 8) * 8;
+        return new ExponentialMap(centreX, centreY, startScale * halfDiagonal, endScale / 2, columns);
+    }
+
+    /**
+     * Farthest distance of a frame pixel from the centre, in pixels.
+     */
+    public static double halfDiagonal(int width, int height) {
+        return Math.hypot(width / 2 + 1, height / 2 + 1);
+    }
+
+    /**
+     * The orbit of the centre every cell is iterated against.
+     */
+    public ReferenceOrbit reference(int maxIter) {
+        int digits = Math.max(20, (int) Math.ceil(-Math.log10(minRadius)) + GUARD_DIGITS);
+        return ReferenceOrbit.compute(centreX, centreY, maxIter, new MathContext(digits, RoundingMode.HALF_EVEN));
+    }
+
+    /**
+     * Iterates rows {@code [firstRow, firstRow + out.getHeight())} of the strip into {@code out}, on
+     * every worker of {@code engine}. Buffer row 0 is the outermost of them.
+     */
+    public void render(EscapeTimeEngine engine, ReferenceOrbit orbit, int firstRow, int maxIter, IterationBuffer out) {
+        // the kernel reads only the grid of this view, the coordinates come from the strip
+        ViewPort grid = new ViewPort(0, 0, step, columns, out.getHeight());
+        engine.renderTiled(grid, maxIter, out, new ExponentialMapKernel(this, orbit, firstRow));
+    }
+
+    /**
+     * Fractional row at which the strip samples {@code radius}.
+     */
+    public double row(double radius) {
+        return (logMaxRadius - Math.log(radius)) / step;
+    }
+
+    public double radius(double row) {
+        return Math.exp(logMaxRadius - row * step);
+    }
+
+    public BigDecimal getCentreX() {
+        return centreX;
+    }
+
+    public BigDecimal getCentreY() {
+        return centreY;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Angle between two columns, and the log-radius between two rows.
+     */
+    public double getStep() {
+        return step;
+    }
+}
@@ -0,0 +1,100 @@
+package com.gdi.jfxfractals.renderimpl.escape.perturbation;
+
+import com.gdi.jfxfractals.renderimpl.escape.EscapeTimeKernel;
+import com.gdi.jfxfractals.renderimpl.escape.Interior;
+import com.gdi.jfxfractals.renderimpl.escape.IterationBuffer;
+import com.gdi.jfxfractals.renderimpl.escape.ViewPort;
+
+/**
+ * Iterates cells of an {@link ExponentialMap} as double deltas from the orbit of its centre.
+ * The deltas span every scale of the zoom at once, so instead of flagging glitches the orbit is
+ * rebased (Zhuoran's method): once the full value comes closer to 0 than the delta, or the
+ * reference runs out, the full value becomes the delta against the start of the reference.
+ */
+class ExponentialMapKernel implements EscapeTimeKernel {
+
+    // cells at least this large are resolved by doubles, so the shortcuts of the double kernels are safe
+    private static final double SHALLOW = 1e-12;
+
+    private final ExponentialMap map;
+    private final ReferenceOrbit orbit;
+    private final int firstRow;
+    private final double centreX;
+    private final double centreY;
+
+    ExponentialMapKernel(ExponentialMap map, ReferenceOrbit orbit, int firstRow) {
+        this.map = map;
+        this.orbit = orbit;
+        this.firstRow = firstRow;
+        this.centreX = map.getCentreX().doubleValue();
+        this.centreY = map.getCentreY().doubleValue();
+    }
+
+    @Override
+    public void compute(ViewPort view, int maxIter, IterationBuffer out, int x0, int y0, int x1, int y1) {
+        int[] iterations = out.getIterations();
+        float[] smooth = out.getSmooth();
+        double[] zr = orbit.getZr();
+        double[] zi = orbit.getZi();
+        int last = orbit.getLength() - 1;
+        double step = map.getStep();
+
+        for (int py = y0; py < y1; py++) {
+            double radius = map.radius(firstRow + py);
+            double cell = radius * step;
+            boolean shallow = cell >= SHALLOW;
+            double eps = Interior.periodicityEpsilon(cell, 1e-15);
+            int row = out.index(0, py);
+            for (int px = x0; px < x1; px++) {
+                double angle = px * step;
+                double dcx = radius * Math.cos(angle);
+                double dcy = radius * Math.sin(angle);
+                if (shallow && Interior.inCardioidOrBulb(centreX + dcx, centreY + dcy)) {
+                    iterations[row + px] = maxIter;
+                    smooth[row + px] = IterationBuffer.INTERIOR;
+                    continue;
+                }
+                double dx = 0, dy = 0;
+                double hx = 0, hy = 0;
+                double mag = 0;
+                int checkpoint = 1;
+                int m = 0;
+                int n = 0;
+                while (n < maxIter) {
+                    double rx = zr[m];
+                    double ry = zi[m];
+                    double ndx = 2 * (rx * dx - ry * dy) + dx * dx - dy * dy + dcx;
+                    dy = 2 * (rx * dy + ry * dx) + 2 * dx * dy + dcy;
+                    dx = ndx;
+                    m++;
+                    n++;
+                    double x = zr[m] + dx;
+                    double y = zi[m] + dy;
+                    mag = x * x + y * y;
+                    if (mag > PerturbationKernel.BAILOUT) {
+                        break;
+                    }
+                    if (mag < dx * dx + dy * dy || m == last) {
+                        dx = x;
+                        dy = y;
+                        m = 0;
+                    }
+                    // Brent periodicity check, only where a cycle of the full value can be told from a near miss
+                    if (shallow) {
+                        if (Math.abs(x - hx) < eps && Math.abs(y - hy) < eps) {
+                            n = maxIter;
+                            break;
+                        }
+                        if (n == checkpoint) {
+                            hx = x;
+                            hy = y;
+                            checkpoint <<= 1;
+                        }
+                    }
+                }
+                iterations[row + px] = n;
+                smooth[row + px] = n >= maxIter ? IterationBuffer.INTERIOR : IterationBuffer.smooth(n, mag);
+            }
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.gdi.jfxfractals.renderimpl.escape.perturbation;
+
+import com.gdi.jfxfractals.renderimpl.escape.EscapeTimeKernel;
+import com.gdi.jfxfractals.renderimpl.escape.IterationBuffer;
+import com.gdi.jfxfractals.renderimpl.escape.ScalarKernel;
+import com.gdi.jfxfractals.renderimpl.escape.ViewPort;
+
+/**
+ * Iterates pixels as double deltas from a {@link ReferenceOrbit}:
+ * delta(n+1) = 2 Z(n) delta(n) + delta(n)^2 + d, with d the pixel's offset from the reference.
+ * Pixels whose full value collapses far below the reference (Pauldelbrot's criterion), or that
+ * outlive the reference, are flagged as glitched so they can be redone with another reference.
+ * The view must be relative to the exact centre, see {@link DeepView#relative()}.
+ */
+class PerturbationKernel implements EscapeTimeKernel {
+
+    static final double BAILOUT = ScalarKernel.BAILOUT;
+    static final double GLITCH_TOLERANCE = 1e-6;
+
+    private final ReferenceOrbit orbit;
+    private final SeriesApproximation series;
+    // reference position relative to the view centre
+    private final double refX;
+    private final double refY;
+    // when set, only pixels flagged here are computed
+    private final byte[] mask;
+
+    final byte[] glitched;
+    final float[] glitchDepth;
+
+    PerturbationKernel(ReferenceOrbit orbit, SeriesApproximation series, double refX, double refY, byte[] mask, int pixels) {
+        this.orbit = orbit;
+        this.series = series;
+        this.refX = refX;
+        this.refY = refY;
+        this.mask = mask;
+        this.glitched = new byte[pixels];
+        this.glitchDepth = new float[pixels];
+    }
+
+    @Override
+    public void compute(ViewPort view, int maxIter, IterationBuffer out, int x0, int y0, int x1, int y1) {
+        int[] iterations = out.getIterations();
+        float[] smooth = out.getSmooth();
+        double[] zr = orbit.getZr();
+        double[] zi = orbit.getZi();
+        int length = orbit.getLength();
+        int skip = series.getSkip();
+
+        for (int py = y0; py < y1; py++) {
+            double dcy = view.y(py) - refY;
+            int row = out.index(0, py);
+            for (int px = x0; px < x1; px++) {
+                int index = row + px;
+                if (mask != null && mask[index] == 0) {
+                    continue;
+                }
+                double dcx = view.x(px) - refX;
+                double dx, dy;
+                int n;
+                double mag = 0;
+                if (skip > 0) {
+                    dx = series.deltaX(dcx, dcy);
+                    dy = series.deltaY(dcx, dcy);
+                    n = skip;
+                } else {
+                    dx = 0;
+                    dy = 0;
+                    n = 0;
+                }
+
+                while (n < maxIter) {
+                    if (n >= length) {
+                        // the reference escaped first, nothing left to perturb against
+                        glitched[index] = 1;
+                        glitchDepth[index] = 1;
+                        break;
+                    }
+                    double rx = zr[n];
+                    double ry = zi[n];
+                    double x = rx + dx;
+                    double y = ry + dy;
+                    mag = x * x + y * y;
+                    if (mag > BAILOUT) {
+                        break;
+                    }
+                    double refMag = rx * rx + ry * ry;
+                    if (mag < GLITCH_TOLERANCE * refMag) {
+                        glitched[index] = 1;
+                        glitchDepth[index] = (float) (mag / refMag);
+                        break;
+                    }
+                    double ndx = 2 * (rx * dx - ry * dy) + dx * dx - dy * dy + dcx;
+                    double ndy = 2 * (rx * dy + ry * dx) + 2 * dx * dy + dcy;
+                    dx = ndx;
+                    dy = ndy;
+                    n++;
+                }
+                iterations[index] = n;
+                smooth[index] = n >= maxIter ? IterationBuffer.INTERIOR : IterationBuffer.smooth(n, mag);
+            }
+        }
+    }
+}
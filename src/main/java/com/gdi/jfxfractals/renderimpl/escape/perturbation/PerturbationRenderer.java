@@ -0,0 +1,116 @@
+package com.gdi.jfxfractals.renderimpl.escape.perturbation;
+
+import com.gdi.jfxfractals.renderimpl.escape.EscapeTimeEngine;
+import com.gdi.jfxfractals.renderimpl.escape.IterationBuffer;
+import com.gdi.jfxfractals.renderimpl.escape.ViewPort;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+
+/**
+ * Deep zoom rendering by perturbation. One reference orbit is computed in arbitrary precision at
+ * the view centre, every pixel is iterated in doubles relative to it, starting after the iterations
+ * covered by the series approximation. Glitched pixels are redone against secondary references
+ * placed inside the glitches until none remain or the reference budget is used up.
+ */
+public class PerturbationRenderer {
+
+    public static final int MAX_REFERENCES = 16;
+
+    private static final Logger log = LoggerFactory.getLogger(PerturbationRenderer.class);
+
+    private final EscapeTimeEngine engine;
+    private ReferenceOrbit primary;
+
+    public PerturbationRenderer(EscapeTimeEngine engine) {
+        this.engine = engine;
+    }
+
+    public void render(DeepView view, int maxIter, IterationBuffer out) {
+        MathContext mc = view.mathContext();
+        ViewPort relative = view.relative();
+        int pixels = view.getWidth() * view.getHeight();
+
+        ReferenceOrbit orbit = primary;
+        if (orbit == null || !orbit.matches(view.getCentreX(), view.getCentreY(), maxIter, mc)) {
+            orbit = primary = ReferenceOrbit.compute(view.getCentreX(), view.getCentreY(), maxIter, mc);
+        }
+        SeriesApproximation series = SeriesApproximation.compute(orbit, view.maxDelta());
+
+        PerturbationKernel pass = new PerturbationKernel(orbit, series, 0, 0, null, pixels);
+        engine.render(relative, maxIter, out, pass);
+
+        int references = 1;
+        int remaining = count(pass.glitched);
+        while (remaining > 0 && references < MAX_REFERENCES) {
+            int pick = deepestGlitch(pass);
+            double refX = relative.x(pick % view.getWidth());
+            double refY = relative.y(pick / view.getWidth());
+            ReferenceOrbit secondary = ReferenceOrbit.compute(
+                    view.getCentreX().add(new BigDecimal(refX), mc),
+                    view.getCentreY().add(new BigDecimal(refY), mc), maxIter, mc);
+
+            PerturbationKernel next = new PerturbationKernel(secondary, SeriesApproximation.NONE, refX, refY, pass.glitched, pixels);
+            engine.renderTiled(relative, maxIter, out, next);
+            references++;
+
+            int left = count(next.glitched);
+            pass = next;
+            if (left >= remaining) {
+                // this reference did not help, further ones picked the same way will not either
+                remaining = left;
+                break;
+            }
+            remaining = left;
+        }
+
+        if (remaining > 0) {
+            log.debug("{} glitched pixels left after {} references", remaining, references);
+            fillGlitches(pass.glitched, out);
+        }
+    }
+
+    private static int count(byte[] flags) {
+        int count = 0;
+        for (byte flag : flags) {
+            count += flag;
+        }
+        return count;
+    }
+
+    // the pixel that came closest to the glitch's critical point makes the best next reference
+    private static int deepestGlitch(PerturbationKernel pass) {
+        int best = -1;
+        float depth = Float.MAX_VALUE;
+        for (int i = 0; i < pass.glitched.length; i++) {
+            if (pass.glitched[i] != 0 && pass.glitchDepth[i] < depth) {
+                depth = pass.glitchDepth[i];
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    private static void fillGlitches(byte[] glitched, IterationBuffer out) {
+        int[] iterations = out.getIterations();
+        float[] smooth = out.getSmooth();
+        int width = out.getWidth();
+        for (int i = 0; i < glitched.length; i++) {
+            if (glitched[i] == 0) {
+                continue;
+            }
+            int from = -1;
+            if (i % width > 0 && glitched[i - 1] == 0) {
+                from = i - 1;
+            } else if (i >= width && glitched[i - width] == 0) {
+                from = i - width;
+            }
+            if (from >= 0) {
+                iterations[i] = iterations[from];
+                smooth[i] = smooth[from];
+            }
+        }
+    }
+}
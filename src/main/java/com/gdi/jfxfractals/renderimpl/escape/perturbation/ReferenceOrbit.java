@@ -0,0 +1,84 @@
+package com.gdi.jfxfractals.renderimpl.escape.perturbation;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+
+/**
+ * The orbit Z(n) of one point, iterated in arbitrary precision and stored rounded to doubles.
+ * Every other pixel is iterated as a small double delta from this orbit.
+ */
+public final class ReferenceOrbit {
+
+    private final BigDecimal cx;
+    private final BigDecimal cy;
+    private final int maxIter;
+    private final int precision;
+    private final double[] zr;
+    private final double[] zi;
+    private final int length;
+
+    private ReferenceOrbit(BigDecimal cx, BigDecimal cy, int maxIter, int precision, double[] zr, double[] zi, int length) {
+        this.cx = cx;
+        this.cy = cy;
+        this.maxIter = maxIter;
+        this.precision = precision;
+        this.zr = zr;
+        this.zi = zi;
+        this.length = length;
+    }
+
+    public static ReferenceOrbit compute(BigDecimal cx, BigDecimal cy, int maxIter, MathContext mc) {
+        double[] zr = new double[maxIter + 1];
+        double[] zi = new double[maxIter + 1];
+        BigDecimal x = BigDecimal.ZERO;
+        BigDecimal y = BigDecimal.ZERO;
+        int n = 0;
+        while (true) {
+            double dx = x.doubleValue();
+            double dy = y.doubleValue();
+            zr[n] = dx;
+            zi[n] = dy;
+            if (n == maxIter || dx * dx + dy * dy > PerturbationKernel.BAILOUT) {
+                break;
+            }
+            BigDecimal xx = x.multiply(x, mc);
+            BigDecimal yy = y.multiply(y, mc);
+            BigDecimal xy = x.multiply(y, mc);
+            x = xx.subtract(yy, mc).add(cx, mc);
+            y = xy.add(xy, mc).add(cy, mc);
+            n++;
+        }
+        return new ReferenceOrbit(cx, cy, maxIter, mc.getPrecision(), zr, zi, n + 1);
+    }
+
+    /**
+     * Whether this orbit can be reused for the given reference point and limits.
+     */
+    public boolean matches(BigDecimal cx, BigDecimal cy, int maxIter, MathContext mc) {
+        return this.maxIter == maxIter && this.precision >= mc.getPrecision()
+                && this.cx.compareTo(cx) == 0 && this.cy.compareTo(cy) == 0;
+    }
+
+    public BigDecimal getCx() {
+        return cx;
+    }
+
+    public BigDecimal getCy() {
+        return cy;
+    }
+
+    public double[] getZr() {
+        return zr;
+    }
+
+    public double[] getZi() {
+        return zi;
+    }
+
+    /**
+     * Number of stored points, Z(0) .. Z(length - 1). Shorter than {@code maxIter + 1} when the reference escapes.
+     */
+    public int getLength() {
+        return length;
+    }
+}
@@ -0,0 +1,98 @@
+package com.gdi.jfxfractals.renderimpl.escape.perturbation;
+
+/**
+ * Third order series for the delta orbit, delta(n) ~ A(n) d + B(n) d^2 + C(n) d^3 with d the pixel offset.
+ * While the cubic term stays negligible for the farthest pixel of the view, every pixel can start
+ * at iteration {@link #getSkip()} instead of 0.
+ */
+public final class SeriesApproximation {
+
+    // relative size of the truncated term that is still treated as exact
+    private static final double TOLERANCE = 1e-12;
+    private static final double MAX_COEFFICIENT = 1e200;
+
+    public static final SeriesApproximation NONE = new SeriesApproximation(0, 0, 0, 0, 0, 0, 0);
+
+    private final int skip;
+    private final double ar, ai, br, bi, cr, ci;
+
+    private SeriesApproximation(int skip, double ar, double ai, double br, double bi, double cr, double ci) {
+        this.skip = skip;
+        this.ar = ar;
+        this.ai = ai;
+        this.br = br;
+        this.bi = bi;
+        this.cr = cr;
+        this.ci = ci;
+    }
+
+    public static SeriesApproximation compute(ReferenceOrbit orbit, double maxDelta) {
+        double[] zr = orbit.getZr();
+        double[] zi = orbit.getZi();
+        double logTolerance = Math.log(TOLERANCE);
+        double logDelta = Math.log(maxDelta);
+
+        double ar = 0, ai = 0, br = 0, bi = 0, cr = 0, ci = 0;
+        int skip = 0;
+        // stop one short of the end so the kernel always has Z(skip) to continue from
+        for (int n = 0; n + 2 < orbit.getLength(); n++) {
+            double tr = 2 * zr[n];
+            double ti = 2 * zi[n];
+
+            double nar = tr * ar - ti * ai + 1;
+            double nai = tr * ai + ti * ar;
+            double nbr = tr * br - ti * bi + (ar * ar - ai * ai);
+            double nbi = tr * bi + ti * br + 2 * ar * ai;
+            double ncr = tr * cr - ti * ci + 2 * (ar * br - ai * bi);
+            double nci = tr * ci + ti * cr + 2 * (ar * bi + ai * br);
+
+            double a = Math.hypot(nar, nai);
+            double c = Math.hypot(ncr, nci);
+            if (!(a < MAX_COEFFICIENT) || !(c < MAX_COEFFICIENT)) {
+                break;
+            }
+            // |C| d^3 <= tol |A| d, in logs because d^2 underflows on deep views
+            if (c > 0 && Math.log(c) + 2 * logDelta > logTolerance + Math.log(a)) {
+                break;
+            }
+            ar = nar;
+            ai = nai;
+            br = nbr;
+            bi = nbi;
+            cr = ncr;
+            ci = nci;
+            skip = n + 1;
+        }
+        return skip == 0 ? NONE : new SeriesApproximation(skip, ar, ai, br, bi, cr, ci);
+    }
+
+    public int getSkip() {
+        return skip;
+    }
+
+    /**
+     * A, B and C as real and imaginary parts, for kernels that evaluate the series themselves.
+     */
+    public double[] getCoefficients() {
+        return new double[]{ar, ai, br, bi, cr, ci};
+    }
+
+    /**
+     * delta(skip) for a pixel offset, evaluated in Horner form to keep d^2 and d^3 from underflowing.
+     */
+    public double deltaX(double dx, double dy) {
+        double tr = br + dx * cr - dy * ci;
+        double ti = bi + dx * ci + dy * cr;
+        double ur = ar + dx * tr - dy * ti;
+        double ui = ai + dx * ti + dy * tr;
+        return dx * ur - dy * ui;
+    }
+
+    public double deltaY(double dx, double dy) {
+        double tr = br + dx * cr - dy * ci;
+        double ti = bi + dx * ci + dy * cr;
+        double ur = ar + dx * tr - dy * ti;
+        double ui = ai + dx * ti + dy * tr;
+        return dx * ui + dy * ur;
+    }
+}
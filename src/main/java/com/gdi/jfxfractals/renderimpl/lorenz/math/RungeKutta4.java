@@ -31,6 +31,11 @@ public final class RungeKutta4 implements Updatable {
             this.current = apply(this.current, this.h, this.function, this.series, this.listener, this.iterationsPerUpdate);
     }
 
+    @Override
+    public boolean isActive() {
+        return !this.listener.isCancelled();
+    }
+
     public static Vector3d apply(Vector3d v0, double h, Function function, Series series, IncrementalListener listener, int maxIterations) {
         double h2 = h / 2D, h6 = h / 6D;
         Vector3d v = v0.copy(), k1 = new Vector3d(), k2 = new Vector3d(), k3 = new Vector3d(), k4 = new Vector3d();
@@ -5,5 +5,12 @@ public interface Updatable {
 
     void update();
 
+    /**
+     * Whether further updates still change anything, e.g. a solver that has not reached its points yet.
+     */
+    default boolean isActive() {
+        return false;
+    }
+
     default void dispose() {}
 }
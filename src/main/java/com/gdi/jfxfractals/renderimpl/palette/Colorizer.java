@@ -0,0 +1,238 @@
+package com.gdi.jfxfractals.renderimpl.palette;
+
+import com.gdi.jfxfractals.renderimpl.escape.IterationBuffer;
+import com.gdi.jfxfractals.renderimpl.escape.Supersampler.Supersamples;
+
+import java.nio.IntBuffer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+/**
+ * Turns smooth iteration counts into colours through a {@link Palette}. Only reads the iteration
+ * data, so changing the palette, its offset or equalisation never needs the fractal recomputed.
+ * Settings may be changed from any thread; renderers compare {@link #getVersion()} to know when
+ * to colour again.
+ */
+public class Colorizer {
+
+    // palette turns per second while cycling
+    public static final float CYCLE_SPEED = 0.1f;
+
+    private static final int ROWS_PER_TASK = 16;
+    private static final int SAMPLES_PER_TASK = 4096;
+    private static final int MISSING_COLOUR = 0xFF000000;
+
+    // pixels over which the boundary fades in, see setBoundary
+    public static final float DEFAULT_BOUNDARY = 1f;
+
+    private volatile Palette palette;
+    private volatile float offset;
+    private volatile boolean cycling;
+    private volatile boolean equalize;
+    private volatile float boundary = DEFAULT_BOUNDARY;
+    private final AtomicInteger version = new AtomicInteger();
+    private long lastTick;
+
+    public Colorizer(Palette palette) {
+        this.palette = palette;
+    }
+
+    /**
+     * Advances colour cycling, call once per frame from the render thread.
+     */
+    public void tick() {
+        long now = System.nanoTime();
+        if (cycling && lastTick != 0) {
+            float turned = offset + CYCLE_SPEED * (now - lastTick) / 1e9f;
+            offset = turned - (float) Math.floor(turned);
+            version.incrementAndGet();
+        }
+        lastTick = now;
+    }
+
+    /**
+     * Palette positions swept per iteration for the given limit.
+     */
+    public float density(int maxIter) {
+        float density = palette.getDensity();
+        return density == Palette.SPREAD ? 1f / maxIter : density;
+    }
+
+    /**
+     * Colours {@code smooth} into {@code out} as ARGB, splitting rows over {@code pool}.
+     */
+    public void apply(float[] smooth, int width, int maxIter, IntBuffer out, ForkJoinPool pool) {
+        apply(smooth, null, 0, width, maxIter, null, out, pool);
+    }
+
+    /**
+     * Colours a buffer rendered at {@code pixelSize}, darkening pixels near the set when a boundary
+     * is set and the buffer has distances. The pixels in {@code samples} get the average colour of
+     * their own and their extra samples.
+     */
+    public void apply(IterationBuffer buffer, double pixelSize, int maxIter, Supersamples samples, IntBuffer out,
+                      ForkJoinPool pool) {
+        apply(buffer.getSmooth(), buffer.getDistance(), pixelSize, buffer.getWidth(), maxIter, samples, out, pool);
+    }
+
+    private void apply(float[] smooth, float[] distance, double pixelSize, int width, int maxIter,
+                       Supersamples samples, IntBuffer out, ForkJoinPool pool) {
+        float[] cdf = equalize ? cumulativeHistogram(smooth, maxIter) : null;
+        Mapping mapping = new Mapping(palette, density(maxIter), offset, cdf,
+                distance != null ? boundary * pixelSize : 0);
+        int rows = smooth.length / width;
+        int tasks = (rows + ROWS_PER_TASK - 1) / ROWS_PER_TASK;
+
+        pool.invoke(ForkJoinTask.adapt(() -> IntStream.range(0, tasks).parallel().forEach(task -> {
+            int end = Math.min(smooth.length, (task + 1) * ROWS_PER_TASK * width);
+            for (int i = task * ROWS_PER_TASK * width; i < end; i++) {
+                out.put(i, mapping.colour(smooth[i], distance != null ? distance[i] : IterationBuffer.NO_DISTANCE));
+            }
+        })));
+        if (samples == null || samples.size() == 0) {
+            return;
+        }
+        int chunks = (samples.size() + SAMPLES_PER_TASK - 1) / SAMPLES_PER_TASK;
+        pool.invoke(ForkJoinTask.adapt(() -> IntStream.range(0, chunks).parallel().forEach(chunk -> {
+            int end = Math.min(samples.size(), (chunk + 1) * SAMPLES_PER_TASK);
+            for (int e = chunk * SAMPLES_PER_TASK; e < end; e++) {
+                int pixel = samples.pixel(e);
+                int colour = mapping.colour(smooth[pixel], distance != null ? distance[pixel] : IterationBuffer.NO_DISTANCE);
+                int r = (colour >> 16) & 0xFF;
+                int g = (colour >> 8) & 0xFF;
+                int b = colour & 0xFF;
+                for (int s = 0; s < Supersamples.SAMPLES; s++) {
+                    colour = mapping.colour(samples.smooth(e, s), samples.distance(e, s));
+                    r += (colour >> 16) & 0xFF;
+                    g += (colour >> 8) & 0xFF;
+                    b += colour & 0xFF;
+                }
+                int n = Supersamples.SAMPLES + 1;
+                out.put(pixel, 0xFF000000 | (r / n) << 16 | (g / n) << 8 | b / n);
+            }
+        })));
+    }
+
+    // fraction of escaped pixels below each whole iteration count
+    private static float[] cumulativeHistogram(float[] smooth, int maxIter) {
+        int bins = maxIter + 2;
+        long[] histogram = new long[bins];
+        long total = 0;
+        for (float nu : smooth) {
+            if (nu >= 0) {
+                histogram[Math.min(bins - 1, (int) nu)]++;
+                total++;
+            }
+        }
+        float[] cdf = new float[bins + 1];
+        long running = 0;
+        for (int k = 0; k < bins; k++) {
+            cdf[k] = total == 0 ? 0 : running / (float) total;
+            running += histogram[k];
+        }
+        cdf[bins] = 1;
+        return cdf;
+    }
+
+    private static float equalized(float[] cdf, float nu) {
+        int k = Math.min(cdf.length - 2, (int) nu);
+        float t = Math.min(1f, nu - k);
+        return cdf[k] + (cdf[k + 1] - cdf[k]) * t;
+    }
+
+    public int getVersion() {
+        return version.get();
+    }
+
+    public Palette getPalette() {
+        return palette;
+    }
+
+    public void setPalette(Palette palette) {
+        this.palette = palette;
+        version.incrementAndGet();
+    }
+
+    public float getOffset() {
+        return offset;
+    }
+
+    public void setOffset(float offset) {
+        this.offset = offset;
+        version.incrementAndGet();
+    }
+
+    public boolean isCycling() {
+        return cycling;
+    }
+
+    public void setCycling(boolean cycling) {
+        this.cycling = cycling;
+        version.incrementAndGet();
+    }
+
+    public boolean isEqualize() {
+        return equalize;
+    }
+
+    /**
+     * Spreads the palette by pixel count instead of iteration count, so every colour covers a
+     * similar area whatever the zoom.
+     */
+    public void setEqualize(boolean equalize) {
+        this.equalize = equalize;
+        version.incrementAndGet();
+    }
+
+    public float getBoundary() {
+        return boundary;
+    }
+
+    /**
+     * Width in pixels over which escaped pixels fade into the interior colour as they get close to
+     * the set, going by the distance estimate. Brings out filaments far too thin to be hit by a
+     * pixel centre; 0 turns it off, as do buffers without distances.
+     */
+    public void setBoundary(float boundary) {
+        this.boundary = boundary;
+        version.incrementAndGet();
+    }
+
+    /**
+     * Convenience for {@link #apply(float[], int, int, IntBuffer, ForkJoinPool)} on a whole buffer.
+     */
+    public void apply(IterationBuffer buffer, int maxIter, IntBuffer out, ForkJoinPool pool) {
+        apply(buffer.getSmooth(), buffer.getWidth(), maxIter, out, pool);
+    }
+
+    // one snapshot of the settings, so a frame is coloured consistently while they change
+    private static final class Mapping {
+        final Palette palette;
+        final float density;
+        final float offset;
+        final float[] cdf;
+        final double boundary;
+
+        Mapping(Palette palette, float density, float offset, float[] cdf, double boundary) {
+            this.palette = palette;
+            this.density = density;
+            this.offset = offset;
+            this.cdf = cdf;
+            this.boundary = boundary;
+        }
+
+        int colour(float nu, float distance) {
+            if (nu < 0) {
+                return nu == IterationBuffer.MISSING ? MISSING_COLOUR : palette.getInterior();
+            }
+            int colour = cdf != null ? palette.lookup(equalized(cdf, nu) + offset) : palette.lookup(nu * density + offset);
+            // false for NO_DISTANCE
+            if (boundary > 0 && distance < boundary) {
+                colour = Palette.mix(palette.getInterior(), colour, (float) (distance / boundary));
+            }
+            return colour;
+        }
+    }
+}
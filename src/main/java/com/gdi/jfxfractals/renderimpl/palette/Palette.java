@@ -0,0 +1,151 @@
+package com.gdi.jfxfractals.renderimpl.palette;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A colour lookup table indexed by position along the palette, 0 to 1. Repeating palettes wrap
+ * around and are swept {@code density} times per iteration, ramps are clamped and stretched over
+ * the iteration limit.
+ */
+public final class Palette {
+
+    public static final int SIZE = 1024;
+
+    /**
+     * Density of ramps: the palette spans 0 to the iteration limit once.
+     */
+    public static final float SPREAD = 0f;
+
+    private static final Map<String, Palette> PRESETS = new LinkedHashMap<>();
+
+    static {
+        add(classic());
+        add(grey());
+        add(gradient("Fire", true, 0.02f, 0xFF000000, 0xFF800000, 0xFFFF4000, 0xFFFFC000, 0xFFFFFFA0, 0xFF000000));
+        add(gradient("Ocean", true, 0.02f, 0xFF000428, 0xFF004E92, 0xFF00B4DB, 0xFFFFFFFF, 0xFFFF9900, 0xFF000428));
+    }
+
+    private final String name;
+    private final int[] argb;
+    private final boolean repeat;
+    private final float density;
+    private final int interior;
+
+    public Palette(String name, int[] argb, boolean repeat, float density, int interior) {
+        if (argb.length == 0) {
+            throw new IllegalArgumentException("Empty palette");
+        }
+        this.name = name;
+        this.argb = argb;
+        this.repeat = repeat;
+        this.density = density;
+        this.interior = interior;
+    }
+
+    private static void add(Palette palette) {
+        PRESETS.put(palette.getName(), palette);
+    }
+
+    public static Map<String, Palette> presets() {
+        return PRESETS;
+    }
+
+    /**
+     * The HSV colours the Mandelbrot shader used to compute per pixel: hue turns once every
+     * 83 iterations while the value pulses four times.
+     */
+    public static Palette classic() {
+        int[] lut = new int[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            float u = i / (float) SIZE;
+            float v = (float) (0.2 + .4 * (1.0 + Math.sin(2 * Math.PI * 4 * u)));
+            lut[i] = hsv(u, v);
+        }
+        return new Palette("Classic", lut, true, 0.012f, 0xFF000000);
+    }
+
+    /**
+     * Black to white over the iteration limit, the look of the CPU Mandelbrot view.
+     */
+    public static Palette grey() {
+        int[] lut = new int[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            int c = i * 255 / (SIZE - 1);
+            lut[i] = 0xFF000000 | c << 16 | c << 8 | c;
+        }
+        return new Palette("Grey", lut, false, SPREAD, 0xFFFFFFFF);
+    }
+
+    /**
+     * Evenly spaced colour stops, linearly interpolated.
+     */
+    public static Palette gradient(String name, boolean repeat, float density, int... stops) {
+        int[] lut = new int[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            float t = i / (float) (SIZE - 1) * (stops.length - 1);
+            int k = Math.min((int) t, stops.length - 2);
+            lut[i] = mix(stops[k], stops[k + 1], t - k);
+        }
+        return new Palette(name, lut, repeat, density, 0xFF000000);
+    }
+
+    public int lookup(float u) {
+        int index;
+        if (repeat) {
+            index = (int) ((u - (float) Math.floor(u)) * SIZE);
+        } else {
+            index = (int) (Math.min(1f, Math.max(0f, u)) * (SIZE - 1));
+        }
+        return argb[Math.min(index, SIZE - 1)];
+    }
+
+    static int mix(int a, int b, float t) {
+        int r = Math.round(((a >> 16) & 0xFF) * (1 - t) + ((b >> 16) & 0xFF) * t);
+        int g = Math.round(((a >> 8) & 0xFF) * (1 - t) + ((b >> 8) & 0xFF) * t);
+        int bl = Math.round((a & 0xFF) * (1 - t) + (b & 0xFF) * t);
+        return 0xFF000000 | r << 16 | g << 8 | bl;
+    }
+
+    // fully saturated HSV to RGB, same formula as the shaders used
+    private static int hsv(float h, float v) {
+        float r = v * hueChannel(h + 1.0f);
+        float g = v * hueChannel(h + 2.0f / 3.0f);
+        float b = v * hueChannel(h + 1.0f / 3.0f);
+        return 0xFF000000 | toByte(r) << 16 | toByte(g) << 8 | toByte(b);
+    }
+
+    private static float hueChannel(float h) {
+        float fract = h - (float) Math.floor(h);
+        return Math.min(1f, Math.max(0f, Math.abs(fract * 6.0f - 3.0f) - 1.0f));
+    }
+
+    private static int toByte(float c) {
+        return (int) (Math.min(1f, Math.max(0f, c)) * 255);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int[] getArgb() {
+        return argb;
+    }
+
+    public boolean isRepeat() {
+        return repeat;
+    }
+
+    public float getDensity() {
+        return density;
+    }
+
+    public int getInterior() {
+        return interior;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -30,6 +30,7 @@ public class SettingsManager {
         switch (fractalRender.getClass().getName())
         {
             case "com.gdi.jfxfractals.renderimpl.MandelbrotShaderRenderer":
+            case "com.gdi.jfxfractals.renderimpl.MandelbrotRenderer2":
                 ViewTuple<MandelbrotSettingsView, MandelbrotSettingsViewModel> load = FluentViewLoader
                         .fxmlView(MandelbrotSettingsView.class)
                         .context(context)
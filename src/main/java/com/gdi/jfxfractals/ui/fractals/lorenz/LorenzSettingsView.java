@@ -73,5 +73,6 @@ public class LorenzSettingsView implements FxmlView<LorenzSettingsViewModel>, In
         for (LorenzConfig cfg : configList.getItems()) {
             cfg.start();
         }
+        viewModel.requestFrame();
     }
 }
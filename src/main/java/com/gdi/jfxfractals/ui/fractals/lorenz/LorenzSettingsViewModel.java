@@ -32,4 +32,8 @@ public class LorenzSettingsViewModel implements ViewModel, FractalSettingsViewMo
     public void addConfig(LorenzConfig cfg) {
         fractalRenderer.addConfig(cfg);
     }
+
+    public void requestFrame() {
+        fractalRenderer.requestFrame();
+    }
 }
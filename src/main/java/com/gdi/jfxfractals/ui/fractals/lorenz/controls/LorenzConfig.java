@@ -46,6 +46,11 @@ public class LorenzConfig implements Updatable {
             this.solver.update();
     }
 
+    @Override
+    public boolean isActive() {
+        return this.solver != null && this.solver.isActive();
+    }
+
     @Override
     public void dispose() {
         stop();
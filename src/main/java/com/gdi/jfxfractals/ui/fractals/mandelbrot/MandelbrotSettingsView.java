@@ -10,7 +10,12 @@ import javafx.beans.value.ChangeListener;
 import javafx.beans.value.ObservableValue;
 import javafx.fxml.FXML;
 import javafx.fxml.Initializable;
+import javafx.scene.control.CheckBox;
+import javafx.scene.control.ComboBox;
+import javafx.scene.control.Label;
 import javafx.scene.control.Slider;
+import javafx.scene.control.TextField;
+import javafx.scene.image.ImageView;
 import javafx.stage.Stage;
 
 import java.net.URL;
@@ -30,6 +35,39 @@ public class MandelbrotSettingsView  implements FxmlView<MandelbrotSettingsViewM
     @FXML
     Slider iterations;
 
+    @FXML
+    CheckBox deepZoom;
+
+    @FXML
+    ComboBox<String> palette;
+
+    @FXML
+    Slider paletteOffset;
+
+    @FXML
+    CheckBox colorCycling;
+
+    @FXML
+    CheckBox equalize;
+
+    @FXML
+    CheckBox distanceEstimation;
+
+    @FXML
+    Slider boundary;
+
+    @FXML
+    TextField formula;
+
+    @FXML
+    Label formulaError;
+
+    @FXML
+    CheckBox juliaPreview;
+
+    @FXML
+    ImageView julia;
+
     @Override
     public void initialize(URL location, ResourceBundle resources) {
 
@@ -38,6 +76,30 @@ public class MandelbrotSettingsView  implements FxmlView<MandelbrotSettingsViewM
                     viewModel.setMaxIter(newValue);
                     //l.setText("value: " + newValue);
                 });
+        deepZoom.selectedProperty().addListener(
+                (observable, oldValue, newValue) -> viewModel.setDeepZoom(newValue));
+        deepZoom.disableProperty().bind(viewModel.deepZoomAvailableProperty().not());
+
+        palette.getItems().setAll(viewModel.getPaletteNames());
+        palette.valueProperty().addListener(
+                (observable, oldValue, newValue) -> viewModel.setPalette(newValue));
+        paletteOffset.valueProperty().addListener(
+                (observable, oldValue, newValue) -> viewModel.setPaletteOffset(newValue));
+        colorCycling.selectedProperty().addListener(
+                (observable, oldValue, newValue) -> viewModel.setColorCycling(newValue));
+        equalize.selectedProperty().addListener(
+                (observable, oldValue, newValue) -> viewModel.setEqualize(newValue));
+        distanceEstimation.selectedProperty().addListener(
+                (observable, oldValue, newValue) -> viewModel.setDistanceEstimation(newValue));
+        boundary.valueProperty().addListener(
+                (observable, oldValue, newValue) -> viewModel.setBoundary(newValue));
+        boundary.disableProperty().bind(distanceEstimation.selectedProperty().not());
+        formula.setOnAction(event -> viewModel.setFormula(formula.getText()));
+        formulaError.textProperty().bind(viewModel.formulaErrorProperty());
+        juliaPreview.selectedProperty().addListener(
+                (observable, oldValue, newValue) -> viewModel.setJuliaPreview(newValue));
+        julia.imageProperty().bind(viewModel.juliaProperty());
+        julia.visibleProperty().bind(juliaPreview.selectedProperty());
 
     }
 
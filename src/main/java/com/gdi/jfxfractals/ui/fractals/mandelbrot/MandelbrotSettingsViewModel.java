@@ -1,12 +1,30 @@
 package com.gdi.jfxfractals.ui.fractals.mandelbrot;
 
 import com.gdi.jfxfractals.renderer.IFractalRender;
+import com.gdi.jfxfractals.renderimpl.MandelbrotRenderer2;
 import com.gdi.jfxfractals.renderimpl.MandelbrotShaderRenderer;
+import com.gdi.jfxfractals.renderimpl.escape.JuliaPreview;
+import com.gdi.jfxfractals.renderimpl.escape.formula.UserFormula;
+import com.gdi.jfxfractals.renderimpl.palette.Colorizer;
+import com.gdi.jfxfractals.renderimpl.palette.Palette;
 import com.gdi.jfxfractals.ui.fractals.FractalSettingsViewModel;
 import com.gdi.jfxfractals.ui.maincontent.MainContentViewModel;
 import com.gdi.jfxfractals.ui.scope.FractalSettingsScope;
 import de.saxsys.mvvmfx.InjectScope;
 import de.saxsys.mvvmfx.ViewModel;
+import javafx.application.Platform;
+import javafx.beans.property.BooleanProperty;
+import javafx.beans.property.ObjectProperty;
+import javafx.beans.property.SimpleBooleanProperty;
+import javafx.beans.property.SimpleObjectProperty;
+import javafx.beans.property.SimpleStringProperty;
+import javafx.beans.property.StringProperty;
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+
+import java.util.ArrayList;
+import java.util.List;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -18,6 +36,18 @@ public class MandelbrotSettingsViewModel implements ViewModel, FractalSettingsVi
     private FractalSettingsScope fractalSettingsScope;
 
     private MandelbrotShaderRenderer fractalRenderer;
+    private MandelbrotRenderer2 cpuRenderer;
+    // either of the two above, asked for a frame when only the colours changed
+    private IFractalRender renderer;
+    private Colorizer colorizer;
+    private JuliaPreview juliaPreview;
+
+    // deep zoom only exists in the shader view
+    private final BooleanProperty deepZoomAvailable = new SimpleBooleanProperty(true);
+
+    private final WritableImage juliaImage = new WritableImage(JuliaPreview.DEFAULT_WIDTH, JuliaPreview.DEFAULT_HEIGHT);
+    private final ObjectProperty<Image> julia = new SimpleObjectProperty<>(juliaImage);
+    private final StringProperty formulaError = new SimpleStringProperty("");
 
     public void initialize() {
 
@@ -25,10 +55,119 @@ public class MandelbrotSettingsViewModel implements ViewModel, FractalSettingsVi
 
     @Override
     public void setFractalRenderer(IFractalRender fractalRender) {
-        fractalRenderer = (MandelbrotShaderRenderer) fractalRender;
+        renderer = fractalRender;
+        if (fractalRender instanceof MandelbrotRenderer2) {
+            cpuRenderer = (MandelbrotRenderer2) fractalRender;
+            colorizer = cpuRenderer.getColorizer();
+            juliaPreview = cpuRenderer.getJuliaPreview();
+            deepZoomAvailable.set(false);
+        } else {
+            fractalRenderer = (MandelbrotShaderRenderer) fractalRender;
+            colorizer = fractalRenderer.getColorizer();
+            juliaPreview = fractalRenderer.getJuliaPreview();
+        }
+        juliaPreview.setListener(this::showJulia);
+    }
+
+    // preview rows start at the bottom, image rows at the top
+    private void showJulia(int[] argb, int width, int height, double cx, double cy) {
+        Platform.runLater(() -> {
+            for (int y = 0; y < height; y++) {
+                juliaImage.getPixelWriter().setPixels(0, height - 1 - y, width, 1, PixelFormat.getIntArgbInstance(),
+                        argb, y * width, width);
+            }
+        });
     }
 
     public void setMaxIter(Number newValue) {
-        fractalRenderer.setMaxIter(newValue.floatValue());
+        if (cpuRenderer != null) {
+            cpuRenderer.setMaxIter(newValue.intValue());
+        } else {
+            fractalRenderer.setMaxIter(newValue.floatValue());
+        }
+    }
+
+    public void setDeepZoom(boolean deepZoom) {
+        if (fractalRenderer != null) {
+            fractalRenderer.setDeepZoom(deepZoom);
+        }
+    }
+
+    public List<String> getPaletteNames() {
+        return new ArrayList<>(Palette.presets().keySet());
+    }
+
+    public void setPalette(String name) {
+        Palette palette = Palette.presets().get(name);
+        if (palette != null) {
+            colorizer.setPalette(palette);
+            renderer.requestFrame();
+        }
+    }
+
+    public void setPaletteOffset(Number offset) {
+        colorizer.setOffset(offset.floatValue());
+        renderer.requestFrame();
+    }
+
+    public void setColorCycling(boolean cycling) {
+        colorizer.setCycling(cycling);
+        renderer.requestFrame();
+    }
+
+    public void setEqualize(boolean equalize) {
+        colorizer.setEqualize(equalize);
+        renderer.requestFrame();
+    }
+
+    public void setDistanceEstimation(boolean distanceEstimation) {
+        if (cpuRenderer != null) {
+            cpuRenderer.setDistanceEstimation(distanceEstimation);
+        } else {
+            fractalRenderer.setDistanceEstimation(distanceEstimation);
+        }
+    }
+
+    /**
+     * Compiles and shows {@code source}, an empty one goes back to the Mandelbrot set. Formulas
+     * that do not parse leave the view alone and report why.
+     */
+    public void setFormula(String source) {
+        UserFormula formula = null;
+        if (source != null && !source.isBlank()) {
+            try {
+                formula = UserFormula.compile(source);
+            } catch (IllegalArgumentException e) {
+                formulaError.set(e.getMessage());
+                return;
+            }
+        }
+        formulaError.set("");
+        if (cpuRenderer != null) {
+            cpuRenderer.setUserFormula(formula);
+        } else {
+            fractalRenderer.setUserFormula(formula);
+        }
+    }
+
+    public StringProperty formulaErrorProperty() {
+        return formulaError;
+    }
+
+    public void setBoundary(Number boundary) {
+        colorizer.setBoundary(boundary.floatValue());
+        renderer.requestFrame();
+    }
+
+    public void setJuliaPreview(boolean enabled) {
+        juliaPreview.setListener(enabled ? this::showJulia : null);
+    }
+
+    public ObjectProperty<Image> juliaProperty() {
+        return julia;
+    }
+
+    public BooleanProperty deepZoomAvailableProperty() {
+        return deepZoomAvailable;
     }
 }
@@ -5,6 +5,7 @@ import com.gdi.jfxfractals.renderimpl.LorenzAttractorRenderer;
 import com.gdi.jfxfractals.renderimpl.MandelbrotRenderer;
 import com.gdi.jfxfractals.renderimpl.MandelbrotRenderer2;
 import com.gdi.jfxfractals.renderimpl.MandelbrotShaderRenderer;
+import com.gdi.jfxfractals.renderimpl.escape.Formula;
 import com.gdi.jfxfractals.ui.scope.FractalSettingsScope;
 import com.google.inject.Inject;
 import de.saxsys.mvvmfx.InjectScope;
@@ -63,6 +64,12 @@ public class MainContentViewModel implements ViewModel {
         fractalsList.add(new FractalsListItemViewModel(fractalInfo2));
         fractalsList.add(new FractalsListItemViewModel(fractalInfo3));
         fractalsList.add(new FractalsListItemViewModel(fractalInfo4));
+        for (Formula formula : Formula.values()) {
+            if (formula != Formula.MANDELBROT) {
+                fractalsList.add(new FractalsListItemViewModel(new FractalInfo(formula.getTitle(), formula.getTitle() + " fractal",
+                        () -> new MandelbrotRenderer2(formula))));
+            }
+        }
     }
 
     public ObservableList<FractalsListItemViewModel> getFractalsList() {
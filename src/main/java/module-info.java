@@ -22,6 +22,7 @@ open module jfxfractals {
     requires java.logging;
     requires org.apache.commons.lang3;
     requires org.burningwave.core;
+    requires static jdk.incubator.vector;
 
 
 
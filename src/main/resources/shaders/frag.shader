@@ -1,10 +1,13 @@
 #version 410 core
 precision highp float;
 
-uniform float u_Color;
+// writes the smooth iteration count and the distance to the set in pixels, palette.shader turns
+// them into colour; -1 inside the set
 uniform float u_maxIter;
 uniform dvec2 u_CameraPos;
 uniform double u_CameraZoom;
+// non-zero to carry the derivative along the orbit for the distance estimate
+uniform int u_Distance;
 
 in vec4 pass_Position;
 
@@ -15,34 +18,72 @@ dvec2 squareImaginary(dvec2 imaginaryNum) {
     return imaginaryResult;
 }
 
-vec3 colorFunc(int iter) {
-    // Color in HSV
-    vec3 color = vec3(u_Color + 0.012*iter , 1.0, 0.2+.4*(1.0+sin(0.3*iter)));
+// formula begin: replaced for user formulas, see UserFormula.getGlsl()
+const bool mandelbrot = true;
+// growth rate of |z| per step, for the smooth count
+const float degree = 2.0;
+dvec2 formula(dvec2 z, dvec2 c) {
+    return squareImaginary(z) + c;
+}
+// formula end
 
-    // Convert from HSV to RGB
-    // Taken from: http://lolengine.net/blog/2013/07/27/rgb-to-hsv-in-glsl
-    vec4 K = vec4(1.0, 2.0 / 3.0, 1.0 / 3.0, 3.0);
-    vec3 m = abs(fract(color.xxx + K.xyz) * 6.0 - K.www);
-    return vec3(color.z * mix(K.xxx, clamp(m - K.xxx, 0.0, 1.0), color.y));
+// main cardioid and period-2 bulb never escape
+bool inCardioidOrBulb(dvec2 c) {
+    double yy = c.y * c.y;
+    double x = c.x - 0.25;
+    double q = x * x + yy;
+    double x1 = c.x + 1.0;
+    return q * (q + x) <= 0.25 * yy || x1 * x1 + yy <= 0.0625;
 }
 
 void main() {
     dvec2 doublePosition = dvec2(pass_Position.x, pass_Position.y);
     dvec2 c, z;
-    vec3 color = vec3(0.0, 0.0, 0.0);
+    float smoothIter = -1.0;
+    float distance = 0.0;
+    // outside the loop, derivatives are undefined in non-uniform control flow
+    float pixel = float(2.0 * u_CameraZoom) * abs(dFdx(pass_Position.x));
     c = dvec2((doublePosition.x * 2 * u_CameraZoom) + u_CameraPos.x, (pass_Position.y * 2 * u_CameraZoom) + u_CameraPos.y);
-    z = c;
-
-    int iter;
-    for(iter = 0; iter < u_maxIter; iter++) {
-        //fc(z) = z^2 + c
-        dvec2 result = squareImaginary(z) + c;
-        if(length(result) > 4.0) {
-            color = colorFunc(iter);
-            break;
+    // z1 = c for the Mandelbrot set, other formulas start at z0 = 0
+    z = mandelbrot ? c : dvec2(0.0);
+    // one step behind when starting at z0
+    float first = mandelbrot ? 3.0 : 2.0;
+
+    if (!mandelbrot || !inCardioidOrBulb(c)) {
+        // Brent periodicity check: stop once z returns to the point saved at the last power of two
+        double eps = u_CameraZoom * 1e-6;
+        dvec2 saved = z;
+        // dz/dc of z1 = c
+        dvec2 dz = dvec2(1.0, 0.0);
+        int checkpoint = 1;
+        int iter;
+        for(iter = 0; iter < u_maxIter; iter++) {
+            dvec2 result = formula(z, c);
+            if (mandelbrot && u_Distance != 0) {
+                // z' = 2 z z' + 1, in step with result
+                dz = 2.0 * dvec2(z.x * dz.x - z.y * dz.y, z.x * dz.y + z.y * dz.x) + dvec2(1.0, 0.0);
+            }
+            // large bailout so the smooth count is accurate
+            double mag = dot(result, result);
+            if(mag > 65536.0) {
+                // the same count the CPU kernels report
+                smoothIter = max(0.0, float(iter) + first - log(0.5 * log(float(mag))) / log(degree));
+                if (mandelbrot && u_Distance != 0) {
+                    // |z| ln|z| / 2|z'|, no point of the set is closer
+                    distance = float(0.25 * sqrt(mag / dot(dz, dz))) * log(float(mag)) / pixel;
+                }
+                break;
+            }
+            z = result;
+            if (abs(z.x - saved.x) < eps && abs(z.y - saved.y) < eps) {
+                break;
+            }
+            if (iter + 1 == checkpoint) {
+                saved = z;
+                checkpoint *= 2;
+            }
         }
-        z = result;
     }
 
-    gl_FragColor = vec4(color, 1.0);
+    gl_FragColor = vec4(smoothIter, distance, 0.0, 1.0);
 }
@@ -0,0 +1,131 @@
+#version 410 core
+precision highp float;
+
+// frag.shader for the Mandelbrot set with the view and the orbit in float-float pairs (hi, lo)
+// instead of doubles, for GPUs and drivers whose double rate is a small fraction of their float
+// rate. A pair keeps about 48 bits of mantissa, a few short of a double. Same outputs: smooth
+// iteration count and distance to the set in pixels, -1 inside the set
+uniform float u_maxIter;
+// (x hi, x lo, y hi, y lo)
+uniform vec4 u_CameraPos;
+// (hi, lo)
+uniform vec2 u_CameraZoom;
+// non-zero to carry the derivative along the orbit for the distance estimate
+uniform int u_Distance;
+
+in vec4 pass_Position;
+
+// error-free transformations: the results hold the exact sum or product as an unevaluated pair.
+// precise stops the compiler from folding the error terms to 0
+vec2 twoSum(float a, float b) {
+    precise float s = a + b;
+    precise float v = s - a;
+    precise float e = (a - (s - v)) + (b - v);
+    return vec2(s, e);
+}
+
+// only for |a| >= |b|
+vec2 quickTwoSum(float a, float b) {
+    precise float s = a + b;
+    precise float e = b - (s - a);
+    return vec2(s, e);
+}
+
+// Dekker's split into two 12 bit halves, fma is not exact on every driver
+vec2 split(float a) {
+    precise float t = 4097.0 * a;
+    precise float hi = t - (t - a);
+    precise float lo = a - hi;
+    return vec2(hi, lo);
+}
+
+vec2 twoProd(float a, float b) {
+    precise float p = a * b;
+    vec2 as = split(a);
+    vec2 bs = split(b);
+    precise float e = ((as.x * bs.x - p) + as.x * bs.y + as.y * bs.x) + as.y * bs.y;
+    return vec2(p, e);
+}
+
+vec2 ffAdd(vec2 a, vec2 b) {
+    vec2 s = twoSum(a.x, b.x);
+    vec2 t = twoSum(a.y, b.y);
+    s = quickTwoSum(s.x, s.y + t.x);
+    return quickTwoSum(s.x, s.y + t.y);
+}
+
+vec2 ffMul(vec2 a, vec2 b) {
+    vec2 p = twoProd(a.x, b.x);
+    return quickTwoSum(p.x, p.y + (a.x * b.y + a.y * b.x));
+}
+
+vec2 ffSqr(vec2 a) {
+    vec2 p = twoProd(a.x, a.x);
+    return quickTwoSum(p.x, p.y + 2.0 * a.x * a.y);
+}
+
+// main cardioid and period-2 bulb never escape; in pairs, a float test would misjudge deep views along their edge
+bool inCardioidOrBulb(vec2 cx, vec2 cy) {
+    vec2 yy = ffSqr(cy);
+    vec2 x = ffAdd(cx, vec2(-0.25, 0.0));
+    vec2 q = ffAdd(ffSqr(x), yy);
+    if (ffAdd(ffMul(q, ffAdd(q, x)), -0.25 * yy).x <= 0.0) {
+        return true;
+    }
+    vec2 x1 = ffAdd(cx, vec2(1.0, 0.0));
+    return ffAdd(ffAdd(ffSqr(x1), yy), vec2(-0.0625, 0.0)).x <= 0.0;
+}
+
+void main() {
+    float smoothIter = -1.0;
+    float distance = 0.0;
+    // outside the loop, derivatives are undefined in non-uniform control flow
+    float pixel = 2.0 * u_CameraZoom.x * abs(dFdx(pass_Position.x));
+    // doubling a float is exact
+    vec2 cx = ffAdd(ffMul(vec2(pass_Position.x * 2.0, 0.0), u_CameraZoom), u_CameraPos.xy);
+    vec2 cy = ffAdd(ffMul(vec2(pass_Position.y * 2.0, 0.0), u_CameraZoom), u_CameraPos.zw);
+
+    if (!inCardioidOrBulb(cx, cy)) {
+        // z1 = c
+        vec2 zx = cx;
+        vec2 zy = cy;
+        // Brent periodicity check: stop once z returns to the point saved at the last power of two
+        float eps = u_CameraZoom.x * 1e-6;
+        vec2 savedX = zx;
+        vec2 savedY = zy;
+        // dz/dc of z1 = c; a float derivative only overflows on pixels far closer to the set than one pixel
+        vec2 dz = vec2(1.0, 0.0);
+        int checkpoint = 1;
+        for (int iter = 0; iter < u_maxIter; iter++) {
+            vec2 rx = ffAdd(ffAdd(ffSqr(zx), -ffSqr(zy)), cx);
+            vec2 ry = ffAdd(2.0 * ffMul(zx, zy), cy);
+            if (u_Distance != 0) {
+                // z' = 2 z z' + 1, in step with r
+                dz = 2.0 * vec2(zx.x * dz.x - zy.x * dz.y, zx.x * dz.y + zy.x * dz.x) + vec2(1.0, 0.0);
+            }
+            // large bailout so the smooth count is accurate
+            float mag = rx.x * rx.x + ry.x * ry.x;
+            if (mag > 65536.0) {
+                // the same count the CPU kernels report
+                smoothIter = max(0.0, float(iter) + 3.0 - log2(0.5 * log(mag)));
+                if (u_Distance != 0) {
+                    // |z| ln|z| / 2|z'|, no point of the set is closer
+                    distance = 0.25 * sqrt(mag / dot(dz, dz)) * log(mag) / pixel;
+                }
+                break;
+            }
+            zx = rx;
+            zy = ry;
+            if (abs(ffAdd(zx, -savedX).x) < eps && abs(ffAdd(zy, -savedY).x) < eps) {
+                break;
+            }
+            if (iter + 1 == checkpoint) {
+                savedX = zx;
+                savedY = zy;
+                checkpoint *= 2;
+            }
+        }
+    }
+
+    gl_FragColor = vec4(smoothIter, distance, 0.0, 1.0);
+}
@@ -0,0 +1,146 @@
+#version 410 core
+precision highp float;
+
+// frag.shader spread over several draws for high iteration limits: each draw runs at most u_Slice
+// iterations per pixel and carries the orbit over to the next in state textures. Writes the same
+// smooth iteration count and distance, pixels still running read as -1 until they resolve
+uniform float u_maxIter;
+uniform dvec2 u_CameraPos;
+uniform double u_CameraZoom;
+// non-zero to carry the derivative along the orbit for the distance estimate
+uniform int u_Distance;
+uniform int u_Slice;
+// non-zero on the first draw of a view, when the state textures hold nothing yet
+uniform int u_Start;
+// the state of the previous draw: the counts, z and the Brent point as the bits of two doubles,
+// and (dz/dc as the bits of two floats, iterations done, status)
+uniform sampler2D u_Counts;
+uniform usampler2D u_Z;
+uniform usampler2D u_Saved;
+uniform usampler2D u_State;
+
+in vec4 pass_Position;
+
+layout(location = 0) out vec4 out_Counts;
+layout(location = 1) out uvec4 out_Z;
+layout(location = 2) out uvec4 out_Saved;
+layout(location = 3) out uvec4 out_State;
+
+const uint RUNNING = 0u;
+const uint FINISHED = 1u;
+// reached the limit without escaping, runs on when the limit is raised
+const uint LIMITED = 2u;
+
+dvec2 squareImaginary(dvec2 imaginaryNum) {
+    dvec2 imaginaryResult;
+    imaginaryResult.x = (imaginaryNum.x * imaginaryNum.x) - (imaginaryNum.y * imaginaryNum.y);
+    imaginaryResult.y = 2 * imaginaryNum.x * imaginaryNum.y;
+    return imaginaryResult;
+}
+
+// formula begin: replaced for user formulas, see UserFormula.getGlsl()
+const bool mandelbrot = true;
+// growth rate of |z| per step, for the smooth count
+const float degree = 2.0;
+dvec2 formula(dvec2 z, dvec2 c) {
+    return squareImaginary(z) + c;
+}
+// formula end
+
+// main cardioid and period-2 bulb never escape
+bool inCardioidOrBulb(dvec2 c) {
+    double yy = c.y * c.y;
+    double x = c.x - 0.25;
+    double q = x * x + yy;
+    double x1 = c.x + 1.0;
+    return q * (q + x) <= 0.25 * yy || x1 * x1 + yy <= 0.0625;
+}
+
+uvec4 bits(dvec2 v) {
+    return uvec4(unpackDouble2x32(v.x), unpackDouble2x32(v.y));
+}
+
+dvec2 value(uvec4 b) {
+    return dvec2(packDouble2x32(b.xy), packDouble2x32(b.zw));
+}
+
+void main() {
+    ivec2 pixel = ivec2(gl_FragCoord.xy);
+    // outside the loop, derivatives are undefined in non-uniform control flow
+    float pixelSize = float(2.0 * u_CameraZoom) * abs(dFdx(pass_Position.x));
+    dvec2 c = dvec2((double(pass_Position.x) * 2 * u_CameraZoom) + u_CameraPos.x, (pass_Position.y * 2 * u_CameraZoom) + u_CameraPos.y);
+    // one step behind when starting at z0
+    float first = mandelbrot ? 3.0 : 2.0;
+
+    vec2 counts;
+    dvec2 z, saved;
+    vec2 dz;
+    uint iter;
+    uint status;
+    if (u_Start != 0) {
+        counts = vec2(-1.0, 0.0);
+        // z1 = c for the Mandelbrot set, other formulas start at z0 = 0
+        z = mandelbrot ? c : dvec2(0.0);
+        saved = z;
+        // dz/dc of z1 = c
+        dz = vec2(1.0, 0.0);
+        iter = 0u;
+        status = mandelbrot && inCardioidOrBulb(c) ? FINISHED : RUNNING;
+    } else {
+        counts = texelFetch(u_Counts, pixel, 0).rg;
+        z = value(texelFetch(u_Z, pixel, 0));
+        saved = value(texelFetch(u_Saved, pixel, 0));
+        uvec4 state = texelFetch(u_State, pixel, 0);
+        dz = uintBitsToFloat(state.xy);
+        iter = state.z;
+        status = state.w;
+    }
+
+    uint maxIter = uint(u_maxIter);
+    if (status == RUNNING || (status == LIMITED && iter < maxIter)) {
+        status = RUNNING;
+        double eps = u_CameraZoom * 1e-6;
+        // the first power of two the Brent check has not reached yet
+        uint checkpoint = 1u;
+        while (checkpoint <= iter && checkpoint < (1u << 30)) {
+            checkpoint *= 2u;
+        }
+        uint end = min(maxIter, iter + uint(u_Slice));
+        for (; iter < end; iter++) {
+            dvec2 result = formula(z, c);
+            if (mandelbrot && u_Distance != 0) {
+                // z' = 2 z z' + 1, in step with result
+                dz = 2.0 * vec2(float(z.x) * dz.x - float(z.y) * dz.y, float(z.x) * dz.y + float(z.y) * dz.x) + vec2(1.0, 0.0);
+            }
+            // large bailout so the smooth count is accurate
+            double mag = dot(result, result);
+            if (mag > 65536.0) {
+                // the same count the CPU kernels report
+                counts.r = max(0.0, float(iter) + first - log(0.5 * log(float(mag))) / log(degree));
+                if (mandelbrot && u_Distance != 0) {
+                    // |z| ln|z| / 2|z'|, no point of the set is closer
+                    counts.g = float(0.25 * sqrt(mag / dot(dz, dz))) * log(float(mag)) / pixelSize;
+                }
+                status = FINISHED;
+                break;
+            }
+            z = result;
+            if (abs(z.x - saved.x) < eps && abs(z.y - saved.y) < eps) {
+                status = FINISHED;
+                break;
+            }
+            if (iter + 1u == checkpoint) {
+                saved = z;
+                checkpoint *= 2u;
+            }
+        }
+        if (status == RUNNING && iter >= maxIter) {
+            status = LIMITED;
+        }
+    }
+
+    out_Counts = vec4(counts, 0.0, 1.0);
+    out_Z = bits(z);
+    out_Saved = bits(saved);
+    out_State = uvec4(floatBitsToUint(dz), iter, status);
+}
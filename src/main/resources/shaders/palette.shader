@@ -0,0 +1,26 @@
+#version 410 core
+
+// second pass: colours the smooth iteration counts written by frag.shader
+uniform sampler2D u_Iterations;
+uniform sampler1D u_Palette;
+uniform float u_Offset;
+uniform float u_Density;
+uniform vec4 u_Interior;
+// pixels over which escaped points fade into the interior colour near the set, 0 for none
+uniform float u_Boundary;
+
+in vec4 pass_Position;
+
+void main() {
+    vec2 texel = texelFetch(u_Iterations, ivec2(gl_FragCoord.xy), 0).rg;
+    float nu = texel.r;
+    if (nu < 0.0) {
+        gl_FragColor = u_Interior;
+        return;
+    }
+    vec3 colour = texture(u_Palette, nu * u_Density + u_Offset).rgb;
+    if (u_Boundary > 0.0) {
+        colour = mix(u_Interior.rgb, colour, min(1.0, texel.g / u_Boundary));
+    }
+    gl_FragColor = vec4(colour, 1.0);
+}
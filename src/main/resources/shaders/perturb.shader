@@ -0,0 +1,92 @@
+#version 410 core
+precision highp float;
+
+// deep zoom Mandelbrot set by perturbation: every pixel is iterated as a double delta from a
+// reference orbit computed on the CPU in arbitrary precision, the same as PerturbationKernel.
+// Writes the smooth iteration count, -1 inside the set, or -2 with the glitch depth for pixels
+// that need another reference
+
+// Z(n) as the bits of two doubles per texel, see OrbitTexture
+uniform usamplerBuffer u_Orbit;
+uniform int u_OrbitLength;
+uniform float u_maxIter;
+// pixel size and the pixel of the view centre, the grid of ViewPort
+uniform double u_Scale;
+uniform ivec2 u_Centre;
+// reference position relative to the view centre
+uniform dvec2 u_Reference;
+// series approximation, delta(skip) = A d + B d^2 + C d^3; no skip for 0
+uniform int u_Skip;
+uniform dvec2 u_SeriesA;
+uniform dvec2 u_SeriesB;
+uniform dvec2 u_SeriesC;
+// the previous pass; with u_Mask set only the pixels it left glitched are iterated
+uniform sampler2D u_Previous;
+uniform int u_Mask;
+
+in vec4 pass_Position;
+
+// read back by GpuPerturbation, keep in step with GpuPerturbation.GLITCHED
+const float GLITCHED = -2.0;
+const double BAILOUT = 65536.0;
+const double GLITCH_TOLERANCE = 1e-6;
+
+dvec2 orbit(int n) {
+    uvec4 bits = texelFetch(u_Orbit, n);
+    return dvec2(packDouble2x32(bits.xy), packDouble2x32(bits.zw));
+}
+
+dvec2 mul(dvec2 a, dvec2 b) {
+    return dvec2(a.x * b.x - a.y * b.y, a.x * b.y + a.y * b.x);
+}
+
+void main() {
+    ivec2 pixel = ivec2(gl_FragCoord.xy);
+    if (u_Mask != 0) {
+        vec2 previous = texelFetch(u_Previous, pixel, 0).rg;
+        if (previous.r != GLITCHED) {
+            gl_FragColor = vec4(previous, 0.0, 1.0);
+            return;
+        }
+    }
+
+    dvec2 dc = dvec2(pixel - u_Centre) * u_Scale - u_Reference;
+    dvec2 delta = dvec2(0.0);
+    int n = 0;
+    if (u_Skip > 0) {
+        // Horner form keeps d^2 and d^3 from underflowing
+        delta = mul(dc, u_SeriesA + mul(dc, u_SeriesB + mul(dc, u_SeriesC)));
+        n = u_Skip;
+    }
+
+    float smoothIter = -1.0;
+    float depth = 0.0;
+    int maxIter = int(u_maxIter);
+    while (n < maxIter) {
+        if (n >= u_OrbitLength) {
+            // the reference escaped first, nothing left to perturb against
+            smoothIter = GLITCHED;
+            depth = 1.0;
+            break;
+        }
+        dvec2 z = orbit(n);
+        dvec2 full = z + delta;
+        double mag = dot(full, full);
+        if (mag > BAILOUT) {
+            // the same count the CPU kernels report
+            smoothIter = max(0.0, float(n) + 1.0 - log2(0.5 * log(float(mag))));
+            break;
+        }
+        // Pauldelbrot's criterion: the full value collapsed far below the reference
+        double refMag = dot(z, z);
+        if (mag < GLITCH_TOLERANCE * refMag) {
+            smoothIter = GLITCHED;
+            depth = float(mag / refMag);
+            break;
+        }
+        delta = 2.0 * mul(z, delta) + mul(delta, delta) + dc;
+        n++;
+    }
+
+    gl_FragColor = vec4(smoothIter, depth, 0.0, 1.0);
+}
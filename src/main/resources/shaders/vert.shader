@@ -1,12 +1,14 @@
 #version 330 core
 
 uniform mat4 u_MVP;
+// sub-pixel offset of the quad in clip space, moves every sample point by the opposite amount
+uniform vec2 u_Jitter;
 
 in vec4 in_Position;
 
 out vec4 pass_Position;
 void main(void) {
-    gl_Position = in_Position;
+    gl_Position = in_Position + vec4(u_Jitter, 0.0, 0.0);
 
     pass_Position = in_Position;
 }
\ No newline at end of file